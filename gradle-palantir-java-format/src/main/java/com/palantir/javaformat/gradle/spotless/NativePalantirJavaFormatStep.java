@@ -19,12 +19,12 @@ package com.palantir.javaformat.gradle.spotless;
 import com.diffplug.spotless.FileSignature;
 import com.diffplug.spotless.FormatterFunc;
 import com.diffplug.spotless.FormatterStep;
-import com.diffplug.spotless.ProcessRunner;
+import com.palantir.javaformat.bootstrap.FormatterWorkerPool;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Supplier;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.logging.Logger;
@@ -36,6 +36,7 @@ public final class NativePalantirJavaFormatStep {
     private NativePalantirJavaFormatStep() {}
 
     private static final String NAME = "palantir-java-format";
+    private static final List<String> FORMATTER_ARGS = List.of("--palantir", "-");
 
     /** Creates a step which formats everything - code, import order, and unused imports. */
     public static FormatterStep create(Configuration configuration) {
@@ -57,19 +58,24 @@ public final class NativePalantirJavaFormatStep {
             this.execSupplier = supplier;
         }
 
-        String format(ProcessRunner runner, String input) throws IOException, InterruptedException {
+        String format(FormatterWorkerPool workers, String input) throws IOException {
+            FormatterWorkerPool.Result result = workers.run(FORMATTER_ARGS, input);
+            if (result.exitCode() != 0) {
+                throw new IllegalStateException(String.format(
+                        "%s exited with code %d%nstdout:%n%s%nstderr:%n%s",
+                        execSignature.getOnlyFile(), result.exitCode(), result.stdout(), result.stderr()));
+            }
+            return result.stdout();
+        }
+
+        FormatterFunc.Closeable createFormat() throws IOException {
             File execFile = execSupplier.get();
             logger.info("Using native-image at {}", execFile);
             execSignature = FileSignature.signAsSet(execFile);
-            List<String> argumentsWithPathToExe =
-                    List.of(execSignature.getOnlyFile().getAbsolutePath(), "--palantir", "-");
-            return runner.exec(input.getBytes(StandardCharsets.UTF_8), argumentsWithPathToExe)
-                    .assertExitZero(StandardCharsets.UTF_8);
-        }
-
-        FormatterFunc.Closeable createFormat() {
-            ProcessRunner runner = new ProcessRunner();
-            return FormatterFunc.Closeable.of(runner, this::format);
+            // Keep the native image running between files rather than paying for process setup every time
+            FormatterWorkerPool workers = new FormatterWorkerPool(
+                    List.of(execSignature.getOnlyFile().getAbsolutePath()), Optional.empty());
+            return FormatterFunc.Closeable.of(workers, this::format);
         }
     }
 }
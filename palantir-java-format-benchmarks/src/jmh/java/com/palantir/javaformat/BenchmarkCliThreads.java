@@ -0,0 +1,124 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Wall-clock time of a CLI run over the formatter's own sources plus one large file given last, which used to run on
+ * its own after everything else had finished, at different {@code --threads}.
+ */
+@Measurement(iterations = 3)
+@Warmup(iterations = 1)
+public class BenchmarkCliThreads {
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+
+        @Param({"1", "4", "16", "64"})
+        public int threads;
+
+        final List<String> filesToFormat = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Path srcJavaFormatFiles = Paths.get(".")
+                    .toAbsolutePath()
+                    .resolve("../palantir-java-format/src/main/java/com/palantir/javaformat/java");
+            try (Stream<Path> paths = Files.list(srcJavaFormatFiles)) {
+                paths.filter(Files::isRegularFile)
+                        .map(path -> path.toAbsolutePath().toString())
+                        .forEach(filesToFormat::add);
+            }
+
+            Path largeFile = Files.createTempDirectory("benchmark-cli-threads").resolve("Large.java");
+            largeFile.toFile().deleteOnExit();
+            largeFile.getParent().toFile().deleteOnExit();
+            Files.write(largeFile, largeClass(2000).getBytes(StandardCharsets.UTF_8));
+            filesToFormat.add(largeFile.toString());
+        }
+
+        private static String largeClass(int methods) {
+            StringBuilder sb = new StringBuilder("class Large {");
+            for (int i = 0; i < methods; i++) {
+                sb.append("int m").append(i).append("(int a,int b){if(a>b){return a*").append(i);
+                sb.append("+b;}else{return java.util.stream.IntStream.range(a,b).map(x->x*x).sum();}}");
+            }
+            return sb.append("}\n").toString();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public final void runJar(BenchmarkState state) throws InterruptedException, IOException {
+        ProcessBuilder p = new ProcessBuilder();
+        p.command(Stream.concat(
+                        Stream.of(
+                                "java",
+                                "-cp",
+                                System.getenv("JARS_CLASSPATH"),
+                                "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+                                "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+                                "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+                                "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+                                "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+                                "com.palantir.javaformat.java.Main",
+                                "--dry-run",
+                                "--palantir",
+                                "--threads",
+                                Integer.toString(state.threads)),
+                        state.filesToFormat.stream())
+                .collect(Collectors.toList()));
+        Process process = p.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        assertThat(process.waitFor()).isEqualTo(0);
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(BenchmarkCliThreads.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Files per second of {@link Formatter#fixImports}, as run by {@code --fix-imports-only}, over every main source file
+ * in this repository. Each invocation handles the next file. {@link #lexHeaderWithJavac} is the cost of lexing the
+ * header before {@link HeaderScanner}, to compare with {@link #lexHeader}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+@State(Scope.Thread)
+public class BenchmarkFixImports {
+    private static final Formatter FORMATTER =
+            Formatter.createFormatter(JavaFormatterOptions.builder().style(Style.PALANTIR).build());
+
+    private static final ImmutableSet<TokenKind> CLASS_START =
+            ImmutableSet.of(TokenKind.CLASS, TokenKind.INTERFACE, TokenKind.ENUM);
+
+    private final List<String> files = new ArrayList<>();
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path root = Paths.get(".").toAbsolutePath().resolve("..");
+        List<Path> sources;
+        try (Stream<Path> paths = Files.walk(root)) {
+            sources = paths.filter(
+                            path -> path.toString().endsWith(".java") && path.toString().contains("/src/main/java/"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path source : sources) {
+            files.add(new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+        }
+    }
+
+    private String nextFile() {
+        return files.get(Math.floorMod(next++, files.size()));
+    }
+
+    @Benchmark
+    public String fixImports() throws FormatterException {
+        return FORMATTER.fixImports(nextFile());
+    }
+
+    @Benchmark
+    public String reorderImports() throws FormatterException {
+        return ImportOrderer.reorderImports(nextFile(), Style.PALANTIR);
+    }
+
+    @Benchmark
+    public ImmutableList<JavaInput.Tok> lexHeader() throws FormatterException {
+        return JavaInput.buildHeaderToks(nextFile(), CLASS_START);
+    }
+
+    @Benchmark
+    public ImmutableList<JavaInput.Tok> lexHeaderWithJavac() throws FormatterException {
+        return JavaInput.buildToks(nextFile(), CLASS_START);
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkFixImports.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.OpsBuilder;
+import com.palantir.javaformat.OpsBuilder.OpsOutput;
+import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.Level;
+import com.palantir.javaformat.doc.NoopSink;
+import com.palantir.javaformat.doc.Obs;
+import com.palantir.javaformat.doc.State;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs each phase of the formatter in process over the {@code testdata} corpus, with the inputs of each phase prepared
+ * up front, so that a regression in one layer of the engine shows up in that layer's numbers. Every invocation
+ * processes the whole corpus. Run with the GC profiler ({@code gc.alloc.rate.norm}) to also see what each phase
+ * allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+public class BenchmarkFormatterPhases {
+
+    private static final JavaFormatterOptions OPTIONS =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build();
+
+    /** Every file in the corpus, with the output of each phase computed once. */
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class Corpus {
+        final List<PreparedFile> files = new ArrayList<>();
+
+        @Setup
+        public void setUp() throws IOException {
+            Path testdata = Paths.get(".")
+                    .toAbsolutePath()
+                    .resolve("../palantir-java-format/src/test/resources/com/palantir/javaformat/java/testdata");
+            List<Path> inputs;
+            try (Stream<Path> paths = Files.list(testdata)) {
+                inputs = paths.filter(path -> path.getFileName().toString().endsWith(".input"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path input : inputs) {
+                String text = new String(Files.readAllBytes(input), StandardCharsets.UTF_8);
+                try {
+                    files.add(new PreparedFile(text));
+                } catch (FormatterException | RuntimeException e) {
+                    // Some inputs deliberately don't parse, or need a newer JDK than we're running on
+                }
+            }
+        }
+    }
+
+    static final class PreparedFile {
+        final String text;
+        final JavaInput javaInput;
+        final JCCompilationUnit unit;
+        final FormattingSession session;
+        final OpsOutput opsOutput;
+        final Level doc;
+        final JavaCommentsHelper commentsHelper;
+        final State finalState;
+        final String formatted;
+
+        PreparedFile(String text) throws FormatterException {
+            this.text = text;
+            this.session = new FormattingSession(text);
+            this.javaInput = session.javaInput();
+            this.unit = session.unit();
+            this.javaInput.setCompilationUnit(unit);
+            this.opsOutput = visit(this).build();
+            this.doc = new DocBuilder().withOps(opsOutput.ops()).build();
+            this.commentsHelper = new JavaCommentsHelper(javaInput.getLineSeparator(), OPTIONS);
+            this.finalState = computeBreaks(this, doc);
+            this.formatted = Formatter.createFormatter(OPTIONS).formatSource(text);
+
+            // Only keep files that every phase accepts
+            ImportOrderer.reorderImports(text, Style.PALANTIR);
+            RemoveUnusedImports.removeUnusedImports(session, /* syntaxChecked= */ false);
+            StringWrapper.wrap(OPTIONS.maxLineLength(), formatted, Formatter.createFormatter(OPTIONS));
+        }
+    }
+
+    /** Freshly emitted ops, since {@link OpsBuilder#build} may only be called once. */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class VisitedFiles {
+        final List<OpsBuilder> opsBuilders = new ArrayList<>();
+
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void setUp(Corpus corpus) {
+            opsBuilders.clear();
+            for (PreparedFile file : corpus.files) {
+                opsBuilders.add(visit(file));
+            }
+        }
+    }
+
+    /** Fresh docs, since laying out a doc caches results in it. */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class FreshDocs {
+        final List<Level> docs = new ArrayList<>();
+
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void setUp(Corpus corpus) {
+            docs.clear();
+            for (PreparedFile file : corpus.files) {
+                docs.add(new DocBuilder().withOps(file.opsOutput.ops()).build());
+            }
+        }
+    }
+
+    @Benchmark
+    public void lexJavaInput(Corpus corpus, Blackhole blackhole) throws FormatterException {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(new JavaInput(file.text));
+        }
+    }
+
+    @Benchmark
+    public void parseJavac(Corpus corpus, Blackhole blackhole) throws FormatterException {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(Formatter.parseJcCompilationUnit(
+                    ParsingContext.acquire(), file.text, /*allowStringFolding=*/ false));
+        }
+    }
+
+    @Benchmark
+    public void emitOps(Corpus corpus, Blackhole blackhole) {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(visit(file));
+        }
+    }
+
+    @Benchmark
+    public void buildOps(VisitedFiles visited, Blackhole blackhole) {
+        for (OpsBuilder opsBuilder : visited.opsBuilders) {
+            blackhole.consume(opsBuilder.build());
+        }
+    }
+
+    @Benchmark
+    public void buildDocs(Corpus corpus, Blackhole blackhole) {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(new DocBuilder().withOps(file.opsOutput.ops()).build());
+        }
+    }
+
+    @Benchmark
+    public void computeBreaks(Corpus corpus, FreshDocs fresh, Blackhole blackhole) {
+        for (int i = 0; i < corpus.files.size(); i++) {
+            blackhole.consume(computeBreaks(corpus.files.get(i), fresh.docs.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void writeOutput(Corpus corpus, Blackhole blackhole) {
+        for (PreparedFile file : corpus.files) {
+            JavaOutput javaOutput = new JavaOutput(file.javaInput, file.opsOutput.inputMetadata());
+            file.doc.write(file.finalState, javaOutput);
+            javaOutput.flush();
+            blackhole.consume(javaOutput);
+        }
+    }
+
+    @Benchmark
+    public void orderImports(Corpus corpus, Blackhole blackhole) throws FormatterException {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(ImportOrderer.reorderImports(file.text, Style.PALANTIR));
+        }
+    }
+
+    @Benchmark
+    public void removeUnusedImports(Corpus corpus, Blackhole blackhole) throws FormatterException {
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(RemoveUnusedImports.removeUnusedImports(file.session, /* syntaxChecked= */ true));
+        }
+    }
+
+    @Benchmark
+    public void wrapStrings(Corpus corpus, Blackhole blackhole) throws FormatterException {
+        Formatter formatter = Formatter.createFormatter(OPTIONS);
+        for (PreparedFile file : corpus.files) {
+            blackhole.consume(StringWrapper.wrap(OPTIONS.maxLineLength(), file.formatted, formatter));
+        }
+    }
+
+    private static OpsBuilder visit(PreparedFile file) {
+        OpsBuilder opsBuilder = new OpsBuilder(file.javaInput);
+        Formatter.createVisitor(opsBuilder, OPTIONS).scan(file.unit, null);
+        opsBuilder.sync(file.text.length());
+        opsBuilder.drain();
+        return opsBuilder;
+    }
+
+    private static State computeBreaks(PreparedFile file, Level doc) {
+        return doc.computeBreaks(
+                file.commentsHelper, OPTIONS.maxLineLength(), State.startingState(), Obs.createRoot(new NoopSink()));
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(BenchmarkFormatterPhases.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build())
+                .run();
+    }
+}
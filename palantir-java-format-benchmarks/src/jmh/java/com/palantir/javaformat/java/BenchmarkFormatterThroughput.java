@@ -0,0 +1,79 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.Corpus;
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.PreparedFile;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Formats files from the {@code testdata} corpus on every available core at once, to show how well formatting scales
+ * with threads, e.g. in the CLI's thread pool or a multi-threaded {@code FormatterService}. Compare against a run with
+ * {@code -t 1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5)
+@Warmup(iterations = 3, time = 5)
+@Threads(Threads.MAX)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+public class BenchmarkFormatterThroughput {
+    private static final Formatter FORMATTER =
+            Formatter.createFormatter(JavaFormatterOptions.builder().style(Style.PALANTIR).build());
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /** Each thread works through the corpus from a different starting point. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = THREADS.getAndIncrement() * 17;
+    }
+
+    @Benchmark
+    public String formatFile(Corpus corpus, Cursor cursor) throws FormatterException {
+        PreparedFile file = corpus.files.get(Math.floorMod(cursor.next++, corpus.files.size()));
+        return FORMATTER.formatSource(file.text);
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkFormatterThroughput.class.getSimpleName()).build()).run();
+    }
+}
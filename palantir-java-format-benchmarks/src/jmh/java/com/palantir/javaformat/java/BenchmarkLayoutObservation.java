@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.doc.Level;
+import com.palantir.javaformat.doc.NoopSink;
+import com.palantir.javaformat.doc.Obs;
+import com.palantir.javaformat.doc.Obs.FinishExplorationNode;
+import com.palantir.javaformat.doc.Obs.FinishLevelNode;
+import com.palantir.javaformat.doc.State;
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.Corpus;
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.FreshDocs;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@code gc.alloc.rate.norm} of laying out the {@code testdata} corpus with the stateless observation nodes
+ * used outside of debug mode, against tracking every exploration as was done before, with a sink that discards it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class BenchmarkLayoutObservation {
+    private static final int MAX_LINE_LENGTH =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build().maxLineLength();
+
+    @Param({"NOOP", "TRACKED"})
+    public Observation observation;
+
+    public enum Observation {
+        NOOP {
+            @Override
+            Obs.Sink sink() {
+                return new NoopSink();
+            }
+        },
+        TRACKED {
+            @Override
+            Obs.Sink sink() {
+                return new DiscardingSink();
+            }
+        };
+
+        abstract Obs.Sink sink();
+    }
+
+    @Benchmark
+    public void computeBreaks(Corpus corpus, FreshDocs fresh, Blackhole blackhole) {
+        for (int i = 0; i < corpus.files.size(); i++) {
+            Level doc = fresh.docs.get(i);
+            blackhole.consume(doc.computeBreaks(
+                    corpus.files.get(i).commentsHelper,
+                    MAX_LINE_LENGTH,
+                    State.startingState(),
+                    Obs.createRoot(observation.sink())));
+        }
+    }
+
+    /** Builds the whole exploration tree like a real sink would, but throws it away. */
+    private static final class DiscardingSink implements Obs.Sink {
+        @Override
+        public FinishExplorationNode startExplorationNode(
+                int exporationId,
+                OptionalInt parentLevelId,
+                String humanDescription,
+                int startColumn,
+                Optional<State> incomingState) {
+            return (parentLevel, newState) -> {};
+        }
+
+        @Override
+        public FinishLevelNode writeLevelNode(
+                int levelNodeId, int parentExplorationId, State incomingState, Level level) {
+            return acceptedExplorationId -> {};
+        }
+
+        @Override
+        public String getOutput() {
+            return "";
+        }
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(BenchmarkLayoutObservation.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build())
+                .run();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.Level;
+import com.palantir.javaformat.doc.NoopSink;
+import com.palantir.javaformat.doc.Obs;
+import com.palantir.javaformat.doc.State;
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.PreparedFile;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lays out a single generated class of about 10k lines, with and without laying out its members in parallel on the
+ * common fork-join pool. The speedup is bounded by the number of cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class BenchmarkParallelLayout {
+    private static final int MAX_LINE_LENGTH =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build().maxLineLength();
+
+    private static final int MEMBERS = 1500;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private PreparedFile file;
+
+    /** A fresh doc, since laying out a doc caches results in it. */
+    private Level doc;
+
+    @Setup
+    public void setUp() throws FormatterException {
+        StringBuilder text = new StringBuilder("package gen;\n\nimport java.util.List;\n")
+                .append("import java.util.stream.Collectors;\n\npublic final class Generated {\n");
+        for (int i = 0; i < MEMBERS; i++) {
+            text.append("private static final String FIELD_")
+                    .append(i)
+                    .append(" = \"value number ")
+                    .append(i)
+                    .append(" of the generated constants that is quite long\";\n");
+        }
+        for (int i = 0; i < MEMBERS; i++) {
+            text.append("public List<String> method")
+                    .append(i)
+                    .append("(List<String> input, int limit) {\n")
+                    .append("if (input.isEmpty()) { return List.of(); }\n")
+                    .append("List<String> r = input.stream().filter(s -> s.length() > limit && s.startsWith(FIELD_")
+                    .append(i)
+                    .append(")).map(s -> s.substring(0, Math.min(s.length(), limit)).trim().toLowerCase())")
+                    .append(".sorted().collect(Collectors.toList());\n")
+                    .append("helper(r, FIELD_")
+                    .append(i)
+                    .append(", limit, \"some literal argument\", \"another literal argument that is long\", ")
+                    .append(i)
+                    .append(");\nreturn r;\n}\n");
+        }
+        text.append("private static void helper(List<String> r, String a, int b, String c, String d, int e) {}\n}\n");
+        file = new PreparedFile(text.toString());
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void setUpDoc() {
+        doc = new DocBuilder().withOps(file.opsOutput.ops()).build();
+    }
+
+    @Benchmark
+    public State computeBreaks() {
+        return doc.computeBreaks(
+                file.commentsHelper,
+                MAX_LINE_LENGTH,
+                State.startingState().withLayoutPool(parallel ? ForkJoinPool.commonPool() : null),
+                Obs.createRoot(new NoopSink()));
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkParallelLayout.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.java.BenchmarkFormatterPhases.Corpus;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The cost per file of the {@code testdata} inputs of 1 to 5 KB, the size of most files in a typical codebase, where
+ * the fixed cost of setting up javac to lex and parse a file matters most. Each invocation handles the next file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {
+            "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+        })
+@State(Scope.Thread)
+public class BenchmarkSmallFiles {
+    private static final Formatter FORMATTER =
+            Formatter.createFormatter(JavaFormatterOptions.builder().style(Style.PALANTIR).build());
+
+    private List<String> files;
+    private int next = 0;
+
+    @Setup
+    public void setUp(Corpus corpus) {
+        files = corpus.files.stream()
+                .map(file -> file.text)
+                .filter(text -> text.length() >= 1024 && text.length() <= 5 * 1024)
+                .collect(Collectors.toList());
+    }
+
+    private String nextFile() {
+        return files.get(Math.floorMod(next++, files.size()));
+    }
+
+    /** Lexing and parsing, which is where the setup of javac goes. */
+    @Benchmark
+    public JCCompilationUnit lexAndParse() throws FormatterException {
+        FormattingSession session = new FormattingSession(nextFile());
+        session.javaInput();
+        return session.unit();
+    }
+
+    @Benchmark
+    public String formatSourceAndFixImports() throws FormatterException {
+        return FORMATTER.formatSourceAndFixImports(nextFile());
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BenchmarkSmallFiles.class.getSimpleName()).build()).run();
+    }
+}
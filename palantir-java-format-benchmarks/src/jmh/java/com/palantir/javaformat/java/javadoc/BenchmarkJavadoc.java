@@ -0,0 +1,116 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java.javadoc;
+
+import com.palantir.javaformat.java.JavaFormatterOptions;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import com.palantir.javaformat.java.javadoc.JavadocLexer.LexException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lexes and formats every Javadoc comment in the formatter's own sources and the {@code testdata} corpus, which between
+ * them have most of the HTML, inline and block tags that API docs use. Every invocation processes all comments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkJavadoc {
+    private static final int MAX_LINE_LENGTH =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build().maxLineLength();
+
+    private final List<String> comments = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        Path formatter = Paths.get(".").toAbsolutePath().resolve("../palantir-java-format/src");
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(formatter)) {
+            files = paths.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.endsWith(".java") || name.endsWith(".input");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            for (int start = text.indexOf("/**"); start != -1; start = text.indexOf("/**", start + 1)) {
+                int end = text.indexOf("*/", start + "/**".length());
+                if (end == -1) {
+                    break;
+                }
+                if (end > start + "/**".length()) {
+                    comments.add(text.substring(start, end + "*/".length()));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void lex(Blackhole blackhole) {
+        for (String comment : comments) {
+            try {
+                blackhole.consume(JavadocLexer.lex(comment));
+            } catch (LexException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        JavadocFormatter formatter = new JavadocFormatter(MAX_LINE_LENGTH);
+        for (String comment : comments) {
+            blackhole.consume(formatter.formatJavadoc(comment, 4));
+        }
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(BenchmarkJavadoc.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build())
+                .run();
+    }
+}
@@ -41,14 +41,15 @@ public final class BootstrappingFormatterService implements FormatterService {
 
     private static final String FORMATTER_MAIN_CLASS = "com.palantir.javaformat.java.Main";
 
-    private final Path jdkPath;
-    private final Integer jdkMajorVersion;
-    private final List<Path> implementationClassPath;
+    private final FormatterWorkerPool workers;
 
     public BootstrappingFormatterService(Path jdkPath, Integer jdkMajorVersion, List<Path> implementationClassPath) {
-        this.jdkPath = jdkPath;
-        this.jdkMajorVersion = jdkMajorVersion;
-        this.implementationClassPath = implementationClassPath;
+        FormatterLaunchArgs launchArgs = FormatterLaunchArgs.builder()
+                .jdkPath(jdkPath)
+                .withJvmArgsForVersion(jdkMajorVersion)
+                .implementationClasspath(implementationClassPath)
+                .build();
+        this.workers = new FormatterWorkerPool(launchArgs.toArgs(), Optional.ofNullable(jdkPath.getParent()));
     }
 
     @Override
@@ -81,16 +82,11 @@ public final class BootstrappingFormatterService implements FormatterService {
     private ImmutableList<Replacement> getFormatReplacementsInternal(String input, Collection<Range<Integer>> ranges)
             throws IOException {
         FormatterCliArgs command = FormatterCliArgs.builder()
-                .jdkPath(jdkPath)
-                .withJvmArgsForVersion(jdkMajorVersion)
-                .implementationClasspath(implementationClassPath)
                 .outputReplacements(true)
                 .characterRanges(ranges.stream().map(RangeUtils::toStringRange).collect(Collectors.toList()))
                 .build();
 
-        @SuppressWarnings("for-rollout:NullAway")
-        Optional<String> output =
-                FormatterCommandRunner.runWithStdin(command.toArgs(), input, Optional.of(jdkPath.getParent()));
+        Optional<String> output = workers.runWithStdin(command.toArgs(), input);
         if (output.isEmpty() || output.get().isEmpty()) {
             return ImmutableList.of();
         }
@@ -98,22 +94,13 @@ public final class BootstrappingFormatterService implements FormatterService {
     }
 
     private String runFormatterCommand(String input) throws IOException {
-        FormatterCliArgs command = FormatterCliArgs.builder()
-                .jdkPath(jdkPath)
-                .withJvmArgsForVersion(jdkMajorVersion)
-                .implementationClasspath(implementationClassPath)
-                .outputReplacements(false)
-                .build();
-        return FormatterCommandRunner.runWithStdin(command.toArgs(), input, Optional.ofNullable(jdkPath.getParent()))
-                .orElse(input);
+        FormatterCliArgs command = FormatterCliArgs.builder().outputReplacements(false).build();
+        return workers.runWithStdin(command.toArgs(), input).orElse(input);
     }
 
+    /** The command that starts a formatter JVM, to which the formatter's own arguments are appended. */
     @Value.Immutable
-    interface FormatterCliArgs {
-        List<String> characterRanges();
-
-        boolean outputReplacements();
-
+    interface FormatterLaunchArgs {
         Path jdkPath();
 
         List<Path> implementationClasspath();
@@ -121,7 +108,7 @@ public final class BootstrappingFormatterService implements FormatterService {
         List<String> jvmArgs();
 
         default List<String> toArgs() {
-            ImmutableList.Builder<String> args = ImmutableList.<String>builder()
+            return ImmutableList.<String>builder()
                     .add(jdkPath().toAbsolutePath().toString())
                     .addAll(jvmArgs())
                     .add(
@@ -129,7 +116,37 @@ public final class BootstrappingFormatterService implements FormatterService {
                             implementationClasspath().stream()
                                     .map(path -> path.toAbsolutePath().toString())
                                     .collect(Collectors.joining(System.getProperty("path.separator"))))
-                    .add(FORMATTER_MAIN_CLASS);
+                    .add(FORMATTER_MAIN_CLASS)
+                    .build();
+        }
+
+        static Builder builder() {
+            return new Builder();
+        }
+
+        final class Builder extends ImmutableFormatterLaunchArgs.Builder {
+            Builder withJvmArgsForVersion(Integer majorJvmVersion) {
+                if (majorJvmVersion >= 16) {
+                    addJvmArgs(
+                            "--add-exports", "jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+                            "--add-exports", "jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+                            "--add-exports", "jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+                            "--add-exports", "jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+                            "--add-exports", "jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED");
+                }
+                return this;
+            }
+        }
+    }
+
+    @Value.Immutable
+    interface FormatterCliArgs {
+        List<String> characterRanges();
+
+        boolean outputReplacements();
+
+        default List<String> toArgs() {
+            ImmutableList.Builder<String> args = ImmutableList.builder();
 
             if (!characterRanges().isEmpty()) {
                 args.add("--character-ranges", Joiner.on(',').join(characterRanges()));
@@ -150,18 +167,6 @@ public final class BootstrappingFormatterService implements FormatterService {
             return new Builder();
         }
 
-        final class Builder extends ImmutableFormatterCliArgs.Builder {
-            Builder withJvmArgsForVersion(Integer majorJvmVersion) {
-                if (majorJvmVersion >= 16) {
-                    addJvmArgs(
-                            "--add-exports", "jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
-                            "--add-exports", "jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
-                            "--add-exports", "jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
-                            "--add-exports", "jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
-                            "--add-exports", "jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED");
-                }
-                return this;
-            }
-        }
+        final class Builder extends ImmutableFormatterCliArgs.Builder {}
     }
 }
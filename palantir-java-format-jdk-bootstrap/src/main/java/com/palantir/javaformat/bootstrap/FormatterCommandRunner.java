@@ -30,6 +30,12 @@ final class FormatterCommandRunner {
 
     static Optional<String> runWithStdin(List<String> command, String input, Optional<Path> workingDirectory)
             throws IOException {
+        return checkResult(command, workingDirectory, run(command, input, workingDirectory));
+    }
+
+    /** Runs {@code command} in a new process with {@code input} on stdin, without interpreting the result. */
+    static FormatterWorkerPool.Result run(List<String> command, String input, Optional<Path> workingDirectory)
+            throws IOException {
         ProcessBuilder processBuilder = new ProcessBuilder().command(command);
         Process process = workingDirectory
                 .map(dir -> processBuilder.directory(dir.toFile()))
@@ -49,17 +55,24 @@ final class FormatterCommandRunner {
             throw new RuntimeException("Interrupted while executing command", e);
         }
 
-        if (process.exitValue() != 0) {
-            String stderr = readToString(process.getErrorStream());
-            if (isSyntaxError(stderr)) {
+        String stderr = process.exitValue() != 0 ? readToString(process.getErrorStream()) : "";
+        return new FormatterWorkerPool.Result(process.exitValue(), stdout, stderr);
+    }
+
+    /** Interprets the result of a formatter invocation, whether it ran in its own process or on a worker. */
+    static Optional<String> checkResult(
+            List<String> command, Optional<Path> workingDirectory, FormatterWorkerPool.Result result)
+            throws IOException {
+        if (result.exitCode() != 0) {
+            if (isSyntaxError(result.stderr())) {
                 // Don't surface errors due to the formatter failing to parse the java file due to syntax errors.
                 // In this case, we just want to silently do nothing and not surface an error to e.g. Intellij.
                 return Optional.empty();
             }
-            throw new IOException(getErrorMessage(command, workingDirectory, stdout, stderr));
+            throw new IOException(getErrorMessage(command, workingDirectory, result.stdout(), result.stderr()));
         }
 
-        return Optional.of(stdout);
+        return Optional.of(result.stdout());
     }
 
     /**
@@ -0,0 +1,404 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.bootstrap;
+
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of long-lived formatter processes started with {@code --server}, so that formatting a file costs a
+ * round trip to a warm process rather than JVM startup plus a cold JIT.
+ *
+ * <p>Workers are started on demand, up to {@code maxWorkers}, health-checked when they start, replaced if they die
+ * mid-request, and shut down once they have been idle for {@code idleTimeout}. If the formatter implementation is too
+ * old to understand {@code --server}, every request falls back to running a one-off process. If workers keep failing
+ * for any other reason, the failure is reported together with what the worker wrote to stderr, and requests run as
+ * one-off processes for a while before workers are tried again.
+ *
+ * <p>Works with both the Java formatter and the native image, which share the same command line. See
+ * {@code com.palantir.javaformat.java.FormatterServer} for the wire format.
+ */
+public final class FormatterWorkerPool implements Closeable {
+    static final int DEFAULT_MAX_WORKERS = 2;
+    static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private static final Duration MIN_BACK_OFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACK_OFF = Duration.ofMinutes(1);
+
+    /** How long to wait for a failed worker to exit, so that everything it wrote to stderr is there to report. */
+    private static final Duration EXIT_TIMEOUT = Duration.ofSeconds(5);
+
+    /** What formatters that predate {@code --server} print, followed by their usage, when they are asked to serve. */
+    private static final String SERVER_UNSUPPORTED_ERROR = "unexpected flag: --server";
+
+    private static final ScheduledExecutorService IDLE_REAPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "palantir-java-format-idle-workers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<String> launchCommand;
+    private final Optional<Path> workingDirectory;
+    private final Duration idleTimeout;
+    private final Semaphore permits;
+
+    /** Workers that are not currently handling a request, most recently used first. */
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+
+    private volatile boolean serverSupported = true;
+
+    /** Guarded by {@code this}. */
+    private boolean closed = false;
+
+    /** Whether {@link #shutDownIdleWorkers} is due to run, guarded by {@code this}. */
+    private boolean idleShutdownScheduled = false;
+
+    /** Until when requests run as one-off processes because workers failed, guarded by {@code this}. */
+    private long backOffUntilNanos = System.nanoTime();
+
+    /** How long to back off for the next time workers fail, guarded by {@code this}. */
+    private Duration nextBackOff = MIN_BACK_OFF;
+
+    /**
+     * @param launchCommand the command that starts the formatter (e.g. the native image, or {@code java} with a
+     *     classpath and main class), without any formatter arguments
+     */
+    public FormatterWorkerPool(List<String> launchCommand, Optional<Path> workingDirectory) {
+        this(launchCommand, workingDirectory, DEFAULT_MAX_WORKERS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public FormatterWorkerPool(
+            List<String> launchCommand, Optional<Path> workingDirectory, int maxWorkers, Duration idleTimeout) {
+        this.launchCommand = ImmutableList.copyOf(launchCommand);
+        this.workingDirectory = workingDirectory;
+        this.idleTimeout = idleTimeout;
+        this.permits = new Semaphore(maxWorkers, true);
+    }
+
+    /**
+     * Formats {@code input} with the given formatter arguments (which must read from stdin), with the same semantics
+     * as {@link FormatterCommandRunner#runWithStdin}.
+     */
+    Optional<String> runWithStdin(List<String> formatterArgs, String input) throws IOException {
+        return FormatterCommandRunner.checkResult(
+                oneOffCommand(formatterArgs), workingDirectory, run(formatterArgs, input));
+    }
+
+    /**
+     * Runs the formatter with the given arguments (which must read from stdin) on {@code input}, and returns what a
+     * one-off formatter process would have exited with and written to stdout and stderr.
+     */
+    public Result run(List<String> formatterArgs, String input) throws IOException {
+        if (!serverSupported || isBackingOff()) {
+            return FormatterCommandRunner.run(oneOffCommand(formatterArgs), input, workingDirectory);
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a formatter worker", e);
+        }
+        try {
+            Optional<Result> result;
+            try {
+                result = runOnWorker(formatterArgs, input);
+            } catch (IOException e) {
+                // The worker most likely crashed, e.g. by running out of memory. Give a fresh one a single try.
+                try {
+                    result = runOnWorker(formatterArgs, input);
+                } catch (IOException retryFailure) {
+                    retryFailure.addSuppressed(e);
+                    backOff();
+                    throw retryFailure;
+                }
+            }
+            if (result.isEmpty()) {
+                return FormatterCommandRunner.run(oneOffCommand(formatterArgs), input, workingDirectory);
+            }
+            return result.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Shuts down all workers. Requests that are still running finish first. */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Worker worker : idleWorkers) {
+            worker.destroy();
+        }
+        idleWorkers.clear();
+    }
+
+    private List<String> oneOffCommand(List<String> formatterArgs) {
+        return ImmutableList.<String>builder()
+                .addAll(launchCommand)
+                .addAll(formatterArgs)
+                .build();
+    }
+
+    /** Returns empty if the formatter does not support {@code --server}. */
+    private Optional<Result> runOnWorker(List<String> formatterArgs, String input) throws IOException {
+        Optional<Worker> maybeWorker = takeIdleWorker();
+        if (maybeWorker.isEmpty()) {
+            maybeWorker = startWorker();
+            if (maybeWorker.isEmpty()) {
+                return Optional.empty();
+            }
+        }
+        Worker worker = maybeWorker.get();
+        Result result;
+        try {
+            result = worker.send(formatterArgs, input);
+        } catch (IOException e) {
+            throw new IOException("Formatter worker failed" + worker.destroyAndDescribeExit(), e);
+        } catch (RuntimeException e) {
+            worker.destroy();
+            throw e;
+        }
+        returnIdleWorker(worker);
+        return Optional.of(result);
+    }
+
+    private Optional<Worker> startWorker() throws IOException {
+        List<String> command = ImmutableList.<String>builder()
+                .addAll(launchCommand)
+                .add("--server")
+                .build();
+        // Kept in a file rather than a pipe, so that a worker never blocks on it, and only read if the worker fails
+        Path stderr = Files.createTempFile("palantir-java-format-worker", ".log");
+        ProcessBuilder processBuilder = new ProcessBuilder().command(command).redirectError(stderr.toFile());
+        workingDirectory.ifPresent(dir -> processBuilder.directory(dir.toFile()));
+        Worker worker;
+        try {
+            worker = new Worker(processBuilder.start(), stderr);
+        } catch (IOException e) {
+            Files.deleteIfExists(stderr);
+            throw e;
+        }
+        try {
+            worker.send(ImmutableList.of(), "");
+        } catch (IOException e) {
+            String exit = worker.destroyAndDescribeExit();
+            if (exit.contains(SERVER_UNSUPPORTED_ERROR)) {
+                // Formatters that predate --server print their usage and exit instead of answering the health check.
+                serverSupported = false;
+                return Optional.empty();
+            }
+            throw new IOException("Formatter worker failed its health check" + exit, e);
+        }
+        synchronized (this) {
+            nextBackOff = MIN_BACK_OFF;
+        }
+        return Optional.of(worker);
+    }
+
+    private synchronized boolean isBackingOff() {
+        return backOffUntilNanos - System.nanoTime() > 0;
+    }
+
+    /** Runs requests as one-off processes for a while, backing off for longer each time workers keep failing. */
+    private synchronized void backOff() {
+        backOffUntilNanos = System.nanoTime() + nextBackOff.toNanos();
+        Duration doubled = nextBackOff.multipliedBy(2);
+        nextBackOff = doubled.compareTo(MAX_BACK_OFF) < 0 ? doubled : MAX_BACK_OFF;
+    }
+
+    private synchronized Optional<Worker> takeIdleWorker() {
+        while (!idleWorkers.isEmpty()) {
+            Worker worker = idleWorkers.removeFirst();
+            if (worker.process.isAlive()) {
+                return Optional.of(worker);
+            }
+            worker.destroy();
+        }
+        return Optional.empty();
+    }
+
+    private synchronized void returnIdleWorker(Worker worker) {
+        if (closed) {
+            worker.destroy();
+            return;
+        }
+        worker.lastUsedNanos = System.nanoTime();
+        idleWorkers.addFirst(worker);
+        if (!idleShutdownScheduled) {
+            scheduleIdleShutdown(idleTimeout.toNanos());
+        }
+    }
+
+    private void scheduleIdleShutdown(long delayNanos) {
+        idleShutdownScheduled = true;
+        IDLE_REAPER.schedule(this::shutDownIdleWorkers, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void shutDownIdleWorkers() {
+        idleShutdownScheduled = false;
+        long now = System.nanoTime();
+        long nextDelayNanos = Long.MAX_VALUE;
+        Iterator<Worker> it = idleWorkers.iterator();
+        while (it.hasNext()) {
+            Worker worker = it.next();
+            long remainingNanos = idleTimeout.toNanos() - (now - worker.lastUsedNanos);
+            if (remainingNanos <= 0) {
+                it.remove();
+                worker.destroy();
+            } else {
+                nextDelayNanos = Math.min(nextDelayNanos, remainingNanos);
+            }
+        }
+        if (!idleWorkers.isEmpty()) {
+            scheduleIdleShutdown(nextDelayNanos);
+        }
+    }
+
+    private static final class Worker {
+        private final Process process;
+        private final Path stderr;
+        private final DataOutputStream requests;
+        private final DataInputStream responses;
+        private long lastUsedNanos;
+
+        Worker(Process process, Path stderr) {
+            this.process = process;
+            this.stderr = stderr;
+            this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        Result send(List<String> args, String input) throws IOException {
+            requests.writeInt(args.size());
+            for (String arg : args) {
+                writeBytes(arg.getBytes(StandardCharsets.UTF_8));
+            }
+            writeBytes(input.getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+
+            int exitCode = responses.readInt();
+            String stdout = new String(readBytes(), StandardCharsets.UTF_8);
+            String stderr = new String(readBytes(), StandardCharsets.UTF_8);
+            return new Result(exitCode, stdout, stderr);
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            requests.writeInt(bytes.length);
+            requests.write(bytes);
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[responses.readInt()];
+            responses.readFully(bytes);
+            return bytes;
+        }
+
+        void destroy() {
+            closeRequests();
+            process.destroy();
+            deleteStderr();
+        }
+
+        /**
+         * Shuts down a worker that failed, giving it a moment to exit by itself first, and describes how it exited
+         * including everything it wrote to stderr.
+         */
+        String destroyAndDescribeExit() {
+            closeRequests();
+            String exitCode;
+            try {
+                exitCode = process.waitFor(EXIT_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)
+                        ? String.valueOf(process.exitValue())
+                        : "<still running>";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exitCode = "<interrupted>";
+            }
+            process.destroy();
+            String output;
+            try {
+                output = new String(Files.readAllBytes(stderr), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                output = "<could not read " + stderr + ": " + e.getMessage() + ">";
+            }
+            deleteStderr();
+            return String.join("\n", "", "Exit value: " + exitCode, "Stderr:", output);
+        }
+
+        private void closeRequests() {
+            // Closing stdin asks the server to exit once it's done with any request it's working on.
+            try {
+                requests.close();
+            } catch (IOException e) {
+                // Nothing left to do if the pipe is already broken
+            }
+        }
+
+        private void deleteStderr() {
+            try {
+                Files.deleteIfExists(stderr);
+            } catch (IOException e) {
+                // The process may still hold it open on Windows. Only then is the file left to the exit hook, which
+                // would otherwise grow with every worker a long-lived pool starts.
+                stderr.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /** The outcome of running the formatter on a single input. */
+    public static final class Result {
+        private final int exitCode;
+        private final String stdout;
+        private final String stderr;
+
+        Result(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        public int exitCode() {
+            return exitCode;
+        }
+
+        public String stdout() {
+            return stdout;
+        }
+
+        public String stderr() {
+            return stderr;
+        }
+    }
+}
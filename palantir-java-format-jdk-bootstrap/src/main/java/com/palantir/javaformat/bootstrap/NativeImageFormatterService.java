@@ -37,24 +37,24 @@ import org.immutables.value.Value;
 public class NativeImageFormatterService implements FormatterService {
     private static final ObjectMapper MAPPER =
             JsonMapper.builder().addModule(new GuavaModule()).build();
-    private final Path nativeImagePath;
+    private final FormatterWorkerPool workers;
 
     public NativeImageFormatterService(Path nativeImagePath) {
-        this.nativeImagePath = nativeImagePath;
+        this.workers = new FormatterWorkerPool(
+                ImmutableList.of(nativeImagePath.toAbsolutePath().toString()),
+                Optional.ofNullable(nativeImagePath.getParent()));
     }
 
     @Override
     public ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> ranges) {
         try {
             FormatterNativeImageArgs command = FormatterNativeImageArgs.builder()
-                    .nativeImagePath(nativeImagePath)
                     .outputReplacements(true)
                     .characterRanges(
                             ranges.stream().map(RangeUtils::toStringRange).collect(Collectors.toList()))
                     .build();
 
-            Optional<String> output = FormatterCommandRunner.runWithStdin(
-                    command.toArgs(), input, Optional.ofNullable(nativeImagePath.getParent()));
+            Optional<String> output = workers.runWithStdin(command.toArgs(), input);
             if (output.isEmpty() || output.get().isEmpty()) {
                 return ImmutableList.of();
             }
@@ -83,13 +83,8 @@ public class NativeImageFormatterService implements FormatterService {
     }
 
     private String runFormatterCommand(String input) throws IOException {
-        FormatterNativeImageArgs command = FormatterNativeImageArgs.builder()
-                .nativeImagePath(nativeImagePath)
-                .outputReplacements(false)
-                .build();
-        return FormatterCommandRunner.runWithStdin(
-                        command.toArgs(), input, Optional.ofNullable(nativeImagePath.getParent()))
-                .orElse(input);
+        FormatterNativeImageArgs command = FormatterNativeImageArgs.builder().outputReplacements(false).build();
+        return workers.runWithStdin(command.toArgs(), input).orElse(input);
     }
 
     @Value.Immutable
@@ -99,11 +94,8 @@ public class NativeImageFormatterService implements FormatterService {
 
         boolean outputReplacements();
 
-        Path nativeImagePath();
-
         default List<String> toArgs() {
-            ImmutableList.Builder<String> args = ImmutableList.<String>builder()
-                    .add(nativeImagePath().toAbsolutePath().toString());
+            ImmutableList.Builder<String> args = ImmutableList.builder();
 
             if (!characterRanges().isEmpty()) {
                 args.add("--character-ranges", Joiner.on(',').join(characterRanges()));
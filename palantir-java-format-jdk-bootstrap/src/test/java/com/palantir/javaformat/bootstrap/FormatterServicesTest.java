@@ -23,11 +23,14 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.java.FormatterException;
+import com.palantir.javaformat.java.FormatterInput;
+import com.palantir.javaformat.java.FormatterResult;
 import com.palantir.javaformat.java.FormatterService;
 import com.palantir.javaformat.java.Replacement;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
@@ -95,6 +98,29 @@ final class FormatterServicesTest {
                 .isEmpty();
     }
 
+    @ParameterizedTest
+    @MethodSource("getFormatters")
+    void can_format_batch(FormatterService formatterService) {
+        String input = getTestResourceContent("format.input");
+        String expectedOutput = getTestResourceContent("format.output");
+        List<FormatterInput> inputs = List.of(
+                FormatterInput.create(Path.of("A.java"), input, List.of(Range.open(0, input.length()))),
+                FormatterInput.create(Path.of("B.java"), input, List.of(Range.open(0, input.length()))));
+
+        List<FormatterResult> results = new ArrayList<>();
+        formatterService.getBatchFormatReplacements(inputs, results::add);
+
+        assertThat(results)
+                .extracting(FormatterResult::path)
+                .containsExactlyInAnyOrder(Path.of("A.java"), Path.of("B.java"));
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.replacements()).singleElement().satisfies(replacement -> {
+                assertThat(replacement.getReplacementString()).isEqualTo(expectedOutput);
+            });
+        });
+    }
+
     private static Stream<FormatterService> getFormatters() {
         return Stream.of(
                 new BootstrappingFormatterService(
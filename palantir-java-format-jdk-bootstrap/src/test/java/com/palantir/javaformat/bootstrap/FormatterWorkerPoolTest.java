@@ -0,0 +1,58 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.bootstrap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/** Runs the pool against shell scripts that stand in for formatters, echoing their input when run one-off. */
+@DisabledOnOs(OS.WINDOWS)
+final class FormatterWorkerPoolTest {
+
+    @Test
+    void runs_one_off_processes_if_server_is_unsupported() throws IOException {
+        try (FormatterWorkerPool pool =
+                poolFor("if [ \"$1\" = --server ]; then echo 'unexpected flag: --server' >&2; exit 0; fi; cat")) {
+            assertThat(pool.run(List.of("-"), "first").stdout()).isEqualTo("first");
+            assertThat(pool.run(List.of("-"), "second").stdout()).isEqualTo("second");
+        }
+    }
+
+    @Test
+    void reports_worker_stderr_and_backs_off_if_workers_fail() throws IOException {
+        try (FormatterWorkerPool pool =
+                poolFor("if [ \"$1\" = --server ]; then echo 'out of memory' >&2; exit 3; fi; cat")) {
+            assertThatThrownBy(() -> pool.run(List.of("-"), "input"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Exit value: 3")
+                    .hasMessageContaining("out of memory");
+
+            assertThat(pool.run(List.of("-"), "input").stdout()).isEqualTo("input");
+        }
+    }
+
+    private static FormatterWorkerPool poolFor(String script) {
+        return new FormatterWorkerPool(List.of("sh", "-c", script, "sh"), Optional.empty());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/** A single compilation unit submitted to {@link FormatterService#getBatchFormatReplacements}. */
+public final class FormatterInput {
+
+    /**
+     * @param path identifies the input in the corresponding {@link FormatterResult}; it is not read from or written to
+     * @param content the compilation unit to format
+     * @param ranges the character ranges to reformat
+     */
+    public static FormatterInput create(Path path, String content, Collection<Range<Integer>> ranges) {
+        return new FormatterInput(
+                checkNotNull(path, "Null path"), checkNotNull(content, "Null content"), ImmutableList.copyOf(ranges));
+    }
+
+    private final Path path;
+    private final String content;
+    private final ImmutableList<Range<Integer>> ranges;
+
+    private FormatterInput(Path path, String content, ImmutableList<Range<Integer>> ranges) {
+        this.path = path;
+        this.content = content;
+        this.ranges = ranges;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public String content() {
+        return content;
+    }
+
+    public ImmutableList<Range<Integer>> ranges() {
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        return "FormatterInput{path=" + path + ", ranges=" + ranges + '}';
+    }
+}
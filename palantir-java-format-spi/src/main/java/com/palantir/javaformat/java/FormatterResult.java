@@ -0,0 +1,99 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+
+/**
+ * The outcome of formatting a single {@link FormatterInput}: either the {@link Replacement}s to apply, together with
+ * any warnings about how they were chosen, or the diagnostics explaining why the input could not be formatted.
+ */
+public final class FormatterResult {
+
+    public static FormatterResult success(Path path, Iterable<Replacement> replacements) {
+        return success(path, replacements, ImmutableList.of());
+    }
+
+    public static FormatterResult success(
+            Path path, Iterable<Replacement> replacements, Iterable<FormatterDiagnostic> warnings) {
+        return new FormatterResult(
+                checkNotNull(path, "Null path"),
+                ImmutableList.copyOf(replacements),
+                ImmutableList.of(),
+                ImmutableList.copyOf(warnings));
+    }
+
+    public static FormatterResult failure(Path path, Iterable<FormatterDiagnostic> diagnostics) {
+        ImmutableList<FormatterDiagnostic> copied = ImmutableList.copyOf(diagnostics);
+        checkArgument(!copied.isEmpty(), "A failure must have at least one diagnostic");
+        return new FormatterResult(checkNotNull(path, "Null path"), ImmutableList.of(), copied, ImmutableList.of());
+    }
+
+    private final Path path;
+    private final ImmutableList<Replacement> replacements;
+    private final ImmutableList<FormatterDiagnostic> diagnostics;
+    private final ImmutableList<FormatterDiagnostic> warnings;
+
+    private FormatterResult(
+            Path path,
+            ImmutableList<Replacement> replacements,
+            ImmutableList<FormatterDiagnostic> diagnostics,
+            ImmutableList<FormatterDiagnostic> warnings) {
+        this.path = path;
+        this.replacements = replacements;
+        this.diagnostics = diagnostics;
+        this.warnings = warnings;
+    }
+
+    /** The {@link FormatterInput#path()} of the input this is the result for. */
+    public Path path() {
+        return path;
+    }
+
+    /** Whether the input was formatted, in which case {@link #diagnostics()} is empty. */
+    public boolean isSuccess() {
+        return diagnostics.isEmpty();
+    }
+
+    /** The replacements to apply, sorted from low index to high index, without overlaps. Empty on failure. */
+    public ImmutableList<Replacement> replacements() {
+        return replacements;
+    }
+
+    /** Why the input could not be formatted. Empty on success. */
+    public ImmutableList<FormatterDiagnostic> diagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Where the input was formatted differently than it would have been without limits, e.g. because formatting ran
+     * out of its {@link JavaFormatterOptions#layoutBudget()}. Empty on failure.
+     */
+    public ImmutableList<FormatterDiagnostic> warnings() {
+        return warnings;
+    }
+
+    @Override
+    public String toString() {
+        return "FormatterResult{path=" + path + ", replacements=" + replacements + ", diagnostics=" + diagnostics
+                + ", warnings=" + warnings + '}';
+    }
+}
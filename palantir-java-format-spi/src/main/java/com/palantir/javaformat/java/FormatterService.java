@@ -18,6 +18,7 @@ package com.palantir.javaformat.java;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * A stable facade for palantir-java-format. The implementation must be ServiceLoaded, to ensure its classpath remains
@@ -36,6 +37,35 @@ public interface FormatterService {
     ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> ranges)
             throws FormatterException;
 
+    /**
+     * Emits the {@link Replacement}s for many compilation units at once, so that implementations can amortise their
+     * per-call overhead (such as a round trip to another process) and format independent inputs concurrently.
+     *
+     * <p>Each input produces exactly one {@link FormatterResult}, which is handed to {@code results} on the calling
+     * thread as soon as it is available, and not necessarily in the order of {@code inputs}. Inputs that cannot be
+     * parsed, or that the formatter fails on, produce a failed result rather than aborting the batch.
+     *
+     * <p>The default implementation formats the inputs one at a time with {@link #getFormatReplacements(String,
+     * Collection)}.
+     *
+     * @param inputs the compilation units to format
+     * @param results receives the result for each input
+     */
+    default void getBatchFormatReplacements(Collection<FormatterInput> inputs, Consumer<FormatterResult> results) {
+        for (FormatterInput input : inputs) {
+            FormatterResult result;
+            try {
+                result = FormatterResult.success(input.path(), getFormatReplacements(input.content(), input.ranges()));
+            } catch (FormatterException e) {
+                result = FormatterResult.failure(input.path(), e.diagnostics());
+            } catch (RuntimeException | StackOverflowError e) {
+                result = FormatterResult.failure(
+                        input.path(), ImmutableList.of(FormatterDiagnostic.create(e.toString())));
+            }
+            results.accept(result);
+        }
+    }
+
     /**
      * Formats an input string (a Java compilation unit), reflows strings and fixes imports.
      *
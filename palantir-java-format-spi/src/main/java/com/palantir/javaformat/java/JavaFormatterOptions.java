@@ -14,7 +14,10 @@
 
 package com.palantir.javaformat.java;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.errorprone.annotations.Immutable;
+import java.util.OptionalInt;
 
 /**
  * Options for a google-java-format invocation.
@@ -62,10 +65,26 @@ public final class JavaFormatterOptions {
     /** Optional override for the maximum line length. If null, the style default is used. */
     private final Integer maxLineLengthOverride;
 
-    private JavaFormatterOptions(Style style, boolean formatJavadoc, Integer maxLineLengthOverride) {
+    /** Optional limit on the number of levels laid out per file. If null, there is no limit. */
+    private final Integer layoutBudget;
+
+    private final boolean parallelLayout;
+
+    private final boolean paranoidStringWrapping;
+
+    private JavaFormatterOptions(
+            Style style,
+            boolean formatJavadoc,
+            Integer maxLineLengthOverride,
+            Integer layoutBudget,
+            boolean parallelLayout,
+            boolean paranoidStringWrapping) {
         this.style = style;
         this.formatJavadoc = formatJavadoc;
         this.maxLineLengthOverride = maxLineLengthOverride;
+        this.layoutBudget = layoutBudget;
+        this.parallelLayout = parallelLayout;
+        this.paranoidStringWrapping = paranoidStringWrapping;
     }
 
     /** Returns the multiplier for the unit of indent. */
@@ -81,6 +100,34 @@ public final class JavaFormatterOptions {
         return formatJavadoc;
     }
 
+    /**
+     * Returns the most levels that the line-breaking search lays out for a single file before it stops trying
+     * alternatives, if limited.
+     *
+     * @see Builder#layoutBudget(int)
+     */
+    public OptionalInt layoutBudget() {
+        return layoutBudget != null ? OptionalInt.of(layoutBudget) : OptionalInt.empty();
+    }
+
+    /**
+     * Returns whether independent parts of a single file are laid out in parallel.
+     *
+     * @see Builder#parallelLayout(boolean)
+     */
+    public boolean parallelLayout() {
+        return parallelLayout;
+    }
+
+    /**
+     * Returns whether reflowed long strings are checked by comparing the whole parsed files.
+     *
+     * @see Builder#paranoidStringWrapping(boolean)
+     */
+    public boolean paranoidStringWrapping() {
+        return paranoidStringWrapping;
+    }
+
     /** Returns the code style. */
     public Style style() {
         return style;
@@ -105,6 +152,12 @@ public final class JavaFormatterOptions {
 
         private Integer maxLineLengthOverride = null;
 
+        private Integer layoutBudget = null;
+
+        private boolean parallelLayout = false;
+
+        private boolean paranoidStringWrapping = false;
+
         private Builder() {
         }
 
@@ -126,8 +179,43 @@ public final class JavaFormatterOptions {
             return this;
         }
 
+        /**
+         * Bounds the work done to lay out a single file, which is otherwise unbounded for some deeply nested code. The
+         * line-breaking search counts every level it lays out, and once it has laid out {@code maxLevels} of them, it
+         * breaks every remaining level without trying alternatives. The output then depends on the budget, but is
+         * still deterministic. Not limited by default.
+         */
+        public Builder layoutBudget(int maxLevels) {
+            checkArgument(maxLevels > 0, "layoutBudget must be positive: %s", maxLevels);
+            this.layoutBudget = maxLevels;
+            return this;
+        }
+
+        /**
+         * Lays out independent parts of a single file, such as the members of a class body, in parallel on the common
+         * fork-join pool. The output is the same either way, so this only helps with very large files. Ignored when a
+         * {@link #layoutBudget(int)} is set, since where a budget runs out depends on the order levels are laid out in.
+         * Off by default.
+         */
+        public Builder parallelLayout(boolean parallelLayout) {
+            this.parallelLayout = parallelLayout;
+            return this;
+        }
+
+        /**
+         * Checks that reflowing long strings didn't change a file by parsing it before and after, and comparing the
+         * pretty-printed trees with their string concatenations folded. By default, only the files' tokens are
+         * compared, with adjacent string literals folded, which catches any change other than to whitespace, comments
+         * or how string literals are split, in a fraction of the time. Off by default.
+         */
+        public Builder paranoidStringWrapping(boolean paranoidStringWrapping) {
+            this.paranoidStringWrapping = paranoidStringWrapping;
+            return this;
+        }
+
         public JavaFormatterOptions build() {
-            return new JavaFormatterOptions(style, formatJavadoc, maxLineLengthOverride);
+            return new JavaFormatterOptions(
+                    style, formatJavadoc, maxLineLengthOverride, layoutBudget, parallelLayout, paranoidStringWrapping);
         }
     }
 }
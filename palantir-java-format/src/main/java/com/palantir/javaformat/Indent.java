@@ -23,6 +23,7 @@ import com.palantir.javaformat.doc.Break;
 import com.palantir.javaformat.doc.BreakTag;
 import com.palantir.javaformat.doc.Level;
 import com.palantir.javaformat.doc.State;
+import java.util.Set;
 
 /**
  * An indent for a {@link Level} or {@link Break}. The indent is either a constant {@code int}, or a conditional
@@ -34,6 +35,9 @@ public abstract class Indent {
 
     public abstract int eval(State state);
 
+    /** Adds every {@link BreakTag} whose state can affect {@link #eval} to {@code conditions}. */
+    public abstract void addConditions(Set<BreakTag> conditions);
+
     /** A constant function, returning a constant indent. */
     @JsonTypeName("const")
     public static final class Const extends Indent {
@@ -55,6 +59,9 @@ public abstract class Indent {
             return n;
         }
 
+        @Override
+        public void addConditions(Set<BreakTag> _conditions) {}
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this).add("n", n).toString();
@@ -88,6 +95,13 @@ public abstract class Indent {
             return (state.wasBreakTaken(condition) ? thenIndent : elseIndent).eval(state);
         }
 
+        @Override
+        public void addConditions(Set<BreakTag> conditions) {
+            conditions.add(condition);
+            thenIndent.addConditions(conditions);
+            elseIndent.addConditions(conditions);
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableRangeMap;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.java.FormatterDiagnostic;
+import javax.annotation.Nullable;
 
 /** An input to the formatter. */
 public abstract class Input extends InputOutput {
@@ -113,6 +114,18 @@ public abstract class Input extends InputOutput {
 
     public abstract ImmutableMap<Integer, Integer> getPositionToColumnMap();
 
+    /** The {@link Token} whose [start, end] position range contains {@code position}, or {@code null} if none does. */
+    @Nullable
+    public Token getTokenAt(int position) {
+        return getPositionTokenMap().get(position);
+    }
+
+    /** The 0-based column of the {@link Tok} that starts at {@code position}, or -1 if no tok starts there. */
+    public int getColumnAt(int position) {
+        Integer column = getPositionToColumnMap().get(position);
+        return column == null ? -1 : column;
+    }
+
     public abstract String getText();
 
     @Override
@@ -49,7 +49,7 @@ public final class OpsBuilder {
 
     /** Return the actual size of the AST node at position, including comments. */
     public int actualSize(int position, int length) {
-        Input.Token startToken = input.getPositionTokenMap().get(position);
+        Input.Token startToken = input.getTokenAt(position);
         @SuppressWarnings("for-rollout:NullAway")
         int start = startToken.getTok().getPosition();
         for (Input.Tok tok : startToken.getToksBefore()) {
@@ -57,7 +57,7 @@ public final class OpsBuilder {
                 start = Math.min(start, tok.getPosition());
             }
         }
-        Input.Token endToken = input.getPositionTokenMap().get(position + length - 1);
+        Input.Token endToken = input.getTokenAt(position + length - 1);
         @SuppressWarnings("for-rollout:NullAway")
         int end = endToken.getTok().getPosition() + endToken.getTok().length();
         for (Input.Tok tok : endToken.getToksAfter()) {
@@ -70,7 +70,7 @@ public final class OpsBuilder {
 
     /** Return the start column of the token at {@code position}, including leading comments. */
     public Integer actualStartColumn(int position) {
-        Input.Token startToken = input.getPositionTokenMap().get(position);
+        Input.Token startToken = input.getTokenAt(position);
         @SuppressWarnings("for-rollout:NullAway")
         int start = startToken.getTok().getPosition();
         int line0 = input.getLineNumber(start);
@@ -499,8 +499,6 @@ public final class OpsBuilder {
         return token.getTok().getIndex();
     }
 
-    private static final NonBreakingSpace SPACE = NonBreakingSpace.make();
-
     @Target(ElementType.TYPE)
     @Retention(RetentionPolicy.SOURCE)
     @Value.Style(overshadowImplementation = true)
@@ -575,7 +573,7 @@ public final class OpsBuilder {
                     if (lastWasComment && newlines > 0) {
                         tokOps.put(j, Break.makeForced());
                     } else if (space) {
-                        tokOps.put(j, SPACE);
+                        tokOps.put(j, NonBreakingSpace.make());
                     }
                     // Now we've seen the Token; output the toksAfter.
 
@@ -604,7 +602,7 @@ public final class OpsBuilder {
                                                 tokenOp.breakAndIndentTrailingComment()
                                                         .orElse(Const.ZERO)));
                             } else {
-                                tokOps.put(tokAfterPos, SPACE);
+                                tokOps.put(tokAfterPos, NonBreakingSpace.make());
                             }
                             tokOps.putAll(tokAfterPos, makeComment(tokAfter));
                             if (breakAfter) {
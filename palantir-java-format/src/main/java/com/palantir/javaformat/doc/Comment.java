@@ -91,7 +91,7 @@ public final class Comment extends Doc implements Op {
         int firstLineLength = text.length() - Iterators.getLast(Newlines.lineOffsetIterator(text));
         return state.withColumn(state.column() + firstLineLength)
                 .addNewLines(Iterators.size(Newlines.lineOffsetIterator(text)))
-                .withTokState(this, ImmutableTokState.of(text));
+                .withTokText(this, text);
     }
 
     @Override
@@ -16,7 +16,6 @@
 
 package com.palantir.javaformat.doc;
 
-import com.google.common.base.Suppliers;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.CommentsHelper;
@@ -24,6 +23,7 @@ import com.palantir.javaformat.Input;
 import com.palantir.javaformat.Op;
 import com.palantir.javaformat.OpsBuilder;
 import com.palantir.javaformat.Output;
+import javax.annotation.Nullable;
 
 /**
  * {@link com.palantir.javaformat.java.JavaInputAstVisitor JavaInputAstVisitor} outputs a sequence of {@link Op}s using
@@ -37,14 +37,22 @@ public abstract class Doc extends HasUniqueId {
     static final Range<Integer> EMPTY_RANGE = Range.closedOpen(-1, -1);
     static final DiscreteDomain<Integer> INTEGERS = DiscreteDomain.integers();
 
-    @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<Float> memoizedWidth = Suppliers.memoize(this::computeWidth)::get;
+    /** Set once {@link #freeze} has computed the fields below. */
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private boolean frozen = false;
 
-    @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<String> memoizedFlat = Suppliers.memoize(this::computeFlat)::get;
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private float width;
+
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private @Nullable Range<Integer> range;
 
+    /**
+     * Computed on first use rather than by {@link #freeze}, as most levels are never written flat and eagerly
+     * concatenating their contents would copy every token once per enclosing level. Racing to compute it is harmless.
+     */
     @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<Range<Integer>> memoizedRange = Suppliers.memoize(this::computeRange)::get;
+    private @Nullable String flat;
 
     /**
      * Return the width of a {@code Doc}, or {@code Float.POSITIVE_INFINITY} if it must be broken.
@@ -52,7 +60,10 @@ public abstract class Doc extends HasUniqueId {
      * @return the width
      */
     final float getWidth() {
-        return memoizedWidth.get();
+        if (!frozen) {
+            freeze();
+        }
+        return width;
     }
 
     /**
@@ -62,13 +73,44 @@ public abstract class Doc extends HasUniqueId {
      * @return the flat-string value
      */
     public final String getFlat() {
-        return memoizedFlat.get();
+        String result = flat;
+        if (result == null) {
+            result = computeFlat();
+            flat = result;
+        }
+        return result;
     }
 
+    @SuppressWarnings("for-rollout:NullAway") // Set by freeze
     final Range<Integer> range() {
-        return memoizedRange.get();
+        if (!frozen) {
+            freeze();
+        }
+        return range;
+    }
+
+    /**
+     * Compute and store everything the layout search needs to know about this {@code Doc} and the {@code Doc}s inside
+     * it, so that it can be queried in constant time without locking. Must only be called once the {@code Doc} is
+     * complete, which {@link DocBuilder#build} takes care of for the whole tree.
+     */
+    final void freeze() {
+        if (frozen) {
+            return;
+        }
+        freezeContents();
+        width = computeWidth();
+        range = computeRange();
+        frozen = true;
     }
 
+    final boolean isFrozen() {
+        return frozen;
+    }
+
+    /** Freeze any {@code Doc}s inside this one, and precompute anything else derived from them. */
+    void freezeContents() {}
+
     /**
      * Compute the {@code Doc}'s width.
      *
@@ -97,11 +97,13 @@ public final class DocBuilder {
     }
 
     /**
-     * Return the {@link Doc}.
+     * Return the {@link Doc}, frozen so that the layout search can query it cheaply. No more {@link Op}s can be added
+     * afterwards.
      *
      * @return the {@link Doc}
      */
     public Level build() {
+        base.freeze();
         return base;
     }
 
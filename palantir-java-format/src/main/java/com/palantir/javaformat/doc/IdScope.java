@@ -0,0 +1,73 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Allocates the {@link HasUniqueId#id()}s of everything created on the current thread during a single formatting run,
+ * densely and starting from 0.
+ *
+ * <p>Ids only need to be unique among the objects of one run, as that is as far as a {@link State} ever reaches.
+ * Allocating them per run means formatting on many threads at once doesn't contend on a shared counter, and keeps ids
+ * small even in long-lived processes, so the {@link PersistentIntMap}s in {@link State} stay shallow.
+ *
+ * <p>Objects created outside of any scope get ids from a shared counter in a separate range, so they never collide
+ * with ids allocated in a scope. Static constants must not have ids at all: their class may first be initialised
+ * inside a scope, and then their id is reused by every later run.
+ */
+public final class IdScope implements AutoCloseable {
+    /** Ids below this are allocated by scopes, and ids from here on by {@link #UNSCOPED_IDS}. */
+    private static final int FIRST_UNSCOPED_ID = 1 << 30;
+
+    private static final ThreadLocal<IdScope> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger UNSCOPED_IDS = new AtomicInteger(FIRST_UNSCOPED_ID);
+
+    /** The scope this one replaced on the current thread, restored on {@link #close}. */
+    private final @Nullable IdScope outer;
+
+    private int nextId = 0;
+
+    private IdScope(@Nullable IdScope outer) {
+        this.outer = outer;
+    }
+
+    /** Start allocating ids for the current thread from a fresh scope, until the returned scope is closed. */
+    public static IdScope open() {
+        IdScope scope = new IdScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    @Override
+    public void close() {
+        if (outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outer);
+        }
+    }
+
+    static int nextId() {
+        IdScope scope = CURRENT.get();
+        if (scope != null && scope.nextId < FIRST_UNSCOPED_ID) {
+            return scope.nextId++;
+        }
+        return UNSCOPED_IDS.getAndUpdate(id -> id == Integer.MAX_VALUE ? FIRST_UNSCOPED_ID : id + 1);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.palantir.javaformat.BreakBehaviour;
+import com.palantir.javaformat.BreakBehaviours;
+import java.util.OptionalInt;
+import javax.annotation.Nullable;
+
+/**
+ * Bounds the number of {@link Level}s that {@link Level#computeBreaks} lays out for one format, counting every level
+ * it lays out in full rather than on one line or from its {@link LayoutMemo}. Once the budget is used up, the remaining
+ * levels are laid out with {@link BreakBehaviour.Cases#breakThisLevel()}, so they don't branch any more. The search is
+ * single-threaded, so where that happens, and hence the output, only depends on the input and the budget.
+ *
+ * <p>A budget is shared by every {@link State} of the search that it was started with, see
+ * {@link State#withLayoutBudget}, and records which levels had to fall back, so that they can be reported.
+ */
+public final class LayoutBudget {
+    private static final LayoutBudget UNLIMITED = new LayoutBudget(Integer.MAX_VALUE);
+
+    private final int maxLevels;
+    private int levelsLaidOut = 0;
+    private int fallbacks = 0;
+
+    @Nullable
+    private Level firstFallback;
+
+    private LayoutBudget(int maxLevels) {
+        this.maxLevels = maxLevels;
+    }
+
+    /** A budget that is never used up. This is shared, so it counts nothing. */
+    public static LayoutBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /** A fresh budget for a single format, which allows laying out at most {@code maxLevels} levels. */
+    public static LayoutBudget of(int maxLevels) {
+        return new LayoutBudget(maxLevels);
+    }
+
+    /** The break behaviour to lay out {@code level} with, which is just breaking it once the budget is used up. */
+    BreakBehaviour breakBehaviourFor(Level level) {
+        if (this == UNLIMITED) {
+            return level.getBreakBehaviour();
+        }
+        if (levelsLaidOut < maxLevels) {
+            levelsLaidOut++;
+            return level.getBreakBehaviour();
+        }
+        boolean wouldHaveBranched =
+                BreakBehaviours.caseOf(level.getBreakBehaviour()).breakThisLevel_(false).otherwise_(true);
+        if (wouldHaveBranched) {
+            if (firstFallback == null) {
+                firstFallback = level;
+            }
+            fallbacks++;
+        }
+        return BreakBehaviours.breakThisLevel();
+    }
+
+    /** Whether any level was laid out differently than it would have been without a budget. */
+    public boolean isExhausted() {
+        return fallbacks > 0;
+    }
+
+    /** How many levels were broken without trying their alternatives, because the budget was used up. */
+    public int fallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * The index of the first input token of the first level that was broken without trying its alternatives, if any,
+     * for reporting where the budget ran out.
+     */
+    public OptionalInt firstFallbackToken() {
+        if (firstFallback == null || firstFallback.range().isEmpty()) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(firstFallback.range().lowerEndpoint());
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.palantir.javaformat.BreakBehaviours;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import org.immutables.value.Value;
+
+/**
+ * Memoizes the multi-line layout of a single {@link Level}, so that the branching search in {@link Level} does not
+ * redo the same work every time it explores a level from an equivalent incoming {@link State}.
+ *
+ * <p>Laying out a level only reads the column, indents, {@code mustBreak} and branching coefficient of the incoming
+ * state, plus whether the {@link BreakTag}s that are set or read by docs inside the level were taken. Everything else
+ * it writes (break, level and comment states) is keyed by docs inside the level, so a result can be captured as a delta
+ * and replayed on top of a different incoming state. A {@link Level} is only ever used for a single format, so this is
+ * effectively a per-format memo table.
+ *
+ * <p>Results are only captured the second time an equivalent state is seen, since most levels are laid out exactly
+ * once and capturing a delta costs a walk over the level. The exception is {@link #precompute}, which lays out ahead of
+ * the search and always captures.
+ *
+ * <p>The same holds for the docs between two {@link Break}s of a level, which {@link Level} lays out one after the
+ * other without changing the indents either, so a memo can also cover such a split instead of a whole level.
+ */
+final class LayoutMemo {
+    /** The docs whose layout is memoized, laid out one after the other. */
+    private final ImmutableList<Doc> docs;
+    /** Every {@link BreakTag} set by a {@link Break}, or read by an {@link com.palantir.javaformat.Indent}, inside. */
+    private final ImmutableList<BreakTag> breakTags;
+    /** The most {@code preferBreakingLastInnerLevel} levels nested inside each other, including these docs. */
+    private final int branchingDepth;
+
+    private final Set<Key> seen = new HashSet<>();
+    private final Map<Key, Result> results = new HashMap<>();
+
+    LayoutMemo(Level level) {
+        this(ImmutableList.of(level));
+    }
+
+    LayoutMemo(List<Doc> docs) {
+        this.docs = ImmutableList.copyOf(docs);
+        Set<BreakTag> tags = new LinkedHashSet<>();
+        int depth = 0;
+        for (Doc doc : this.docs) {
+            collectBreakTags(doc, tags);
+            depth = Math.max(depth, computeBranchingDepth(doc));
+        }
+        this.breakTags = ImmutableList.copyOf(tags);
+        this.branchingDepth = depth;
+    }
+
+    /**
+     * Returns the state after laying out {@link #docs} starting from {@code state}, either from the memo table or by
+     * applying {@code layout} to it.
+     */
+    State computeIfAbsent(int maxWidth, State state, UnaryOperator<State> layout) {
+        Key key = keyFor(maxWidth, state);
+        Result result = results.get(key);
+        if (result != null) {
+            return state.withMemoizedLayout(result);
+        }
+        State newState = layout.apply(state);
+        if (!seen.add(key)) {
+            results.put(key, captureResult(state, newState));
+        }
+        return newState;
+    }
+
+    /**
+     * Applies {@code layout} to {@code state} and captures the result straight away, so that {@link #computeIfAbsent}
+     * replays it when it's later called with an equivalent state. This lays out {@link #docs} ahead of the search, so it
+     * must not be called concurrently with anything else that lays them out.
+     */
+    void precompute(int maxWidth, State state, UnaryOperator<State> layout) {
+        Key key = keyFor(maxWidth, state);
+        if (!results.containsKey(key)) {
+            results.put(key, captureResult(state, layout.apply(state)));
+        }
+    }
+
+    private Key keyFor(int maxWidth, State state) {
+        BitSet takenTags = new BitSet(breakTags.size());
+        for (int i = 0; i < breakTags.size(); i++) {
+            if (state.wasBreakTaken(breakTags.get(i))) {
+                takenTags.set(i);
+            }
+        }
+        return ImmutableKey.builder()
+                .maxWidth(maxWidth)
+                .column(state.column())
+                .indent(state.indent())
+                .lastIndent(state.lastIndent())
+                .mustBreak(state.mustBreak())
+                .branchingCoefficient(effectiveBranchingCoefficient(state.branchingCoefficient()))
+                .takenTags(takenTags)
+                .build();
+    }
+
+    /**
+     * The search only uses the branching coefficient to compare it against {@link Level#MAX_BRANCHING_COEFFICIENT},
+     * after incrementing it once for every nested {@code preferBreakingLastInnerLevel} level. Coefficients for which all
+     * of those comparisons have the same outcome produce the same layout, so clamp them to a single representative.
+     */
+    private int effectiveBranchingCoefficient(int branchingCoefficient) {
+        int allBranchesAllowed = Level.MAX_BRANCHING_COEFFICIENT - branchingDepth - 1;
+        int noBranchesAllowed = Level.MAX_BRANCHING_COEFFICIENT - 1;
+        return Math.max(allBranchesAllowed, Math.min(branchingCoefficient, noBranchesAllowed));
+    }
+
+    private Result captureResult(State before, State after) {
+        ImmutableResult.Builder builder =
+                ImmutableResult.builder().column(after.column()).extraLines(after.numLines() - before.numLines());
+        for (BreakTag breakTag : breakTags) {
+            if (after.wasBreakTaken(breakTag)) {
+                builder.addTakenTags(breakTag);
+            } else {
+                builder.addNotTakenTags(breakTag);
+            }
+        }
+        for (Doc doc : docs) {
+            captureDocStates(doc, after, builder);
+        }
+        return builder.build();
+    }
+
+    private static void captureDocStates(Doc doc, State after, ImmutableResult.Builder builder) {
+        if (doc instanceof Level) {
+            Level level = (Level) doc;
+            if (after.isOneLine(level)) {
+                builder.addOneLineLevels(level);
+            }
+            for (Doc inner : level.getDocs()) {
+                captureDocStates(inner, after, builder);
+            }
+        } else if (doc instanceof Break) {
+            Break brk = (Break) doc;
+            Integer newIndent = after.breakIndents().get(brk.id());
+            if (newIndent != null) {
+                builder.addBreakIndents(Maps.immutableEntry(brk, newIndent));
+            }
+        } else if (doc instanceof Comment) {
+            Comment comment = (Comment) doc;
+            String text = after.tokTexts().get(comment.id());
+            if (text != null) {
+                builder.addTokTexts(Maps.immutableEntry(comment, text));
+            }
+        }
+    }
+
+    private static void collectBreakTags(Doc doc, Set<BreakTag> tags) {
+        if (doc instanceof Level) {
+            Level level = (Level) doc;
+            level.getPlusIndent().addConditions(tags);
+            for (Doc inner : level.getDocs()) {
+                collectBreakTags(inner, tags);
+            }
+        } else if (doc instanceof Break) {
+            Break brk = (Break) doc;
+            brk.optTag().ifPresent(tags::add);
+            brk.plusIndent().addConditions(tags);
+        }
+    }
+
+    private static int computeBranchingDepth(Doc doc) {
+        if (!(doc instanceof Level)) {
+            return 0;
+        }
+        Level level = (Level) doc;
+        int innerDepth = 0;
+        for (Doc inner : level.getDocs()) {
+            innerDepth = Math.max(innerDepth, computeBranchingDepth(inner));
+        }
+        int ownDepth = BreakBehaviours.caseOf(level.getBreakBehaviour())
+                .preferBreakingLastInnerLevel_(1)
+                .otherwise_(0);
+        return ownDepth + innerDepth;
+    }
+
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.SOURCE)
+    @Value.Style(overshadowImplementation = true)
+    @interface LayoutMemoStyle {}
+
+    /** The parts of the incoming {@link State} that the layout of a level can depend on. */
+    @LayoutMemoStyle
+    @Value.Immutable
+    interface Key {
+        int maxWidth();
+
+        int column();
+
+        int indent();
+
+        int lastIndent();
+
+        boolean mustBreak();
+
+        int branchingCoefficient();
+
+        /** Indices into {@link LayoutMemo#breakTags} of the tags that were taken. */
+        BitSet takenTags();
+    }
+
+    /** The effect of laying out a level, independent of the incoming {@link State}. */
+    @LayoutMemoStyle
+    @Value.Immutable
+    interface Result {
+        int column();
+
+        int extraLines();
+
+        ImmutableList<BreakTag> takenTags();
+
+        ImmutableList<BreakTag> notTakenTags();
+
+        ImmutableList<Map.Entry<Break, Integer>> breakIndents();
+
+        ImmutableList<Level> oneLineLevels();
+
+        ImmutableList<Map.Entry<Comment, String>> tokTexts();
+    }
+}
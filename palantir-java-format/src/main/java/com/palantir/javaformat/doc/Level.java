@@ -18,10 +18,9 @@ package com.palantir.javaformat.doc;
 
 import static com.google.common.collect.Iterables.getLast;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Suppliers;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.BreakBehaviour;
 import com.palantir.javaformat.BreakBehaviours;
@@ -36,18 +35,16 @@ import com.palantir.javaformat.doc.Obs.Exploration;
 import com.palantir.javaformat.doc.Obs.ExplorationNode;
 import com.palantir.javaformat.doc.Obs.LevelNode;
 import com.palantir.javaformat.doc.StartsWithBreakVisitor.Result;
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import org.immutables.value.Value;
+import javax.annotation.Nullable;
 
 /** A {@code Level} inside a {@link Doc}. */
 public final class Level extends Doc {
@@ -55,18 +52,50 @@ public final class Level extends Doc {
      * How many branches we are allowed to take (i.e how many times we can consider breaking vs not breaking the current
      * level) before we stop branching and always break, which is the google-java-format default behaviour.
      */
-    private static final int MAX_BRANCHING_COEFFICIENT = 20;
+    static final int MAX_BRANCHING_COEFFICIENT = 20;
 
     private static final Collector<Level, ?, Optional<Level>> GET_LAST_COLLECTOR = Collectors.reducing((u, v) -> v);
 
+    private static final int[] NO_INDICES = new int[0];
+    private static final float[] NO_WIDTHS = new float[0];
+
     private final List<Doc> docs = new ArrayList<>(); // The elements of the level.
 
-    @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<SplitsBreaks> memoizedSplitsBreaks =
-            Suppliers.memoize(() -> splitByBreaks(docs))::get;
+    /** Indices into {@link #docs} of the {@link Break}s that split this level, set by {@link #freezeContents}. */
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private int[] breakIndices = NO_INDICES;
+
+    /**
+     * {@code finiteWidthBefore[i]} is the total width of the first {@code i} docs, not counting docs of infinite width,
+     * and {@code infiniteDocsBefore[i]} is how many of those there are. Together they give the width of any range of
+     * docs in constant time. Set by {@link #freezeContents}.
+     */
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private float[] finiteWidthBefore = NO_WIDTHS;
+
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private int[] infiniteDocsBefore = NO_INDICES;
+
+    /**
+     * Whether this level or any level inside it has a {@link #getColumnLimitBeforeLastBreak()}. If not, whether docs
+     * fit on one line only depends on their width. Set by {@link #freezeContents}.
+     */
+    @SuppressWarnings("Immutable") // Written once by freeze
+    private boolean hasColumnLimits = false;
     /** The immutable characteristics of this level determined before the level contents are available. */
     private final OpenOp openOp;
 
+    /** Created on first use, as most levels fit on one line and never need it. */
+    @SuppressWarnings("Immutable") // Only used to cache layout results
+    private @Nullable LayoutMemo layoutMemo;
+
+    /**
+     * Memos for the docs after each of {@link #breakIndices}, or null for splits that were never laid out ahead. Set by
+     * {@link #layOutSplitsAhead}.
+     */
+    @SuppressWarnings("Immutable") // Only used to cache layout results
+    private @Nullable LayoutMemo[] splitMemos;
+
     private Level(OpenOp openOp) {
         this.openOp = openOp;
     }
@@ -82,9 +111,37 @@ public final class Level extends Doc {
      * @param doc the {@link Doc} to add
      */
     void add(Doc doc) {
+        Preconditions.checkState(!isFrozen(), "Level is already complete");
         docs.add(doc);
     }
 
+    @Override
+    void freezeContents() {
+        int numBreaks = 0;
+        finiteWidthBefore = new float[docs.size() + 1];
+        infiniteDocsBefore = new int[docs.size() + 1];
+        hasColumnLimits = getColumnLimitBeforeLastBreak().isPresent();
+        for (int i = 0; i < docs.size(); i++) {
+            Doc doc = docs.get(i);
+            doc.freeze();
+            float width = doc.getWidth();
+            boolean infinite = Float.isInfinite(width);
+            finiteWidthBefore[i + 1] = finiteWidthBefore[i] + (infinite ? 0.0F : width);
+            infiniteDocsBefore[i + 1] = infiniteDocsBefore[i] + (infinite ? 1 : 0);
+            if (doc instanceof Break) {
+                numBreaks++;
+            } else if (doc instanceof Level) {
+                hasColumnLimits |= ((Level) doc).hasColumnLimits;
+            }
+        }
+        breakIndices = new int[numBreaks];
+        for (int i = 0, b = 0; i < docs.size(); i++) {
+            if (docs.get(i) instanceof Break) {
+                breakIndices[b++] = i;
+            }
+        }
+    }
+
     @Override
     protected float computeWidth() {
         float thisWidth = 0.0F;
@@ -114,35 +171,49 @@ public final class Level extends Doc {
 
     @Override
     public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state, Obs.ExplorationNode observer) {
-        return tryToFitOnOneLine(maxWidth, state, docs)
-                .map(newWidth -> state.withColumn(newWidth).withLevelState(this, ImmutableLevelState.of(true)))
-                .orElseGet(() -> {
-                    Obs.LevelNode childLevel = observer.newChildNode(this, state);
-                    State newState =
-                            getBreakBehaviour().match(new BreakImpl(commentsHelper, maxWidth, state, childLevel));
+        return tryToFitOnOneLine(maxWidth, state, 0, docs.size())
+                .map(newWidth -> state.withColumn(newWidth).withOneLineLevel(this))
+                .orElseGet(() -> getLayoutMemo().computeIfAbsent(maxWidth, state, incomingState -> {
+                    Obs.LevelNode childLevel = observer.newChildNode(this, incomingState);
+                    State newState = incomingState
+                            .layoutBudget()
+                            .breakBehaviourFor(this)
+                            .match(new BreakImpl(commentsHelper, maxWidth, incomingState, childLevel));
 
-                    return childLevel.finishLevel(state.updateAfterLevel(newState));
-                });
+                    return childLevel.finishLevel(incomingState.updateAfterLevel(newState));
+                }));
+    }
+
+    private LayoutMemo getLayoutMemo() {
+        if (layoutMemo == null) {
+            layoutMemo = new LayoutMemo(this);
+        }
+        return layoutMemo;
     }
 
     /**
-     * Try to fit these docs belonging to the current level onto one line, returning empty if we couldn't. This takes
-     * into account the level's {@link #getColumnLimitBeforeLastBreak()}.
+     * Try to fit the docs of the current level in {@code [start, end)} onto one line, returning empty if we couldn't.
+     * This takes into account the level's {@link #getColumnLimitBeforeLastBreak()}.
      *
      * @return the width after fitting it onto one line, if it was possible. This is guaranteed to be less than
      *     {@code maxWidth}
      */
-    private Optional<Integer> tryToFitOnOneLine(int maxWidth, State state, Iterable<Doc> docs) {
+    private Optional<Integer> tryToFitOnOneLine(int maxWidth, State state, int start, int end) {
+        if (!hasColumnLimits) {
+            float column = state.column() + getWidth(start, end);
+            return column <= maxWidth ? Optional.of((int) column) : Optional.empty();
+        }
         int column = state.column();
         int columnBeforeLastBreak = 0; // Not activated by default
-        for (Doc doc : docs) {
+        for (Doc doc : docs.subList(start, end)) {
             if (doc instanceof Break && ((Break) doc).hasColumnLimit()) {
                 columnBeforeLastBreak = column;
             } else if (doc instanceof Level) {
                 // Levels might have nested levels that have a 'columnLimitBeforeLastBreak' set, so recurse.
                 State newState = state.withColumn(column);
                 Level innerLevel = (Level) doc;
-                Optional<Integer> newWidth = innerLevel.tryToFitOnOneLine(maxWidth, newState, innerLevel.getDocs());
+                Optional<Integer> newWidth =
+                        innerLevel.tryToFitOnOneLine(maxWidth, newState, 0, innerLevel.docs.size());
                 if (!newWidth.isPresent()) {
                     return Optional.empty();
                 }
@@ -316,8 +387,7 @@ public final class Level extends Doc {
 
         // Add the width of tokens, breaks before the lastLevel. We must always have space for
         // these.
-        List<Doc> leadingDocs = docs.subList(0, docs.indexOf(lastLevel));
-        float leadingWidth = getWidth(leadingDocs);
+        float leadingWidth = getWidth(0, docs.indexOf(lastLevel));
 
         // Potentially add the width of prefixes we want to consider as part of the width that
         // must fit on the same line, so that we don't accidentally break prefixes when we could
@@ -334,8 +404,7 @@ public final class Level extends Doc {
         if (keepIndent) {
             newState = newState.withIndentIncrementedBy(getPlusIndent());
         }
-        return Optional.of(tryToLayOutLevelOnOneLine(
-                commentsHelper, maxWidth, newState, memoizedSplitsBreaks.get(), explorationNode));
+        return Optional.of(tryToLayOutLevelOnOneLine(commentsHelper, maxWidth, newState, docs.size(), explorationNode));
     }
 
     @SuppressWarnings("for-rollout:NullAway")
@@ -392,13 +461,11 @@ public final class Level extends Doc {
         // See if we can fill in everything but the innerLevel.
         // This is essentially like a small part of computeBreaks.
         int innerLevelIndex = docs.indexOf(innerLevel);
-        List<Doc> leadingDocs = docs.subList(0, innerLevelIndex);
-        if (!tryToFitOnOneLine(maxWidth, state, leadingDocs).isPresent()) {
+        if (!tryToFitOnOneLine(maxWidth, state, 0, innerLevelIndex).isPresent()) {
             return Optional.empty();
         }
 
-        List<Doc> trailingDocs = docs.subList(innerLevelIndex + 1, docs.size());
-        float trailingWidth = getWidth(trailingDocs);
+        float trailingWidth = getWidth(innerLevelIndex + 1, docs.size());
         if (Double.isInfinite(trailingWidth)) {
             return Optional.empty();
         }
@@ -407,11 +474,9 @@ public final class Level extends Doc {
         // _we_ are breaking.
         //       See computeBreakAndSplit -> shouldBreak
 
-        SplitsBreaks prefixSplitsBreaks = splitByBreaks(leadingDocs);
-
         boolean isSimpleInlining = isSimpleInliningSoFar && Level.this.openOp.complexity() == Complexity.SIMPLE;
 
-        State state1 = tryToLayOutLevelOnOneLine(commentsHelper, maxWidth, state, prefixSplitsBreaks, explorationNode);
+        State state1 = tryToLayOutLevelOnOneLine(commentsHelper, maxWidth, state, innerLevelIndex, explorationNode);
         // If a break was still forced somehow even though we could fit the leadingWidth, then abort.
         // This could happen if inner levels have set a `columnLimitBeforeLastBreak` or something like that.
         if (state1.numLines() != state.numLines()) {
@@ -444,7 +509,8 @@ public final class Level extends Doc {
         }
         return state2.flatMap(stateAfterInner -> {
             // Do we have a suffix to inline too?
-            return tryToFitOnOneLine(maxWidth, stateAfterInner, trailingDocs).map(stateAfterInner::withColumn);
+            return tryToFitOnOneLine(maxWidth, stateAfterInner, innerLevelIndex + 1, docs.size())
+                    .map(stateAfterInner::withColumn);
         });
     }
 
@@ -562,111 +628,176 @@ public final class Level extends Doc {
     }
 
     /**
-     * Mark breaks in this level as not broken, but lay out the inner levels normally, according to their own
-     * {@link BreakBehaviour}. The resulting {@link State#mustBreak} will be true if this level did not fit on exactly
-     * one line.
+     * Mark breaks among the first {@code end} docs of this level as not broken, but lay out the inner levels normally,
+     * according to their own {@link BreakBehaviour}. The resulting {@link State#mustBreak} will be true if this level
+     * did not fit on exactly one line.
      */
     private State tryToLayOutLevelOnOneLine(
-            CommentsHelper commentsHelper,
-            int maxWidth,
-            State state,
-            SplitsBreaks splitsBreaks,
-            Obs.ExplorationNode explorationNode) {
-
-        for (int i = 0; i < splitsBreaks.splits().size(); ++i) {
-            if (i > 0) {
-                state = splitsBreaks.breaks().get(i - 1).computeBreaks(state, false);
-            }
-
-            List<Doc> split = splitsBreaks.splits().get(i);
-            float splitWidth = getWidth(split);
+            CommentsHelper commentsHelper, int maxWidth, State state, int end, Obs.ExplorationNode explorationNode) {
+        int splitStart = 0;
+        for (int i = 0; ; i++) {
+            int splitEnd = Math.min(splitEnd(i), end);
+            float splitWidth = getWidth(splitStart, splitEnd);
             boolean enoughRoom = state.column() + splitWidth <= maxWidth;
-            state = computeSplit(commentsHelper, maxWidth, split, state.withMustBreak(false), explorationNode);
+            state = computeSplit(
+                    commentsHelper, maxWidth, splitStart, splitEnd, state.withMustBreak(false), explorationNode);
             if (!enoughRoom) {
                 state = state.withMustBreak(true);
             }
+            if (splitEnd == end) {
+                return state;
+            }
+            state = ((Break) docs.get(splitEnd)).computeBreaks(state, false);
+            splitStart = splitEnd + 1;
         }
-        return state;
     }
 
-    private static SplitsBreaks splitByBreaks(List<Doc> docs) {
-        ImmutableSplitsBreaks.Builder builder = ImmutableSplitsBreaks.builder();
-        ImmutableList.Builder<Doc> currentSplit = ImmutableList.builder();
-        for (Doc doc : docs) {
-            if (doc instanceof Break) {
-                builder.addSplits(currentSplit.build());
-                currentSplit = ImmutableList.builder();
-                builder.addBreaks((Break) doc);
-            } else {
-                currentSplit.add(doc);
-            }
-        }
-        builder.addSplits(currentSplit.build());
-        return builder.build();
+    /** The end of the {@code i}th group of docs in this level that are separated by {@link Break}s. */
+    @VisibleForTesting
+    int splitEnd(int i) {
+        return i < breakIndices.length ? breakIndices[i] : docs.size();
     }
 
     /** Compute breaks for a {@link Level} that spans multiple lines. */
     private State computeBroken(
             CommentsHelper commentsHelper, int maxWidth, State state, Obs.ExplorationNode explorationNode) {
-        SplitsBreaks splitsBreaks = memoizedSplitsBreaks.get();
-
-        if (!splitsBreaks.breaks().isEmpty()) {
+        if (breakIndices.length > 0) {
             state = state.withBrokenLevel();
         }
+        ForkJoinPool layoutPool = state.layoutPool();
+        if (layoutPool != null) {
+            layOutSplitsAhead(commentsHelper, maxWidth, state, explorationNode, layoutPool);
+        }
 
-        ImmutableList<Doc> splitDocs = splitsBreaks.splits().get(0);
         state = computeBreakAndSplit(
-                commentsHelper, maxWidth, state, /* optBreakDoc= */ Optional.empty(), splitDocs, explorationNode);
+                commentsHelper,
+                maxWidth,
+                state,
+                /* optBreakDoc= */ Optional.empty(),
+                0,
+                splitEnd(0),
+                /* splitMemo= */ null,
+                explorationNode);
 
         // Handle following breaks and split.
-        for (int i = 0; i < splitsBreaks.breaks().size(); i++) {
+        for (int i = 0; i < breakIndices.length; i++) {
             state = computeBreakAndSplit(
                     commentsHelper,
                     maxWidth,
                     state,
-                    Optional.of(splitsBreaks.breaks().get(i)),
-                    splitsBreaks.splits().get(i + 1),
+                    Optional.of((Break) docs.get(breakIndices[i])),
+                    breakIndices[i] + 1,
+                    splitEnd(i + 1),
+                    splitMemos == null ? null : splitMemos[i],
                     explorationNode);
         }
         return state;
     }
 
-    /** Lay out a Break-separated group of Docs in the current Level. */
+    /**
+     * Lays out the splits after the forced breaks of this level in parallel, if there are several that don't fit on one
+     * line, such as the members of a class body. Every such split starts on a new line at the indent of this level, so
+     * the state it starts from can be predicted before the splits before it are laid out. The results are kept in
+     * {@link #splitMemos}, for {@link #computeBroken} to replay them in order.
+     *
+     * <p>Laying out a split only depends on the parts of the state that {@link LayoutMemo} keys on. A split that ends
+     * up starting from a different state than predicted here, e.g. because it reads a {@link BreakTag} set by an
+     * earlier split, is just laid out again, so the output is the same as laying everything out on one thread.
+     */
+    private void layOutSplitsAhead(
+            CommentsHelper commentsHelper,
+            int maxWidth,
+            State state,
+            Obs.ExplorationNode explorationNode,
+            ForkJoinPool layoutPool) {
+        // Laying out the splits of inner levels ahead as well would mostly capture and replay the same docs again
+        State stateAhead = state.withLayoutPool(null);
+        List<Integer> splits = new ArrayList<>();
+        List<State> splitStates = new ArrayList<>();
+        for (int i = 0; i < breakIndices.length; i++) {
+            Break brk = (Break) docs.get(breakIndices[i]);
+            if (brk.isForced()) {
+                State splitState = brk.computeBreaks(stateAhead, true).withMustBreak(false);
+                if (!tryToFitOnOneLine(maxWidth, splitState, breakIndices[i] + 1, splitEnd(i + 1)).isPresent()) {
+                    splits.add(i);
+                    splitStates.add(splitState);
+                }
+            }
+        }
+        if (splits.size() < 2) {
+            return;
+        }
+
+        if (splitMemos == null) {
+            splitMemos = new LayoutMemo[breakIndices.length];
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(splits.size());
+        for (int j = 0; j < splits.size(); j++) {
+            int i = splits.get(j);
+            int start = breakIndices[i] + 1;
+            int end = splitEnd(i + 1);
+            if (splitMemos[i] == null) {
+                splitMemos[i] = new LayoutMemo(docs.subList(start, end));
+            }
+            LayoutMemo splitMemo = splitMemos[i];
+            State splitState = splitStates.get(j);
+            tasks.add(ForkJoinTask.adapt(() -> splitMemo.precompute(
+                    maxWidth,
+                    splitState,
+                    incomingState ->
+                            computeSplit(commentsHelper, maxWidth, start, end, incomingState, explorationNode))));
+        }
+        Runnable layOutAll = () -> ForkJoinTask.invokeAll(tasks);
+        layoutPool.invoke(ForkJoinTask.adapt(layOutAll));
+    }
+
+    /** Lay out a Break-separated group of Docs, {@code [start, end)}, in the current Level. */
     private State computeBreakAndSplit(
             CommentsHelper commentsHelper,
             int maxWidth,
             State state,
             Optional<Break> optBreakDoc,
-            List<Doc> split,
+            int start,
+            int end,
+            @Nullable LayoutMemo splitMemo,
             Obs.ExplorationNode explorationNode) {
         float breakWidth = optBreakDoc.isPresent() ? optBreakDoc.get().getWidth() : 0.0F;
-        float splitWidth = getWidth(split);
+        float splitWidth = getWidth(start, end);
 
         boolean shouldBreak = (optBreakDoc.isPresent() && optBreakDoc.get().fillMode() == FillMode.UNIFIED)
                 || state.mustBreak()
                 || Double.isInfinite(breakWidth)
-                || !tryToFitOnOneLine(maxWidth, state.withColumn(state.column() + (int) breakWidth), split)
+                || !tryToFitOnOneLine(maxWidth, state.withColumn(state.column() + (int) breakWidth), start, end)
                         .isPresent();
 
         if (optBreakDoc.isPresent()) {
             state = optBreakDoc.get().computeBreaks(state, shouldBreak);
         }
         boolean enoughRoom = state.column() + splitWidth <= maxWidth;
-        state = computeSplit(commentsHelper, maxWidth, split, state.withMustBreak(false), explorationNode);
+        if (splitMemo == null) {
+            state = computeSplit(commentsHelper, maxWidth, start, end, state.withMustBreak(false), explorationNode);
+        } else {
+            state = splitMemo.computeIfAbsent(
+                    maxWidth,
+                    state.withMustBreak(false),
+                    incomingState ->
+                            computeSplit(commentsHelper, maxWidth, start, end, incomingState, explorationNode));
+        }
         if (!enoughRoom) {
             state = state.withMustBreak(true); // Break after, too.
         }
         return state;
     }
 
-    private static State computeSplit(
+    private State computeSplit(
             CommentsHelper commentsHelper,
             int maxWidth,
-            List<Doc> docs,
+            int start,
+            int end,
             State state,
             Obs.ExplorationNode explorationNode) {
-        for (Doc doc : docs) {
-            state = doc.computeBreaks(commentsHelper, maxWidth, state, explorationNode);
+        for (int i = start; i < end; i++) {
+            state = docs.get(i).computeBreaks(commentsHelper, maxWidth, state, explorationNode);
         }
         return state;
     }
@@ -681,18 +812,10 @@ public final class Level extends Doc {
     }
 
     private void writeFilled(State state, Output output) {
-        SplitsBreaks splitsBreaks = memoizedSplitsBreaks.get();
-        // Handle first split.
-        for (Doc doc : splitsBreaks.splits().get(0)) {
+        // Splits and the breaks between them, in order.
+        for (Doc doc : docs) {
             doc.write(state, output);
         }
-        // Handle following breaks and split.
-        for (int i = 0; i < splitsBreaks.breaks().size(); i++) {
-            splitsBreaks.breaks().get(i).write(state, output);
-            for (Doc doc : splitsBreaks.splits().get(i + 1)) {
-                doc.write(state, output);
-            }
-        }
     }
 
     public Indent getPlusIndent() {
@@ -737,17 +860,19 @@ public final class Level extends Doc {
     }
 
     /**
-     * Get the width of a sequence of {@link Doc}s.
+     * Get the width of the docs of this level in {@code [start, end)}.
      *
-     * @param docs the {@link Doc}s
      * @return the width, or {@code Float.POSITIVE_INFINITY} if any {@link Doc} must be broken
      */
-    static float getWidth(Iterable<Doc> docs) {
-        float width = 0.0F;
-        for (Doc doc : docs) {
-            width += doc.getWidth();
+    @VisibleForTesting
+    float getWidth(int start, int end) {
+        if (!isFrozen()) {
+            freeze();
         }
-        return width;
+        if (infiniteDocsBefore[end] != infiniteDocsBefore[start]) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return finiteWidthBefore[end] - finiteWidthBefore[start];
     }
 
     private static Range<Integer> union(Range<Integer> x, Range<Integer> y) {
@@ -763,18 +888,4 @@ public final class Level extends Doc {
                 .add("breakabilityIfLastLevel", getBreakabilityIfLastLevel())
                 .toString();
     }
-
-    @Target(ElementType.TYPE)
-    @Retention(RetentionPolicy.SOURCE)
-    @Value.Style(overshadowImplementation = true)
-    @interface SplitsBreaksStyle {}
-
-    @SplitsBreaksStyle
-    @Value.Immutable
-    interface SplitsBreaks {
-        /** Groups of {@link Doc}s that are children of the current {@link Level}, separated by {@link Break}s. */
-        ImmutableList<ImmutableList<Doc>> splits();
-        /** {@link Break}s between {@link Doc}s in the current {@link Level}. */
-        ImmutableList<Break> breaks();
-    }
 }
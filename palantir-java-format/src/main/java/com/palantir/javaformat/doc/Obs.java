@@ -64,8 +64,16 @@ public final class Obs {
         String getOutput();
     }
 
+    /**
+     * Create the root of the tree of explorations that is reported to {@code sink}. Nothing is reported to a
+     * {@link NoopSink}, so for one of those this returns a stateless node that doesn't track the tree at all, which
+     * keeps observation nearly free when formatting outside of debug mode.
+     */
     @SuppressWarnings("for-rollout:NullAway")
     public static ExplorationNode createRoot(Sink sink) {
+        if (sink instanceof NoopSink) {
+            return NoopExplorationNode.INSTANCE;
+        }
         return new ExplorationNodeImpl(null, "(initial node)", sink, 0, Optional.empty());
     }
 
@@ -196,4 +204,70 @@ public final class Obs {
                     newState -> parentLevel.ifPresent(parent -> finishExplorationNode.finishNode(parent, newState)));
         }
     }
+
+    /** Shared by every exploration when nothing is being observed, so that exploring needs no ids or sink calls. */
+    private enum NoopExplorationNode implements ExplorationNode {
+        INSTANCE;
+
+        @Override
+        public LevelNode newChildNode(Level level, State state) {
+            return NoopLevelNode.INSTANCE;
+        }
+
+        @Override
+        public int id() {
+            return 0;
+        }
+    }
+
+    private enum NoopLevelNode implements LevelNode {
+        INSTANCE;
+
+        @Override
+        public Exploration explore(
+                String humanDescription, State incomingState, Function<ExplorationNode, State> explorationFunc) {
+            return new NoopExploration(explorationFunc.apply(NoopExplorationNode.INSTANCE));
+        }
+
+        @Override
+        public int id() {
+            return 0;
+        }
+
+        @Override
+        public Optional<Exploration> maybeExplore(
+                String humanDescription,
+                State incomingState,
+                Function<ExplorationNode, Optional<State>> explorationFunc) {
+            Optional<State> maybeNewState = explorationFunc.apply(NoopExplorationNode.INSTANCE);
+            if (!maybeNewState.isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(new NoopExploration(maybeNewState.get()));
+        }
+
+        @Override
+        public State finishLevel(State state) {
+            return state;
+        }
+    }
+
+    /** Small enough for the JIT to scalar replace once the no-op nodes above are inlined. */
+    private static final class NoopExploration implements Exploration {
+        private final State state;
+
+        NoopExploration(State state) {
+            this.state = state;
+        }
+
+        @Override
+        public State markAccepted() {
+            return state;
+        }
+
+        @Override
+        public State state() {
+            return state;
+        }
+    }
 }
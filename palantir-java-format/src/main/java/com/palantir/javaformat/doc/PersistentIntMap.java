@@ -0,0 +1,118 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.Immutable;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent map from non-negative {@code int} keys to values, implemented as a path-copying radix trie with 32-way
+ * branching.
+ *
+ * <p>{@link State} is copied on every step of the line-breaking search and branches whenever {@link Level} explores an
+ * alternative layout, so it needs a map where an update is cheap and leaves the original untouched. An update here
+ * copies one small array per trie level (at most 7, and typically 3 or 4 since keys are {@link HasUniqueId#id()}s
+ * allocated close together), and lookups do no boxing or comparisons.
+ */
+@Immutable(containerOf = "V")
+final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    /**
+     * Either null (if empty) or an {@code Object[WIDTH]}, whose entries are child nodes if {@link #shift} is positive,
+     * or values if it's zero.
+     */
+    @SuppressWarnings("Immutable") // Never mutated after construction
+    private final @Nullable Object[] root;
+
+    /** How far to shift a key to get the index into {@link #root}. Keys must be less than {@code 1 << (shift + 5)}. */
+    private final int shift;
+
+    private PersistentIntMap(@Nullable Object[] root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (root == null || !fits(key, shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(key >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (V) node[key & MASK];
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /** Returns a map with {@code key} mapped to {@code value}, or removed if {@code value} is null. */
+    PersistentIntMap<V> set(int key, @Nullable V value) {
+        Preconditions.checkArgument(key >= 0, "Keys must be non-negative: %s", key);
+        if (get(key) == value) {
+            return this;
+        }
+        Object[] newRoot = root;
+        int newShift = shift;
+        if (newRoot == null) {
+            newShift = 0;
+            while (!fits(key, newShift)) {
+                newShift += BITS;
+            }
+        } else {
+            while (!fits(key, newShift)) {
+                Object[] grown = new Object[WIDTH];
+                grown[0] = newRoot;
+                newRoot = grown;
+                newShift += BITS;
+            }
+        }
+        return new PersistentIntMap<>(setIn(newRoot, newShift, key, value), newShift);
+    }
+
+    private static Object[] setIn(@Nullable Object[] node, int level, int key, @Nullable Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int index = (key >>> level) & MASK;
+        if (level == 0) {
+            copy[index] = value;
+        } else {
+            copy[index] = setIn((Object[]) copy[index], level - BITS, key, value);
+        }
+        return copy;
+    }
+
+    private static boolean fits(int key, int shift) {
+        return shift + BITS >= Integer.SIZE || (key >>> (shift + BITS)) == 0;
+    }
+}
@@ -16,37 +16,135 @@
 
 package com.palantir.javaformat.doc;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.Indent;
-import fj.data.Set;
-import fj.data.TreeMap;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
 import org.immutables.value.Value;
 import org.immutables.value.Value.Parameter;
 
-/** State for writing. */
-// Automatically suppressed to unblock enforcement in new code
-@SuppressWarnings("ImmutablesStyle")
-@Value.Immutable
-@Value.Style(overshadowImplementation = true)
-@JsonSerialize(as = ImmutableState.class)
+/**
+ * State for writing.
+ *
+ * <p>A new {@code State} is created for every step of the line-breaking search, so each {@code with*} method allocates
+ * exactly one new instance, and per-doc data is kept in {@link PersistentIntMap}s keyed by {@link HasUniqueId#id()} so
+ * that branching the search never copies more than a path through a trie.
+ */
 @Immutable
-public abstract class State {
+public final class State {
+    private static final BreakState NOT_BROKEN = ImmutableBreakState.of(false, -1);
+
+    private static final State STARTING_STATE = new State(
+            0,
+            0,
+            0,
+            false,
+            0,
+            0,
+            LayoutBudget.unlimited(),
+            null,
+            PersistentIntMap.empty(),
+            PersistentIntMap.empty(),
+            PersistentIntMap.empty(),
+            PersistentIntMap.empty());
+
+    private final int lastIndent;
+    private final int indent;
+    private final int column;
+    private final boolean mustBreak;
+    private final int numLines;
+    private final int branchingCoefficient;
+
+    /** Shared by every state of a search, and only ever counts what that search did. */
+    @SuppressWarnings("Immutable")
+    private final LayoutBudget layoutBudget;
+
+    /** Where to lay out independent parts of a level in parallel, or null to lay out everything on this thread. */
+    @Nullable
+    @SuppressWarnings("Immutable")
+    private final ForkJoinPool layoutPool;
+
+    /** {@link BreakTag}s that were taken, mapped to {@link Boolean#TRUE}. */
+    private final PersistentIntMap<Boolean> breakTagsTaken;
+
+    /** The new indent of every {@link Break} that was broken. */
+    private final PersistentIntMap<Integer> breakIndents;
+
+    /** {@link Level}s that fit entirely on one line, mapped to {@link Boolean#TRUE}. */
+    private final PersistentIntMap<Boolean> oneLineLevels;
+
+    /**
+     * Keep track of how each {@link Comment} was written (these are mostly comments), which can differ depending on the
+     * starting column and the maxLength.
+     */
+    private final PersistentIntMap<String> tokTexts;
+
+    /**
+     * Takes every field, and is called directly by each {@code with*} method rather than through a builder, so that a
+     * step of the search allocates nothing but the new state. A new field is added here and to each of those calls.
+     */
+    private State(
+            int lastIndent,
+            int indent,
+            int column,
+            boolean mustBreak,
+            int numLines,
+            int branchingCoefficient,
+            LayoutBudget layoutBudget,
+            @Nullable ForkJoinPool layoutPool,
+            PersistentIntMap<Boolean> breakTagsTaken,
+            PersistentIntMap<Integer> breakIndents,
+            PersistentIntMap<Boolean> oneLineLevels,
+            PersistentIntMap<String> tokTexts) {
+        this.lastIndent = lastIndent;
+        this.indent = indent;
+        this.column = column;
+        this.mustBreak = mustBreak;
+        this.numLines = numLines;
+        this.branchingCoefficient = branchingCoefficient;
+        this.layoutBudget = layoutBudget;
+        this.layoutPool = layoutPool;
+        this.breakTagsTaken = breakTagsTaken;
+        this.breakIndents = breakIndents;
+        this.oneLineLevels = oneLineLevels;
+        this.tokTexts = tokTexts;
+    }
+
     /** Last indent that was actually taken. */
-    public abstract int lastIndent();
+    @JsonProperty
+    public int lastIndent() {
+        return lastIndent;
+    }
+
     /** Next indent, if the level is about to be broken. */
-    public abstract int indent();
+    @JsonProperty
+    public int indent() {
+        return indent;
+    }
+
+    @JsonProperty
+    public int column() {
+        return column;
+    }
 
-    public abstract int column();
+    @JsonProperty
+    public boolean mustBreak() {
+        return mustBreak;
+    }
 
-    public abstract boolean mustBreak();
     /** Counts how many lines a particular formatting took. */
-    public abstract int numLines();
+    @JsonProperty
+    public int numLines() {
+        return numLines;
+    }
 
     /**
      * Counts how many times reached a branch, where multiple formattings would be considered. Expected runtime is
@@ -54,77 +152,77 @@ public abstract class State {
      *
      * @see State#withNewBranch()
      */
-    public abstract int branchingCoefficient();
+    @JsonProperty
+    public int branchingCoefficient() {
+        return branchingCoefficient;
+    }
 
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract Set<BreakTag> breakTagsTaken();
+    LayoutBudget layoutBudget() {
+        return layoutBudget;
+    }
 
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Break, BreakState> breakStates();
+    @Nullable
+    ForkJoinPool layoutPool() {
+        return layoutPool;
+    }
 
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Level, LevelState> levelStates();
+    PersistentIntMap<Integer> breakIndents() {
+        return breakIndents;
+    }
 
-    /**
-     * Keep track of how each {@link Comment} was written (these are mostly comments), which can differ depending on the
-     * starting column and the maxLength.
-     */
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Comment, TokState> tokStates();
+    PersistentIntMap<Boolean> oneLineLevels() {
+        return oneLineLevels;
+    }
+
+    PersistentIntMap<String> tokTexts() {
+        return tokTexts;
+    }
 
     public static State startingState() {
-        return builder()
-                .lastIndent(0)
-                .indent(0)
-                .column(0)
-                .mustBreak(false)
-                .numLines(0)
-                .branchingCoefficient(0)
-                .breakTagsTaken(Set.empty(HasUniqueId.ord()))
-                .breakStates(TreeMap.empty(HasUniqueId.ord()))
-                .levelStates(TreeMap.empty(HasUniqueId.ord()))
-                .tokStates(TreeMap.empty(HasUniqueId.ord()))
-                .build();
+        return STARTING_STATE;
     }
 
     public BreakState getBreakState(Break brk) {
-        return breakStates().get(brk).orSome(ImmutableBreakState.of(false, -1));
+        Integer newIndent = breakIndents.get(brk.id());
+        return newIndent == null ? NOT_BROKEN : ImmutableBreakState.of(true, newIndent);
     }
 
     public boolean wasBreakTaken(BreakTag breakTag) {
-        return breakTagsTaken().member(breakTag);
+        return breakTagsTaken.containsKey(breakTag.id());
     }
 
     boolean isOneLine(Level level) {
-        LevelState levelState = levelStates().get(level).toNull();
-        return levelState != null && levelState.oneLine();
+        return oneLineLevels.containsKey(level.id());
     }
 
     String getTokText(Comment comment) {
-        // A TokState will only be present if computeBreaks was called.
+        // The text will only be present if computeBreaks was called.
         // That won't always happen, for example when the level containing this comment was one-lined.
         // Note: if the parent level was inlined, this method itself also won't get called, unless we're in debug mode.
-        return tokStates().get(comment).map(TokState::text).orSome(comment::getFlat);
+        String text = tokTexts.get(comment.id());
+        return text != null ? text : comment.getFlat();
     }
 
     /** Record whether break was taken. */
     State breakTaken(BreakTag breakTag, boolean broken) {
-        boolean currentlyBroken = breakTagsTaken().member(breakTag);
         // TODO(dsanduleac): is the opposite ever a valid state?
-        if (currentlyBroken != broken) {
-            Set<BreakTag> newSet;
-            if (broken) {
-                newSet = breakTagsTaken().insert(breakTag);
-            } else {
-                newSet = breakTagsTaken().delete(breakTag);
-            }
-            return builder().from(this).breakTagsTaken(newSet).build();
+        PersistentIntMap<Boolean> newBreakTagsTaken = breakTagsTaken.set(breakTag.id(), broken ? Boolean.TRUE : null);
+        if (newBreakTagsTaken == breakTagsTaken) {
+            return this;
         }
-        return this;
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                newBreakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
     /**
@@ -132,97 +230,273 @@ public abstract class State {
      * not commit to the indent just yet though, so lastIndent stays the same.
      */
     State withIndentIncrementedBy(Indent plusIndent) {
-        return builder()
-                .from(this)
-                .indent(indent() + plusIndent.eval(this))
-                .mustBreak(false)
-                .build();
+        return withIndent(indent + plusIndent.eval(this));
     }
 
     /** Reset any accumulated indent to the same value as {@code lastIndent}. */
     State withNoIndent() {
-        return builder().from(this).indent(lastIndent()).mustBreak(false).build();
+        return withIndent(lastIndent);
+    }
+
+    private State withIndent(int newIndent) {
+        return new State(
+                lastIndent,
+                newIndent,
+                column,
+                false,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
     /** The current level is being broken and it has breaks in it. Commit to the indent. */
     State withBrokenLevel() {
-        return builder().from(this).lastIndent(indent()).build();
+        return new State(
+                indent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
     State withBreak(Break brk, boolean broken) {
-        Builder builder = builder().from(this);
-
         if (broken) {
-            int newColumn = Math.max(indent() + brk.evalPlusIndent(this), 0);
+            int newColumn = Math.max(indent + brk.evalPlusIndent(this), 0);
 
-            return builder
+            return new State(
                     // lastIndent = indent -- we've proven that we wrote some stuff at the new 'indent'
-                    .lastIndent(indent())
-                    .column(newColumn)
-                    .numLines(numLines() + 1)
-                    .breakStates(breakStates().set(brk, ImmutableBreakState.of(true, newColumn)))
-                    .build();
+                    indent,
+                    indent,
+                    newColumn,
+                    mustBreak,
+                    numLines + 1,
+                    branchingCoefficient,
+                    layoutBudget,
+                    layoutPool,
+                    breakTagsTaken,
+                    breakIndents.set(brk.id(), newColumn),
+                    oneLineLevels,
+                    tokTexts);
         } else {
-            return builder.column(column() + brk.getFlat().length()).build();
+            return withColumn(column + brk.getFlat().length());
         }
     }
 
     /** Update the current state after having processed an _inner_ level. */
     State updateAfterLevel(State afterInnerLevel) {
-        return builder()
-                // Inherited current state
-                .lastIndent(lastIndent())
-                .indent(indent())
-                .branchingCoefficient(branchingCoefficient())
-                .mustBreak(mustBreak())
-                // Overridden state
-                .column(afterInnerLevel.column())
-                .numLines(afterInnerLevel.numLines())
-                // TODO(dsanduleac): put these behind a "GlobalState"
-                .breakTagsTaken(afterInnerLevel.breakTagsTaken())
-                .breakStates(afterInnerLevel.breakStates())
-                .levelStates(afterInnerLevel.levelStates())
-                .tokStates(afterInnerLevel.tokStates())
-                .build();
+        // Inherits indents, mustBreak and branchingCoefficient from the current state, everything else is overridden.
+        // TODO(dsanduleac): put the per-doc maps behind a "GlobalState"
+        return new State(
+                lastIndent,
+                indent,
+                afterInnerLevel.column,
+                mustBreak,
+                afterInnerLevel.numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                afterInnerLevel.breakTagsTaken,
+                afterInnerLevel.breakIndents,
+                afterInnerLevel.oneLineLevels,
+                afterInnerLevel.tokTexts);
+    }
+
+    /** Replay the effects of laying out a level, as captured by {@link LayoutMemo}, on top of this state. */
+    State withMemoizedLayout(LayoutMemo.Result result) {
+        PersistentIntMap<Boolean> newBreakTagsTaken = breakTagsTaken;
+        for (BreakTag breakTag : result.takenTags()) {
+            newBreakTagsTaken = newBreakTagsTaken.set(breakTag.id(), Boolean.TRUE);
+        }
+        for (BreakTag breakTag : result.notTakenTags()) {
+            newBreakTagsTaken = newBreakTagsTaken.set(breakTag.id(), null);
+        }
+        PersistentIntMap<Integer> newBreakIndents = breakIndents;
+        for (Map.Entry<Break, Integer> entry : result.breakIndents()) {
+            newBreakIndents = newBreakIndents.set(entry.getKey().id(), entry.getValue());
+        }
+        PersistentIntMap<Boolean> newOneLineLevels = oneLineLevels;
+        for (Level level : result.oneLineLevels()) {
+            newOneLineLevels = newOneLineLevels.set(level.id(), Boolean.TRUE);
+        }
+        PersistentIntMap<String> newTokTexts = tokTexts;
+        for (Map.Entry<Comment, String> entry : result.tokTexts()) {
+            newTokTexts = newTokTexts.set(entry.getKey().id(), entry.getValue());
+        }
+        return new State(
+                lastIndent,
+                indent,
+                result.column(),
+                mustBreak,
+                numLines + result.extraLines(),
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                newBreakTagsTaken,
+                newBreakIndents,
+                newOneLineLevels,
+                newTokTexts);
     }
 
     State addNewLines(int extraNewlines) {
-        return builder().from(this).numLines(numLines() + extraNewlines).build();
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines + extraNewlines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
-    State withColumn(int column) {
-        return builder().from(this).column(column).build();
+    State withColumn(int newColumn) {
+        return new State(
+                lastIndent,
+                indent,
+                newColumn,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
-    State withMustBreak(boolean mustBreak) {
-        return builder().from(this).mustBreak(mustBreak).build();
+    State withMustBreak(boolean newMustBreak) {
+        if (newMustBreak == mustBreak) {
+            return this;
+        }
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                newMustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
-    State withNewBranch() {
-        return builder()
-                .from(this)
-                .branchingCoefficient(branchingCoefficient() + 1)
-                .build();
+    /** Lay out the levels that continue from this state within {@code newLayoutBudget}, see {@link LayoutBudget}. */
+    public State withLayoutBudget(LayoutBudget newLayoutBudget) {
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                newLayoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
+    }
+
+    /**
+     * Lay out the independent parts of levels that continue from this state on {@code newLayoutPool}, or on the calling
+     * thread if it's null. See {@link Level} for which parts are independent.
+     */
+    public State withLayoutPool(@Nullable ForkJoinPool newLayoutPool) {
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                newLayoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
-    State withLevelState(Level level, LevelState levelState) {
-        return builder()
-                .from(this)
-                .levelStates(levelStates().set(level, levelState))
-                .build();
+    State withNewBranch() {
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient + 1,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts);
     }
 
-    State withTokState(Comment comment, TokState tokState) {
-        return builder()
-                .from(this)
-                .tokStates(tokStates().set(comment, tokState))
-                .build();
+    /** Record that the entire {@link Level} fits on one line. */
+    State withOneLineLevel(Level level) {
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels.set(level.id(), Boolean.TRUE),
+                tokTexts);
     }
 
-    public static class Builder extends ImmutableState.Builder {}
+    /** Record how a {@link Comment} was written. */
+    State withTokText(Comment comment, String text) {
+        return new State(
+                lastIndent,
+                indent,
+                column,
+                mustBreak,
+                numLines,
+                branchingCoefficient,
+                layoutBudget,
+                layoutPool,
+                breakTagsTaken,
+                breakIndents,
+                oneLineLevels,
+                tokTexts.set(comment.id(), text));
+    }
 
-    public static Builder builder() {
-        return new Builder();
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("lastIndent", lastIndent)
+                .add("indent", indent)
+                .add("column", column)
+                .add("mustBreak", mustBreak)
+                .add("numLines", numLines)
+                .add("branchingCoefficient", branchingCoefficient)
+                .toString();
     }
 
     @Target(ElementType.TYPE)
@@ -240,29 +514,4 @@ public abstract class State {
         @Parameter
         int newIndent();
     }
-
-    @Target(ElementType.TYPE)
-    @Retention(RetentionPolicy.SOURCE)
-    @Value.Style(overshadowImplementation = true)
-    @interface LevelStateStyle {}
-
-    @LevelStateStyle
-    @Value.Immutable
-    interface LevelState {
-        /** True if the entire {@link Level} fits on one line. */
-        @Parameter
-        boolean oneLine();
-    }
-
-    @Target(ElementType.TYPE)
-    @Retention(RetentionPolicy.SOURCE)
-    @Value.Style(overshadowImplementation = true)
-    @interface TokStateStyle {}
-
-    @TokStateStyle
-    @Value.Immutable
-    interface TokState {
-        @Parameter
-        String text();
-    }
 }
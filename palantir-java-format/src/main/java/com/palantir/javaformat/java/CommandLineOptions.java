@@ -46,6 +46,13 @@ final class CommandLineOptions {
     private final boolean reflowLongStrings;
     private final boolean outputReplacements;
     private final Optional<Integer> maxLineLength;
+    private final Optional<Integer> layoutBudget;
+    private final boolean parallelLayout;
+    private final boolean paranoidStringWrapping;
+    private final boolean server;
+    private final Optional<String> cacheDir;
+    private final Optional<Integer> maxFilesInFlight;
+    private final Optional<Integer> threads;
 
     CommandLineOptions(
             ImmutableList<String> files,
@@ -67,7 +74,14 @@ final class CommandLineOptions {
             Optional<String> assumeFilename,
             boolean reflowLongStrings,
             boolean outputReplacements,
-            Optional<Integer> maxLineLength) {
+            Optional<Integer> maxLineLength,
+            Optional<Integer> layoutBudget,
+            boolean parallelLayout,
+            boolean paranoidStringWrapping,
+            boolean server,
+            Optional<String> cacheDir,
+            Optional<Integer> maxFilesInFlight,
+            Optional<Integer> threads) {
         this.files = files;
         this.inPlace = inPlace;
         this.lines = lines;
@@ -88,6 +102,13 @@ final class CommandLineOptions {
         this.reflowLongStrings = reflowLongStrings;
         this.outputReplacements = outputReplacements;
         this.maxLineLength = maxLineLength;
+        this.layoutBudget = layoutBudget;
+        this.parallelLayout = parallelLayout;
+        this.paranoidStringWrapping = paranoidStringWrapping;
+        this.server = server;
+        this.cacheDir = cacheDir;
+        this.maxFilesInFlight = maxFilesInFlight;
+        this.threads = threads;
     }
 
     /** The files to format. */
@@ -192,6 +213,41 @@ final class CommandLineOptions {
         return maxLineLength;
     }
 
+    /** The most levels to lay out per file before breaking the rest without trying alternatives. */
+    Optional<Integer> layoutBudget() {
+        return layoutBudget;
+    }
+
+    /** Lay out independent parts of each file in parallel. */
+    boolean parallelLayout() {
+        return parallelLayout;
+    }
+
+    /** Check reflowed long strings by comparing whole parsed files. */
+    boolean paranoidStringWrapping() {
+        return paranoidStringWrapping;
+    }
+
+    /** Serve formatting requests over stdin and stdout until stdin is closed. */
+    boolean server() {
+        return server;
+    }
+
+    /** Directory in which to cache formatting results between runs. */
+    Optional<String> cacheDir() {
+        return cacheDir;
+    }
+
+    /** The most files to hold in memory at once, whether waiting to be formatted or waiting to be output. */
+    Optional<Integer> maxFilesInFlight() {
+        return maxFilesInFlight;
+    }
+
+    /** The number of threads to format files with. */
+    Optional<Integer> threads() {
+        return threads;
+    }
+
     static Builder builder() {
         return new Builder();
     }
@@ -218,6 +274,13 @@ final class CommandLineOptions {
         private boolean reflowLongStrings = true;
         private boolean outputReplacements = false;
         private Optional<Integer> maxLineLength = Optional.empty();
+        private Optional<Integer> layoutBudget = Optional.empty();
+        private boolean parallelLayout = false;
+        private boolean paranoidStringWrapping = false;
+        private boolean server = false;
+        private Optional<String> cacheDir = Optional.empty();
+        private Optional<Integer> maxFilesInFlight = Optional.empty();
+        private Optional<Integer> threads = Optional.empty();
 
         private Builder() {}
 
@@ -318,6 +381,41 @@ final class CommandLineOptions {
             return this;
         }
 
+        Builder layoutBudget(Integer layoutBudget) {
+            this.layoutBudget = Optional.of(layoutBudget);
+            return this;
+        }
+
+        Builder parallelLayout(boolean parallelLayout) {
+            this.parallelLayout = parallelLayout;
+            return this;
+        }
+
+        Builder paranoidStringWrapping(boolean paranoidStringWrapping) {
+            this.paranoidStringWrapping = paranoidStringWrapping;
+            return this;
+        }
+
+        Builder server(boolean server) {
+            this.server = server;
+            return this;
+        }
+
+        Builder cacheDir(String cacheDir) {
+            this.cacheDir = Optional.of(cacheDir);
+            return this;
+        }
+
+        Builder maxFilesInFlight(Integer maxFilesInFlight) {
+            this.maxFilesInFlight = Optional.of(maxFilesInFlight);
+            return this;
+        }
+
+        Builder threads(Integer threads) {
+            this.threads = Optional.of(threads);
+            return this;
+        }
+
         CommandLineOptions build() {
             Preconditions.checkArgument(!aosp || !palantirStyle, "Cannot use both aosp and palantir style");
             return new CommandLineOptions(
@@ -340,7 +438,14 @@ final class CommandLineOptions {
                     assumeFilename,
                     reflowLongStrings,
                     outputReplacements,
-                    maxLineLength);
+                    maxLineLength,
+                    layoutBudget,
+                    parallelLayout,
+                    paranoidStringWrapping,
+                    server,
+                    cacheDir,
+                    maxFilesInFlight,
+                    threads);
         }
     }
 }
@@ -142,6 +142,27 @@ final class CommandLineOptionsParser {
                 case "-max-line-length":
                     optionsBuilder.maxLineLength(parseInteger(it, flag, value));
                     break;
+                case "--layout-budget":
+                    optionsBuilder.layoutBudget(parseInteger(it, flag, value));
+                    break;
+                case "--parallel-layout":
+                    optionsBuilder.parallelLayout(true);
+                    break;
+                case "--paranoid-string-wrapping":
+                    optionsBuilder.paranoidStringWrapping(true);
+                    break;
+                case "--server":
+                    optionsBuilder.server(true);
+                    break;
+                case "--cache-dir":
+                    optionsBuilder.cacheDir(getValue(flag, it, value));
+                    break;
+                case "--max-files-in-flight":
+                    optionsBuilder.maxFilesInFlight(parseInteger(it, flag, value));
+                    break;
+                case "--threads":
+                    optionsBuilder.threads(parseInteger(it, flag, value));
+                    break;
                 default:
                     throw new IllegalArgumentException("unexpected flag: " + flag);
             }
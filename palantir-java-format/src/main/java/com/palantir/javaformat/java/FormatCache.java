@@ -0,0 +1,297 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of formatting results for the CLI, so that repeated runs over a mostly unchanged tree (e.g. in
+ * pre-commit hooks or {@code --dry-run} checks in CI) only pay for hashing the files that did not change.
+ *
+ * <p>Entries are keyed by a hash of the file contents together with a fingerprint of everything else that affects the
+ * output: the formatter build, the Java runtime, the {@link JavaFormatterOptions} and the relevant command line flags.
+ * An entry records either that the file was already formatted, or its formatted contents. Files that ran out of their
+ * {@link JavaFormatterOptions#layoutBudget()} are not cached, so that they are reported on every run.
+ *
+ * <p>The cache may be shared by concurrent formatter processes: entries are written to a temporary file and atomically
+ * moved into place, and concurrent writers of the same entry always write the same contents. Once the cache grows past
+ * {@code maxBytes}, the least recently used entries are evicted. Failing to read or write the cache never fails
+ * formatting; the file is just formatted as if there were no cache.
+ */
+final class FormatCache {
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final byte ALREADY_FORMATTED = 'U';
+    private static final byte FORMATTED_OUTPUT = 'F';
+    private static final String TEMP_FILE_PREFIX = ".tmp-";
+
+    /** Hits only refresh an entry's last use time once it is this old, to avoid a metadata write for every file. */
+    private static final Duration TOUCH_GRANULARITY = Duration.ofHours(1);
+
+    /** Temporary files this old were left behind by a process that died mid-write. */
+    private static final Duration ABANDONED_TEMP_FILE_AGE = Duration.ofHours(1);
+
+    private final Path directory;
+    private final String fingerprint;
+    private final long maxBytes;
+    private final AtomicBoolean written = new AtomicBoolean(false);
+
+    FormatCache(Path directory, String fingerprint, long maxBytes) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Everything other than the file contents that determines the output of {@link FormatFileCallable}. */
+    static String fingerprint(CommandLineOptions parameters, JavaFormatterOptions options) {
+        return String.join(
+                "\n",
+                Main.versionString(),
+                formatterBuild(),
+                // Picks the AST visitor and the javac that parses the input
+                "java=" + Runtime.version(),
+                "style=" + options.style(),
+                "maxLineLength=" + options.maxLineLength(),
+                "formatJavadoc=" + options.formatJavadoc(),
+                "layoutBudget=" + options.layoutBudget(),
+                "fixImportsOnly=" + parameters.fixImportsOnly(),
+                "sortImports=" + parameters.sortImports(),
+                "removeUnusedImports=" + parameters.removeUnusedImports(),
+                "reflowLongStrings=" + parameters.reflowLongStrings(),
+                "paranoidStringWrapping=" + options.paranoidStringWrapping(),
+                "outputReplacements=" + parameters.outputReplacements(),
+                "lines=" + parameters.lines(),
+                "characterRanges=" + parameters.characterRanges(),
+                "offsets=" + parameters.offsets(),
+                "lengths=" + parameters.lengths());
+    }
+
+    /**
+     * Development builds have no implementation version, so also identify the formatter by the jar or classes directory
+     * it was loaded from.
+     */
+    private static String formatterBuild() {
+        try {
+            CodeSource codeSource = Main.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) {
+                return "unknown";
+            }
+            return formatterBuild(Paths.get(codeSource.getLocation().toURI()));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Identifies the formatter loaded from {@code location} by its path, size and modification time. A classes
+     * directory is identified by those of every file in it, so that rebuilding the formatter invalidates the cache.
+     */
+    static String formatterBuild(Path location) throws IOException {
+        if (Files.isRegularFile(location)) {
+            return location + ":" + Files.size(location) + ":" + Files.getLastModifiedTime(location);
+        }
+        Hasher hasher = Hashing.sha256().newHasher();
+        try (Stream<Path> paths = Files.walk(location)) {
+            for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    hasher.putString(location.relativize(path).toString(), UTF_8);
+                    hasher.putLong(attributes.size());
+                    hasher.putLong(attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+        return location + ":" + hasher.hash();
+    }
+
+    /**
+     * Returns the result of {@code format} for {@code input}, whose UTF-8 encoding is {@code inputBytes}, either from
+     * the cache or by running it and caching the result.
+     */
+    String format(byte[] inputBytes, String input, FormatFileCallable format) throws FormatterException {
+        Path entry = entryPath(inputBytes);
+        Optional<String> cached = read(entry, input);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        String output = format.call();
+        if (format.layoutBudgetDiagnostics().isEmpty()) {
+            write(entry, input, output);
+        }
+        return output;
+    }
+
+    private Path entryPath(byte[] inputBytes) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(fingerprint, UTF_8);
+        hasher.putInt(inputBytes.length);
+        hasher.putBytes(inputBytes);
+        String hash = hasher.hash().toString();
+        return directory.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static Optional<String> read(Path entry, String input) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(entry);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        if (bytes.length == 1 && bytes[0] == ALREADY_FORMATTED) {
+            touch(entry);
+            return Optional.of(input);
+        }
+        if (bytes.length >= 1 && bytes[0] == FORMATTED_OUTPUT) {
+            touch(entry);
+            return Optional.of(new String(bytes, 1, bytes.length - 1, UTF_8));
+        }
+        return Optional.empty();
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Instant now = Instant.now();
+            FileTime lastModified = Files.getLastModifiedTime(entry);
+            if (lastModified.toInstant().plus(TOUCH_GRANULARITY).isBefore(now)) {
+                Files.setLastModifiedTime(entry, FileTime.from(now));
+            }
+        } catch (IOException e) {
+            // Only makes the entry more likely to be evicted
+        }
+    }
+
+    private void write(Path entry, String input, String output) {
+        byte[] bytes;
+        if (output.equals(input)) {
+            bytes = new byte[] {ALREADY_FORMATTED};
+        } else {
+            byte[] outputBytes = output.getBytes(UTF_8);
+            bytes = new byte[outputBytes.length + 1];
+            bytes[0] = FORMATTED_OUTPUT;
+            System.arraycopy(outputBytes, 0, bytes, 1, outputBytes.length);
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            temp = Files.createTempFile(entry.getParent(), TEMP_FILE_PREFIX, "");
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            written.set(true);
+        } catch (IOException e) {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries if anything was written since the cache was created and the cache is now
+     * larger than {@code maxBytes}. Shrinks the cache well below the limit so that the next few runs don't have to.
+     */
+    void evictIfNeeded() {
+        if (!written.get()) {
+            return;
+        }
+        List<CacheFile> files = new ArrayList<>();
+        long totalBytes = 0;
+        Instant abandonedBefore = Instant.now().minus(ABANDONED_TEMP_FILE_AGE);
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Evicted by another process
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                Instant lastModified = attributes.lastModifiedTime().toInstant();
+                if (path.getFileName().toString().startsWith(TEMP_FILE_PREFIX)) {
+                    if (lastModified.isBefore(abandonedBefore)) {
+                        deleteQuietly(path);
+                    }
+                    continue;
+                }
+                files.add(new CacheFile(path, attributes.size(), lastModified));
+                totalBytes += attributes.size();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Try again next run
+            return;
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        files.sort(Comparator.comparing(file -> file.lastModified));
+        long targetBytes = maxBytes / 4 * 3;
+        for (CacheFile file : files) {
+            if (totalBytes <= targetBytes) {
+                break;
+            }
+            deleteQuietly(file.path);
+            totalBytes -= file.size;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Another process may be using it, or have deleted it already
+        }
+    }
+
+    private static final class CacheFile {
+        private final Path path;
+        private final long size;
+        private final Instant lastModified;
+
+        CacheFile(Path path, long size, Instant lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -35,6 +35,8 @@ class FormatFileCallable implements Callable<String> {
     private final CommandLineOptions parameters;
     private final JavaFormatterOptions options;
 
+    private ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics = ImmutableList.of();
+
     public FormatFileCallable(CommandLineOptions parameters, String input, JavaFormatterOptions options) {
         this.input = input;
         this.parameters = parameters;
@@ -65,22 +67,38 @@ class FormatFileCallable implements Callable<String> {
     }
 
     private String formatFile(Formatter formatter) throws FormatterException {
-        String formatted = formatter.formatSource(input, characterRanges(input).asRanges());
-        formatted = fixImports(formatted);
+        FormattingSession session = new FormattingSession(input);
+        session.update(formatter.formatSource(session, characterRanges(input).asRanges()));
+        layoutBudgetDiagnostics = session.layoutBudgetDiagnostics();
+        // The formatted text is the output for an input that parsed
+        fixImports(session, /* syntaxChecked= */ true);
         if (parameters.reflowLongStrings()) {
-            formatted = StringWrapper.wrap(options.maxLineLength(), formatted, formatter);
+            session.update(StringWrapper.wrap(options.maxLineLength(), session, formatter));
         }
-        return formatted;
+        return session.text();
+    }
+
+    /**
+     * Where formatting ran out of its {@link JavaFormatterOptions#layoutBudget()}, relative to the input. Only set
+     * once {@link #call} has formatted the file.
+     */
+    ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics() {
+        return layoutBudgetDiagnostics;
     }
 
     private String fixImports(String input) throws FormatterException {
+        FormattingSession session = new FormattingSession(input);
+        fixImports(session, /* syntaxChecked= */ false);
+        return session.text();
+    }
+
+    private void fixImports(FormattingSession session, boolean syntaxChecked) throws FormatterException {
         if (parameters.removeUnusedImports()) {
-            input = RemoveUnusedImports.removeUnusedImports(input);
+            session.update(RemoveUnusedImports.removeUnusedImports(session, syntaxChecked));
         }
         if (parameters.sortImports()) {
-            input = ImportOrderer.reorderImports(input, options.style());
+            session.update(ImportOrderer.reorderImports(session.text(), options.style()));
         }
-        return input;
     }
 
     private RangeSet<Integer> characterRanges(String input) {
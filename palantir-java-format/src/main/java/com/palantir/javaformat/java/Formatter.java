@@ -14,8 +14,6 @@
 
 package com.palantir.javaformat.java;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -32,28 +30,26 @@ import com.palantir.javaformat.OpsBuilder.OpsOutput;
 import com.palantir.javaformat.Utils;
 import com.palantir.javaformat.doc.Doc;
 import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.IdScope;
+import com.palantir.javaformat.doc.LayoutBudget;
 import com.palantir.javaformat.doc.Level;
 import com.palantir.javaformat.doc.NoopSink;
 import com.palantir.javaformat.doc.Obs;
 import com.palantir.javaformat.doc.Obs.Sink;
 import com.palantir.javaformat.doc.State;
-import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.parser.JavacParser;
-import com.sun.tools.javac.parser.ParserFactory;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Log;
-import com.sun.tools.javac.util.Options;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
 import java.util.Collection;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
-import javax.tools.StandardLocation;
 
 /**
  * This is google-java-format, a new Java formatter that follows the Google Java Style Guide quite precisely---to the
@@ -108,89 +104,113 @@ public final class Formatter {
         return new Formatter(options, false);
     }
 
+    JavaFormatterOptions options() {
+        return options;
+    }
+
     /**
-     * Construct a {@code Formatter} given a Java compilation unit. Parses the code; builds a {@link JavaInput} and the
-     * corresponding {@link JavaOutput}.
+     * Construct a {@code Formatter} given a Java compilation unit. Builds the {@link JavaOutput} corresponding to a
+     * {@link JavaInput} and its parsed compilation unit.
      *
      * @param javaInput the input, a Java compilation unit
+     * @param unit the parsed {@code javaInput}
      * @param options the {@link JavaFormatterOptions}
      * @param commentsHelper the {@link CommentsHelper}, used to rewrite comments
+     * @param layoutBudget the {@link LayoutBudget} to lay out the compilation unit within
      * @param debugMode whether to produce debugging output via {@link DebugRenderer}
      * @return javaOutput the output produced
      */
     static JavaOutput format(
-            final JavaInput javaInput, JavaFormatterOptions options, CommentsHelper commentsHelper, boolean debugMode)
-            throws FormatterException {
-
-        Context context = new Context();
-        Options.instance(context).put("allowStringFolding", "false");
-
-        JCCompilationUnit unit = parseJcCompilationUnit(context, javaInput.getText());
-
-        // Output the compilation unit.
-        javaInput.setCompilationUnit(unit);
-        OpsBuilder opsBuilder = new OpsBuilder(javaInput);
-
-        JavaInputAstVisitor visitor;
-        if (getRuntimeVersion() >= 21) {
-            visitor = createVisitor("com.palantir.javaformat.java.java21.Java21InputAstVisitor", opsBuilder, options);
-        } else if (getRuntimeVersion() >= 14) {
-            visitor = createVisitor("com.palantir.javaformat.java.java14.Java14InputAstVisitor", opsBuilder, options);
-        } else {
-            visitor = new JavaInputAstVisitor(opsBuilder, options.indentationMultiplier());
-        }
-
-        visitor.scan(unit, null);
-        opsBuilder.sync(javaInput.getText().length());
-        opsBuilder.drain();
-        OpsOutput opsOutput = opsBuilder.build();
-
-        Level doc = new DocBuilder().withOps(opsOutput.ops()).build();
-
-        // Don't even allocate all those JSON nodes if we're not going to write it out
-        Sink sink = debugMode ? new JsonSink() : new NoopSink();
-
-        Obs.ExplorationNode observationNode = Obs.createRoot(sink);
-        State finalState =
-                doc.computeBreaks(commentsHelper, options.maxLineLength(), State.startingState(), observationNode);
+            final JavaInput javaInput,
+            JCCompilationUnit unit,
+            JavaFormatterOptions options,
+            CommentsHelper commentsHelper,
+            LayoutBudget layoutBudget,
+            boolean debugMode) {
+        return format(javaInput, unit, options, commentsHelper, layoutBudget, debugMode, null);
+    }
 
-        JavaOutput javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata());
-        doc.write(finalState, javaOutput);
-        javaOutput.flush();
+    /**
+     * Like {@link #format(JavaInput, JCCompilationUnit, JavaFormatterOptions, CommentsHelper, LayoutBudget, boolean)},
+     * but if formatting replaces the whole of {@code javaInput}, writes the output lines to {@code output} as they are
+     * completed instead of keeping them, see {@link JavaOutput#isWrittenOut()}. {@code output} is only opened once the
+     * layout has been computed, so nothing is written if that fails.
+     */
+    static JavaOutput format(
+            final JavaInput javaInput,
+            JCCompilationUnit unit,
+            JavaFormatterOptions options,
+            CommentsHelper commentsHelper,
+            LayoutBudget layoutBudget,
+            boolean debugMode,
+            @Nullable CharSink output) {
+        // Everything created from here on only needs ids that are unique within this run
+        try (IdScope ignored = IdScope.open()) {
+            // Output the compilation unit.
+            javaInput.setCompilationUnit(unit);
+            OpsBuilder opsBuilder = new OpsBuilder(javaInput);
+            JavaInputAstVisitor visitor = createVisitor(opsBuilder, options);
+            visitor.scan(unit, null);
+            opsBuilder.sync(javaInput.getText().length());
+            opsBuilder.drain();
+            OpsOutput opsOutput = opsBuilder.build();
+
+            Level doc = new DocBuilder().withOps(opsOutput.ops()).build();
+
+            // Don't even allocate all those JSON nodes if we're not going to write it out
+            Sink sink = debugMode ? new JsonSink() : new NoopSink();
+
+            // Explorations are only reported to the debug sink, and levels only count against a budget, in the order
+            // that they are laid out in, so those need everything laid out on this thread
+            boolean parallelLayout =
+                    options.parallelLayout() && !debugMode && !options.layoutBudget().isPresent();
+
+            Obs.ExplorationNode observationNode = Obs.createRoot(sink);
+            State finalState = doc.computeBreaks(
+                    commentsHelper,
+                    options.maxLineLength(),
+                    State.startingState()
+                            .withLayoutBudget(layoutBudget)
+                            .withLayoutPool(parallelLayout ? ForkJoinPool.commonPool() : null),
+                    observationNode);
+
+            JavaOutput javaOutput;
+            if (output != null && !debugMode && JavaOutput.replacesWholeInput(javaInput, opsOutput.inputMetadata())) {
+                try (Writer writer = output.openBufferedStream()) {
+                    javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata(), writer);
+                    doc.write(finalState, javaOutput);
+                    javaOutput.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata());
+                doc.write(finalState, javaOutput);
+                javaOutput.flush();
+            }
 
-        if (debugMode) {
-            DebugRenderer.render(javaInput, opsOutput, doc, finalState, javaOutput, sink.getOutput());
+            if (debugMode) {
+                DebugRenderer.render(javaInput, opsOutput, doc, finalState, javaOutput, sink.getOutput());
+            }
+            return javaOutput;
         }
-        return javaOutput;
     }
 
-    static JCCompilationUnit parseJcCompilationUnit(Context context, String sourceText) throws FormatterException {
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        context.put(DiagnosticListener.class, diagnostics);
-        Options.instance(context).put("--enable-preview", "true");
-        JCCompilationUnit unit;
-        JavacFileManager fileManager = new JavacFileManager(context, true, UTF_8);
-        try {
-            fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
-        } catch (IOException e) {
-            // impossible
-            throw new UncheckedIOException(e);
-        }
+    static JCCompilationUnit parseJcCompilationUnit(
+            ParsingContext parsingContext, String sourceText, boolean allowStringFolding) throws FormatterException {
         SimpleJavaFileObject source = new SimpleJavaFileObject(URI.create("source"), JavaFileObject.Kind.SOURCE) {
             @Override
             public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
                 return sourceText;
             }
         };
-        Log.instance(context).useSource(source);
-        ParserFactory parserFactory = ParserFactory.instance(context);
-        JavacParser parser = parserFactory.newParser(
-                sourceText, /*keepDocComments=*/ true, /*keepEndPos=*/ true, /*keepLineMap=*/ true);
-        unit = parser.parseCompilationUnit();
+        parsingContext.log().useSource(source);
+        JavacParser parser = parsingContext.newParser(sourceText, allowStringFolding);
+        JCCompilationUnit unit = parser.parseCompilationUnit();
         unit.sourcefile = source;
 
         Iterable<Diagnostic<? extends JavaFileObject>> errorDiagnostics =
-                Iterables.filter(diagnostics.getDiagnostics(), Formatter::errorDiagnostic);
+                Iterables.filter(parsingContext.diagnostics(), Formatter::errorDiagnostic);
         if (!Iterables.isEmpty(errorDiagnostics)) {
             throw FormatterExceptions.fromJavacDiagnostics(errorDiagnostics);
         }
@@ -202,6 +222,17 @@ public final class Formatter {
         return Runtime.version().feature();
     }
 
+    /** Creates the visitor that emits ops for the language level of the running JDK. */
+    static JavaInputAstVisitor createVisitor(OpsBuilder opsBuilder, JavaFormatterOptions options) {
+        if (getRuntimeVersion() >= 21) {
+            return createVisitor("com.palantir.javaformat.java.java21.Java21InputAstVisitor", opsBuilder, options);
+        } else if (getRuntimeVersion() >= 14) {
+            return createVisitor("com.palantir.javaformat.java.java14.Java14InputAstVisitor", opsBuilder, options);
+        } else {
+            return new JavaInputAstVisitor(opsBuilder, options.indentationMultiplier());
+        }
+    }
+
     @SuppressWarnings("for-rollout:ThrowError")
     private static JavaInputAstVisitor createVisitor(
             final String className, final OpsBuilder builder, final JavaFormatterOptions options) {
@@ -236,9 +267,23 @@ public final class Formatter {
      * @throws FormatterException if the input cannot be parsed
      */
     public void formatSource(CharSource input, CharSink output) throws FormatterException, IOException {
-        // TODO(cushon): proper support for streaming input/output. Input may
-        // not be feasible (parsing) but output should be easier.
-        output.write(formatSource(input.read()));
+        // The input has to be read in full to parse it, but the output is written line by line as the document is
+        // written out, without building the output string and the replacement for the whole file first.
+        FormattingSession session = new FormattingSession(input.read());
+        ImmutableList<Range<Integer>> wholeFile =
+                ImmutableList.of(Range.closedOpen(0, session.text().length()));
+        JavaInput javaInput = ModifierOrderer.reorderModifiers(session.javaInput(), wholeFile);
+        JavaOutput javaOutput;
+        try {
+            javaOutput = format(session, javaInput, output);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!javaOutput.isWrittenOut()) {
+            output.write(Utils.applyReplacements(
+                    session.text(),
+                    javaOutput.getFormatReplacements(javaInput.characterRangesToTokenRanges(wholeFile))));
+        }
     }
 
     /**
@@ -266,11 +311,13 @@ public final class Formatter {
      * Style Guide - 3.3.3 Import ordering and spacing</a>
      */
     public String formatSourceAndFixImports(String input) throws FormatterException {
-        input = ImportOrderer.reorderImports(input, options.style());
-        input = RemoveUnusedImports.removeUnusedImports(input);
-        String formatted = formatSource(input);
-        formatted = StringWrapper.wrap(options.maxLineLength(), formatted, this);
-        return formatted;
+        FormattingSession session = new FormattingSession(input);
+        session.update(ImportOrderer.reorderImports(session.text(), options.style()));
+        // Nothing has parsed the input yet, and formatting may fail on invalid input before its own parse would report
+        // the syntax error, so this parse reports it
+        session.update(RemoveUnusedImports.removeUnusedImports(session, /* syntaxChecked= */ false));
+        session.update(formatSource(session, ImmutableList.of(Range.closedOpen(0, session.text().length()))));
+        return StringWrapper.wrap(options.maxLineLength(), session, this);
     }
 
     /**
@@ -296,7 +343,13 @@ public final class Formatter {
      * @throws FormatterException if the input string cannot be parsed
      */
     public String formatSource(String input, Collection<Range<Integer>> characterRanges) throws FormatterException {
-        return Utils.applyReplacements(input, getFormatReplacements(input, characterRanges));
+        return formatSource(new FormattingSession(input), characterRanges);
+    }
+
+    /** Like {@link #formatSource(String, Collection)}, reusing the tokens and tree of the session's current text. */
+    String formatSource(FormattingSession session, Collection<Range<Integer>> characterRanges)
+            throws FormatterException {
+        return Utils.applyReplacements(session.text(), getFormatReplacements(session, characterRanges));
     }
 
     /**
@@ -309,21 +362,78 @@ public final class Formatter {
      */
     public ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> characterRanges)
             throws FormatterException {
-        JavaInput javaInput = new JavaInput(input);
+        return getFormatReplacements(new FormattingSession(input), characterRanges);
+    }
 
+    /**
+     * Emit the {@link Replacement}s to convert from {@code input} to output, like {@link #getFormatReplacements(String,
+     * Collection)}, together with where formatting ran out of its {@link JavaFormatterOptions#layoutBudget()}.
+     *
+     * @param input the input compilation unit and the character ranges to reformat
+     * @return the result for the input, which is a failure if the input cannot be parsed
+     */
+    public FormatterResult getFormatResult(FormatterInput input) {
+        FormattingSession session = new FormattingSession(input.content());
+        try {
+            ImmutableList<Replacement> replacements = getFormatReplacements(session, input.ranges());
+            return FormatterResult.success(input.path(), replacements, session.layoutBudgetDiagnostics());
+        } catch (FormatterException e) {
+            return FormatterResult.failure(input.path(), e.diagnostics());
+        }
+    }
+
+    private ImmutableList<Replacement> getFormatReplacements(
+            FormattingSession session, Collection<Range<Integer>> characterRanges) throws FormatterException {
         // TODO(cushon): this is only safe because the modifier ordering doesn't affect whitespace,
         // and doesn't change the replacements that are output. This is not true in general for
         // 'de-linting' changes (e.g. import ordering).
-        javaInput = ModifierOrderer.reorderModifiers(javaInput, characterRanges);
+        JavaInput javaInput = ModifierOrderer.reorderModifiers(session.javaInput(), characterRanges);
+        JavaOutput javaOutput = format(session, javaInput, null);
+        RangeSet<Integer> tokenRangeSet = javaInput.characterRangesToTokenRanges(characterRanges);
+        return javaOutput.getFormatReplacements(tokenRangeSet);
+    }
+
+    /**
+     * Formats {@code javaInput}, which is the session's text with its modifiers reordered, writing the output to
+     * {@code output} if that's given and the whole input is replaced.
+     */
+    private JavaOutput format(FormattingSession session, JavaInput javaInput, @Nullable CharSink output)
+            throws FormatterException {
+        JCCompilationUnit unit;
+        if (javaInput == session.javaInput()) {
+            unit = session.unit();
+        } else {
+            // Modifiers were reordered, so the session's tree no longer matches the text being formatted.
+            unit = new FormattingSession(javaInput.getText()).unit();
+        }
 
         JavaCommentsHelper commentsHelper = new JavaCommentsHelper(javaInput.getLineSeparator(), options);
+        LayoutBudget layoutBudget = options.layoutBudget().isPresent()
+                ? LayoutBudget.of(options.layoutBudget().getAsInt())
+                : LayoutBudget.unlimited();
         JavaOutput javaOutput;
         try {
-            javaOutput = format(javaInput, options, commentsHelper, debugMode);
+            javaOutput = format(javaInput, unit, options, commentsHelper, layoutBudget, debugMode, output);
         } catch (FormattingError e) {
             throw new FormatterException(e.diagnostics());
         }
-        RangeSet<Integer> tokenRangeSet = javaInput.characterRangesToTokenRanges(characterRanges);
-        return javaOutput.getFormatReplacements(tokenRangeSet);
+        session.setLayoutBudgetDiagnostics(layoutBudgetDiagnostics(javaInput, layoutBudget));
+        return javaOutput;
+    }
+
+    /** Reports where formatting ran out of its {@link JavaFormatterOptions#layoutBudget()}, if it did. */
+    private ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics(JavaInput javaInput, LayoutBudget layoutBudget) {
+        if (!layoutBudget.isExhausted()) {
+            return ImmutableList.of();
+        }
+        String message = String.format(
+                "layout budget of %d levels used up here, %d levels were broken without trying alternatives",
+                options.layoutBudget().getAsInt(), layoutBudget.fallbacks());
+        OptionalInt token = layoutBudget.firstFallbackToken();
+        if (!token.isPresent()) {
+            return ImmutableList.of(FormatterDiagnostic.create(message));
+        }
+        int position = javaInput.getToken(token.getAsInt()).getTok().getPosition();
+        return ImmutableList.of(javaInput.createDiagnostic(position, message));
     }
 }
@@ -0,0 +1,120 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Serves formatting requests from a single client over a pair of streams, so that editors and build tools can keep one
+ * warm formatter process around instead of paying for JVM startup and a cold JIT on every file. Started with
+ * {@code --server}.
+ *
+ * <p>A request is the arguments of a single stdin invocation of the CLI (e.g. {@code --palantir -}) followed by the
+ * text to format, and the response is the exit code, standard output and standard error that invocation would have
+ * produced. Requests are handled one at a time, in order. All integers are big-endian and all strings are UTF-8:
+ *
+ * <pre>
+ * request:  int argCount, argCount * (int length, byte[length] arg), int length, byte[length] input
+ * response: int exitCode, int length, byte[length] stdout, int length, byte[length] stderr
+ * </pre>
+ *
+ * <p>A request with no arguments is a health check, and is answered with an empty, successful response. The server
+ * exits once its input is closed.
+ */
+final class FormatterServer {
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    FormatterServer(InputStream in, OutputStream out) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /** Serves requests until the input is closed. */
+    void serve() throws IOException {
+        while (true) {
+            int argCount;
+            try {
+                argCount = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            String[] args = new String[argCount];
+            for (int i = 0; i < argCount; i++) {
+                args[i] = new String(readBytes(), UTF_8);
+            }
+            byte[] input = readBytes();
+            if (argCount == 0) {
+                writeResponse(0, "", "");
+            } else {
+                handle(args, input);
+            }
+        }
+    }
+
+    private void handle(String[] args, byte[] input) throws IOException {
+        StringWriter stdout = new StringWriter();
+        StringWriter stderr = new StringWriter();
+        PrintWriter outWriter = new PrintWriter(stdout);
+        PrintWriter errWriter = new PrintWriter(stderr);
+        int exitCode;
+        try {
+            exitCode = new Main(outWriter, errWriter, new ByteArrayInputStream(input)).format(args);
+        } catch (UsageException e) {
+            // Same as Main#main
+            errWriter.print(e.getMessage());
+            exitCode = 0;
+        } catch (RuntimeException | StackOverflowError e) {
+            // Would have killed a one-off formatter process, but shouldn't take down the server.
+            e.printStackTrace(errWriter);
+            exitCode = 1;
+        }
+        outWriter.flush();
+        errWriter.flush();
+        writeResponse(exitCode, stdout.toString(), stderr.toString());
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void writeResponse(int exitCode, String stdout, String stderr) throws IOException {
+        out.writeInt(exitCode);
+        writeBytes(stdout.getBytes(UTF_8));
+        writeBytes(stderr.getBytes(UTF_8));
+        out.flush();
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
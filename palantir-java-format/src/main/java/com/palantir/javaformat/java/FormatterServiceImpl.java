@@ -16,10 +16,21 @@
 package com.palantir.javaformat.java;
 
 import com.google.auto.service.AutoService;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @AutoService(FormatterService.class)
 public final class FormatterServiceImpl implements FormatterService {
@@ -27,8 +38,11 @@ public final class FormatterServiceImpl implements FormatterService {
     private final Formatter formatter;
 
     public FormatterServiceImpl() {
-        JavaFormatterOptions options =
-                JavaFormatterOptions.builder().style(Style.PALANTIR).build();
+        this(JavaFormatterOptions.builder().style(Style.PALANTIR).build());
+    }
+
+    /** A service that formats with {@code options} rather than the default Palantir style. */
+    public FormatterServiceImpl(JavaFormatterOptions options) {
         formatter = Formatter.createFormatter(options);
     }
 
@@ -38,6 +52,45 @@ public final class FormatterServiceImpl implements FormatterService {
         return formatter.getFormatReplacements(text, toRanges);
     }
 
+    /**
+     * Formats the inputs in parallel on a pool with one thread per available processor, which is shared by all
+     * batches.
+     */
+    @Override
+    public void getBatchFormatReplacements(Collection<FormatterInput> inputs, Consumer<FormatterResult> results) {
+        if (inputs.isEmpty()) {
+            return;
+        }
+        CompletionService<FormatterResult> completionService = new ExecutorCompletionService<>(BatchExecutor.INSTANCE);
+        List<Future<FormatterResult>> futures = new ArrayList<>(inputs.size());
+        try {
+            for (FormatterInput input : inputs) {
+                futures.add(completionService.submit(() -> formatResult(input)));
+            }
+            for (int i = 0; i < inputs.size(); i++) {
+                results.accept(completionService.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while formatting a batch", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // Only does anything if the batch failed, in which case the rest of it isn't wanted
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private FormatterResult formatResult(FormatterInput input) {
+        try {
+            return formatter.getFormatResult(input);
+        } catch (RuntimeException | StackOverflowError e) {
+            // Only fails this input, rather than the whole batch
+            return FormatterResult.failure(input.path(), ImmutableList.of(FormatterDiagnostic.create(e.toString())));
+        }
+    }
+
     @Override
     public String formatSourceReflowStringsAndFixImports(String input) throws FormatterException {
         return formatter.formatSourceAndFixImports(input);
@@ -47,4 +100,16 @@ public final class FormatterServiceImpl implements FormatterService {
     public String fixImports(String input) throws FormatterException {
         return formatter.fixImports(input);
     }
+
+    /** Created on first use, and made of daemon threads so that it never keeps the JVM alive. */
+    private static final class BatchExecutor {
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("palantir-java-format-batch-%d")
+                        .setDaemon(true)
+                        .build());
+
+        private BatchExecutor() {}
+    }
 }
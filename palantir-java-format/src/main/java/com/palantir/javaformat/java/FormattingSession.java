@@ -0,0 +1,131 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.palantir.javaformat.java.JavacTokens.RawTok;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * The current revision of a source file as it passes through the formatting pipeline (import ordering, unused import
+ * removal, formatting and string reflowing), together with the tokens and compilation unit derived from it.
+ *
+ * <p>Every stage reads the {@link JavaInput} and {@link JCCompilationUnit} from the session rather than lexing and
+ * parsing the text itself, and then hands its output back through {@link #update}. Most stages leave most files
+ * unchanged, in which case the next stage reuses the same lex and parse instead of starting over.
+ *
+ * <p>Not thread-safe; a session belongs to a single format call.
+ */
+final class FormattingSession {
+    private String text;
+
+    /** The javac tokens of {@link #text}, until {@link #javaInput} is built from them. */
+    @Nullable
+    private ImmutableList<RawTok> rawToks;
+
+    @Nullable
+    private JavaInput javaInput;
+
+    @Nullable
+    private Context context;
+
+    @Nullable
+    private JCCompilationUnit unit;
+
+    private ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics = ImmutableList.of();
+
+    FormattingSession(String text) {
+        this.text = Preconditions.checkNotNull(text, "text");
+    }
+
+    String text() {
+        return text;
+    }
+
+    /** Moves the session on to {@code newText}, discarding the derived tokens and tree if the text changed. */
+    void update(String newText) {
+        if (newText.equals(text)) {
+            return;
+        }
+        text = newText;
+        rawToks = null;
+        javaInput = null;
+        context = null;
+        unit = null;
+    }
+
+    /**
+     * The javac tokens of {@link #text()}, or empty if it doesn't lex. Cheaper than {@link #javaInput()}, which reuses
+     * them if it is asked for later.
+     */
+    Optional<ImmutableList<RawTok>> rawToks() {
+        if (rawToks == null) {
+            Optional<ImmutableList<RawTok>> lexed = JavaInput.lex(text, ImmutableSet.of());
+            rawToks = lexed.orElse(null);
+            return lexed;
+        }
+        return Optional.of(rawToks);
+    }
+
+    /** The lexed {@link #text()}. {@link JavaInput#setCompilationUnit} must only ever be given {@link #unit()}. */
+    JavaInput javaInput() throws FormatterException {
+        if (javaInput == null) {
+            javaInput = rawToks != null ? JavaInput.fromRawToks(text, rawToks) : new JavaInput(text);
+            // The toks have everything the raw toks had
+            rawToks = null;
+        }
+        return javaInput;
+    }
+
+    /** Whether {@link #unit()} has already been parsed, and so costs nothing more. */
+    boolean isParsed() {
+        return unit != null;
+    }
+
+    /** The parsed {@link #text()}, without string folding. */
+    JCCompilationUnit unit() throws FormatterException {
+        if (unit == null) {
+            ParsingContext parsingContext = ParsingContext.acquire();
+            unit = Formatter.parseJcCompilationUnit(parsingContext, text, /*allowStringFolding=*/ false);
+            context = parsingContext.context();
+        }
+        return unit;
+    }
+
+    /**
+     * Where the last format of this session ran out of its {@link JavaFormatterOptions#layoutBudget()}, relative to
+     * the text that was formatted. Empty if it didn't.
+     */
+    ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics() {
+        return layoutBudgetDiagnostics;
+    }
+
+    void setLayoutBudgetDiagnostics(ImmutableList<FormatterDiagnostic> diagnostics) {
+        layoutBudgetDiagnostics = diagnostics;
+    }
+
+    /** The javac context that {@link #unit()} was parsed with. */
+    Context context() throws FormatterException {
+        unit();
+        return Preconditions.checkNotNull(context, "context");
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.javaformat.java.JavacTokens.RawTok;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Lexes the header of a compilation unit, its package and imports along with any comments and annotations, into the
+ * same {@link RawTok}s as {@link JavacTokens#getTokens}, without setting up javac. Reordering imports only needs the
+ * header, and setting up javac costs more than lexing it.
+ *
+ * <p>Only the simplest lexical syntax is recognised: ASCII identifiers and keywords, single-character separators, and
+ * string literals without escapes. Anything else, such as numbers, operators, Unicode escapes or unterminated
+ * comments, could need javac to lex it, or to report an error, so the scan gives up there and the caller should lex
+ * with javac instead.
+ */
+final class HeaderScanner {
+    /** Keywords, and the kinds of separators and operators. */
+    private static final ImmutableMap<String, TokenKind> KINDS_BY_NAME = kindsByName();
+
+    /** The single-character tokens that are recognised, unless they start a longer operator. */
+    private static final String SEPARATORS = "(){};,.@=*";
+
+    private final String text;
+    private final Set<TokenKind> stopTokens;
+    private final ImmutableList.Builder<RawTok> rawToks = ImmutableList.builder();
+    private int position = 0;
+
+    /** The end of the last comment or token, after which whitespace hasn't been added yet. */
+    private int last = 0;
+
+    private HeaderScanner(String text, Set<TokenKind> stopTokens) {
+        this.text = text;
+        this.stopTokens = stopTokens;
+    }
+
+    /**
+     * The {@link RawTok}s of {@code text} up to the first of {@code stopTokens}, or empty if the text needs javac to
+     * lex it.
+     */
+    static Optional<ImmutableList<RawTok>> scan(String text, Set<TokenKind> stopTokens) {
+        return new HeaderScanner(text, stopTokens).scan();
+    }
+
+    private Optional<ImmutableList<RawTok>> scan() {
+        int end = text.length();
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (isWhitespace(c)) {
+                position++;
+                continue;
+            }
+            int start = position;
+            TokenKind kind;
+            String stringVal = null;
+            if (text.startsWith("//", start)) {
+                position = lineEnd(start);
+                kind = null;
+            } else if (text.startsWith("/*", start)) {
+                int close = text.indexOf("*/", start + 2);
+                if (close < 0) {
+                    return Optional.empty();
+                }
+                position = close + 2;
+                kind = null;
+            } else if (isIdentifierStart(c)) {
+                position++;
+                while (position < text.length() && isIdentifierPart(text.charAt(position))) {
+                    position++;
+                }
+                kind = KINDS_BY_NAME.getOrDefault(text.substring(start, position), TokenKind.IDENTIFIER);
+            } else if (c == '"' && !text.startsWith("\"\"\"", start)) {
+                position = stringLiteralEnd(start);
+                if (position < 0) {
+                    return Optional.empty();
+                }
+                kind = TokenKind.STRINGLITERAL;
+                stringVal = text.substring(start, position);
+            } else if (isSeparator(start)) {
+                position++;
+                kind = KINDS_BY_NAME.get(String.valueOf(c));
+            } else {
+                return Optional.empty();
+            }
+            if (kind == null && hasUnicodeEscape(start, position)) {
+                // A Unicode escape in a comment could end it
+                return Optional.empty();
+            }
+            if (kind != null && stopTokens.contains(kind)) {
+                end = start;
+                break;
+            }
+            addWhitespaceUpTo(start);
+            rawToks.add(new RawTok(stringVal, kind, start, position));
+            last = position;
+        }
+        addWhitespaceUpTo(end);
+        return Optional.of(rawToks.build());
+    }
+
+    private void addWhitespaceUpTo(int end) {
+        if (last < end) {
+            rawToks.add(new RawTok(null, null, last, end));
+        }
+    }
+
+    private int lineEnd(int start) {
+        int i = start;
+        while (i < text.length() && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean hasUnicodeEscape(int start, int end) {
+        for (int i = start; i + 1 < end; i++) {
+            if (text.charAt(i) == '\\' && text.charAt(i + 1) == 'u') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The end of the string literal starting at {@code start}, or -1 if it has escapes or isn't terminated. */
+    private int stringLiteralEnd(int start) {
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\' || c == '\n' || c == '\r') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether the character at {@code i} is a token of its own, rather than the start of a number or an operator. */
+    private boolean isSeparator(int i) {
+        char c = text.charAt(i);
+        if (SEPARATORS.indexOf(c) < 0) {
+            return false;
+        }
+        if (i + 1 == text.length()) {
+            return true;
+        }
+        char next = text.charAt(i + 1);
+        if (c == '.') {
+            // .5 or ...
+            return !Character.isDigit(next) && next != '.';
+        }
+        return !KINDS_BY_NAME.containsKey(text.substring(i, i + 2));
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r';
+    }
+
+    /** ASCII identifier characters only: anything else is left to javac, which knows which ones are allowed. */
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    private static ImmutableMap<String, TokenKind> kindsByName() {
+        ImmutableMap.Builder<String, TokenKind> kinds = ImmutableMap.builder();
+        for (TokenKind kind : TokenKind.values()) {
+            if (kind.name != null) {
+                kinds.put(kind.name, kind);
+            }
+        }
+        return kinds.buildKeepingLast();
+    }
+}
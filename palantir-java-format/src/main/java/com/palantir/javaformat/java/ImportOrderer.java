@@ -16,7 +16,7 @@ package com.palantir.javaformat.java;
 import static com.google.common.collect.Iterables.getLast;
 import static com.google.common.primitives.Booleans.trueFirst;
 import static com.palantir.javaformat.java.JavaFormatterOptions.Style;
-import static com.palantir.javaformat.java.JavaInput.buildToks;
+import static com.palantir.javaformat.java.JavaInput.buildHeaderToks;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Preconditions;
@@ -46,7 +46,7 @@ public final class ImportOrderer {
      * @throws FormatterException if the input could not be parsed.
      */
     public static String reorderImports(String text, Style style) throws FormatterException {
-        ImmutableList<Tok> toks = buildToks(text, CLASS_START);
+        ImmutableList<Tok> toks = buildHeaderToks(text, CLASS_START);
         return new ImportOrderer(text, toks, style).reorderImports();
     }
 
@@ -294,7 +294,7 @@ public final class ImportOrderer {
     private ImportsAndIndex scanImports(int i) throws FormatterException {
         int afterLastImport = i;
         ImmutableSortedSet.Builder<Import> imports = ImmutableSortedSet.orderedBy(importComparator);
-        // JavaInput.buildToks appends a zero-width EOF token after all tokens. It won't match any
+        // JavaInput.buildHeaderToks appends a zero-width EOF token after all tokens. It won't match any
         // of our tests here and protects us from running off the end of the toks list. Since it is
         // zero-width it doesn't matter if we include it in our string concatenation at the end.
         while (i < toks.size() && tokenAt(i).equals("import")) {
@@ -0,0 +1,524 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
+import com.palantir.javaformat.java.JavacTokens.RawTok;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Decides which imports {@link RemoveUnusedImports} removes from the javac tokens of a compilation unit alone, without
+ * parsing it. The parse finds an import used if its simple name is an identifier in the tree, or is referenced from a
+ * javadoc comment. From the tokens, an import is clearly unused if its name is no identifier and isn't mentioned in any
+ * javadoc, and clearly used if its name is an identifier in a place where only a name expression or type can be, such
+ * as before a {@code .} or after {@code new}.
+ *
+ * <p>Anything else, such as a name that is only a declaration's name or is only mentioned in javadoc, needs the parse.
+ */
+final class ImportUsageScanner {
+    /** Identifiers that are keywords in some places, where the token after them could be a declaration's name. */
+    private static final ImmutableSet<String> CONTEXTUAL_KEYWORDS = ImmutableSet.of(
+            "exports",
+            "module",
+            "non",
+            "open",
+            "opens",
+            "permits",
+            "provides",
+            "record",
+            "requires",
+            "sealed",
+            "to",
+            "transitive",
+            "uses",
+            "var",
+            "when",
+            "with",
+            "yield");
+
+    /** Tokens after which an identifier can only be a name expression or a type, unless it is a lambda's parameter. */
+    private static final Set<TokenKind> NAME_CONTEXTS = Sets.immutableEnumSet(
+            TokenKind.ARROW,
+            TokenKind.EQ,
+            TokenKind.BANG,
+            TokenKind.TILDE,
+            TokenKind.PLUS,
+            TokenKind.SUB,
+            TokenKind.STAR,
+            TokenKind.SLASH,
+            TokenKind.PERCENT,
+            TokenKind.CARET,
+            TokenKind.BAR,
+            TokenKind.AMP,
+            TokenKind.QUES,
+            TokenKind.LBRACKET,
+            TokenKind.EQEQ,
+            TokenKind.BANGEQ,
+            TokenKind.LTEQ,
+            TokenKind.GTEQ,
+            TokenKind.AMPAMP,
+            TokenKind.BARBAR,
+            TokenKind.PLUSPLUS,
+            TokenKind.SUBSUB,
+            TokenKind.LTLT,
+            TokenKind.PLUSEQ,
+            TokenKind.SUBEQ,
+            TokenKind.STAREQ,
+            TokenKind.SLASHEQ,
+            TokenKind.PERCENTEQ,
+            TokenKind.CARETEQ,
+            TokenKind.BAREQ,
+            TokenKind.AMPEQ,
+            TokenKind.LTLTEQ,
+            TokenKind.GTGTEQ,
+            TokenKind.GTGTGTEQ,
+            TokenKind.ASSERT,
+            TokenKind.EXTENDS,
+            TokenKind.IMPLEMENTS,
+            TokenKind.INSTANCEOF,
+            TokenKind.RETURN,
+            TokenKind.SUPER,
+            TokenKind.THROW,
+            TokenKind.THROWS);
+
+    /** Tokens other than identifiers and {@code <>} that can be in a list of type arguments before one of them. */
+    private static final Set<TokenKind> TYPE_ARGUMENT_PARTS = Sets.immutableEnumSet(
+            TokenKind.COMMA,
+            TokenKind.DOT,
+            TokenKind.QUES,
+            TokenKind.LBRACKET,
+            TokenKind.RBRACKET,
+            TokenKind.EXTENDS,
+            TokenKind.SUPER,
+            TokenKind.BOOLEAN,
+            TokenKind.BYTE,
+            TokenKind.CHAR,
+            TokenKind.SHORT,
+            TokenKind.INT,
+            TokenKind.LONG,
+            TokenKind.FLOAT,
+            TokenKind.DOUBLE);
+
+    private final String text;
+    private final ImmutableList<RawTok> rawToks;
+    /** The raw toks that are tokens, rather than whitespace or comments. */
+    private final RawTok[] tokens;
+
+    private final List<Import> imports = new ArrayList<>();
+    private String packageName = "";
+
+    private ImportUsageScanner(String text, ImmutableList<RawTok> rawToks) {
+        this.text = text;
+        this.rawToks = rawToks;
+        RawTok[] newTokens = new RawTok[rawToks.size()];
+        int size = 0;
+        for (RawTok rawTok : rawToks) {
+            if (rawTok.kind() != null && rawTok.kind() != TokenKind.EOF) {
+                newTokens[size++] = rawTok;
+            }
+        }
+        this.tokens = Arrays.copyOf(newTokens, size);
+    }
+
+    /**
+     * The ranges of the unused imports of {@code text}, from the start of each {@code import} to the end of its
+     * {@code ;}, or empty if any import needs the parse to decide. {@code rawToks} are all of its javac tokens.
+     */
+    static Optional<ImmutableList<Range<Integer>>> unusedImports(String text, ImmutableList<RawTok> rawToks) {
+        return new ImportUsageScanner(text, rawToks).unusedImports();
+    }
+
+    private Optional<ImmutableList<Range<Integer>>> unusedImports() {
+        // Rare enough to look for in the whole text, rather than token by token
+        boolean mayHaveUnicodeEscapes = text.contains("\\u");
+        boolean mayHaveStringTemplates = text.contains("\\{");
+        int[] identifiers = new int[tokens.length];
+        int identifierCount = 0;
+        // Where the next import can start: after the package declaration, another import or an empty declaration
+        int nextImport = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            TokenKind kind = tokens[i].kind();
+            if (kind == TokenKind.SEMI && i == nextImport) {
+                nextImport++;
+            } else if (kind == TokenKind.IMPORT || kind == TokenKind.PACKAGE) {
+                int end = qualifiedNameEnd(i + 1);
+                if (end < 0 || (kind == TokenKind.IMPORT ? i != nextImport : !imports.isEmpty())) {
+                    // Out of place, which the parse will report
+                    return Optional.empty();
+                }
+                if (mayHaveUnicodeEscapes && contains(tokens[i].pos(), tokens[end].pos(), "\\u")) {
+                    // A Unicode escape, which could spell a name differently from the tree's
+                    return Optional.empty();
+                }
+                nextImport = end + 1;
+                if (kind == TokenKind.PACKAGE) {
+                    packageName = joinTexts(i + 1, end);
+                    // The package name's first identifier is a name too
+                    identifiers[identifierCount++] = i + 1;
+                } else {
+                    Import anImport = newImport(i, end);
+                    if (anImport == null) {
+                        return Optional.empty();
+                    }
+                    imports.add(anImport);
+                }
+                i = end;
+            } else if (kind == TokenKind.IDENTIFIER) {
+                if (mayHaveUnicodeEscapes && contains(tokens[i].pos(), tokens[i].endPos(), "\\u")) {
+                    // A Unicode escape, which could spell a name differently from the tree's
+                    return Optional.empty();
+                }
+                identifiers[identifierCount++] = i;
+            } else if (kind == TokenKind.STRINGLITERAL
+                    && mayHaveStringTemplates
+                    && contains(tokens[i].pos(), tokens[i].endPos(), "\\{")) {
+                // A string template, whose embedded expressions have names that aren't tokens
+                return Optional.empty();
+            }
+        }
+
+        boolean[] isIdentifier = new boolean[imports.size()];
+        boolean[] isUsed = new boolean[imports.size()];
+        int[] importsByName = importsByName();
+        int mask = importsByName.length - 1;
+        for (int n = 0; n < identifierCount; n++) {
+            int i = identifiers[n];
+            int hash = hashCode(tokens[i]);
+            // Static imports of overloads from different classes can share a name
+            for (int slot = hash & mask; importsByName[slot] != 0; slot = (slot + 1) & mask) {
+                int k = importsByName[slot] - 1;
+                Import anImport = imports.get(k);
+                if (!isUsed[k] && anImport.simpleName.hashCode() == hash && anImport.isNamed(tokens[i])) {
+                    isIdentifier[k] = true;
+                    isUsed[k] = !anImport.isContextualKeyword && isNameAt(i);
+                }
+            }
+        }
+
+        ImmutableList.Builder<Range<Integer>> unused = ImmutableList.builder();
+        for (int k = 0; k < imports.size(); k++) {
+            Import anImport = imports.get(k);
+            if (anImport.qualifier.equals("java.lang") || anImport.qualifier.equals(packageName)) {
+                unused.add(anImport.range);
+            } else if (anImport.simpleName.equals("*") || isUsed[k]) {
+                continue;
+            } else if (isIdentifier[k] || isMentionedInJavadoc(anImport.simpleName)) {
+                return Optional.empty();
+            } else {
+                unused.add(anImport.range);
+            }
+        }
+        return Optional.of(unused.build());
+    }
+
+    /**
+     * An open-addressed hash table of the imports by their simple names, holding each import's index plus one, so that
+     * identifiers can be looked up without copying their texts.
+     */
+    private int[] importsByName() {
+        int[] importsByName = new int[Integer.highestOneBit(imports.size() * 2 + 1) * 2];
+        int mask = importsByName.length - 1;
+        for (int k = 0; k < imports.size(); k++) {
+            int slot = imports.get(k).simpleName.hashCode() & mask;
+            while (importsByName[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            importsByName[slot] = k + 1;
+        }
+        return importsByName;
+    }
+
+    /** The {@link String#hashCode()} of the text of {@code token}. */
+    private int hashCode(RawTok token) {
+        int hash = 0;
+        for (int i = token.pos(); i < token.endPos(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * The index of the {@code ;} that ends the qualified name starting at token {@code i}, after an optional
+     * {@code static}, or -1 if it isn't a simple qualified name.
+     */
+    private int qualifiedNameEnd(int i) {
+        int j = i;
+        if (kind(j) == TokenKind.STATIC) {
+            j++;
+        }
+        while (kind(j) == TokenKind.IDENTIFIER) {
+            if (kind(j + 1) == TokenKind.SEMI) {
+                return j + 1;
+            }
+            if (kind(j + 1) != TokenKind.DOT) {
+                return -1;
+            }
+            j += 2;
+            if (kind(j) == TokenKind.STAR) {
+                return kind(j + 1) == TokenKind.SEMI ? j + 1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** The import from token {@code importToken} to {@code semi}, or null if it has no qualifier, and doesn't parse. */
+    @Nullable
+    private Import newImport(int importToken, int semi) {
+        int first = kind(importToken + 1) == TokenKind.STATIC ? importToken + 2 : importToken + 1;
+        if (semi - 1 == first) {
+            return null;
+        }
+        Range<Integer> range = Range.closedOpen(tokens[importToken].pos(), tokens[semi].endPos());
+        return new Import(range, joinTexts(first, semi - 2), text(semi - 1));
+    }
+
+    private String joinTexts(int start, int end) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            joined.append(text(i));
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Whether the identifier at token {@code i} can only be a name expression or a type, never a declaration's name or
+     * a member selected from something else.
+     */
+    private boolean isNameAt(int i) {
+        TokenKind previous = kind(i - 1);
+        switch (previous) {
+            case DOT:
+            case COLCOL:
+                // A selected member
+                return false;
+            case MONKEYS_AT:
+            case NEW:
+            case CASE:
+                return true;
+            default:
+                break;
+        }
+        TokenKind next = kind(i + 1);
+        switch (next) {
+            case DOT:
+            case COLCOL:
+                return true;
+            case LT:
+                return !isTypeDeclarationAt(i - 1);
+            case LPAREN:
+                return isMethodInvocationAt(i);
+            case ARROW:
+                // A lambda's parameter
+                return false;
+            case IDENTIFIER:
+                // The type of a declaration
+                return !CONTEXTUAL_KEYWORDS.contains(text(i + 1));
+            default:
+                break;
+        }
+        if (NAME_CONTEXTS.contains(previous)) {
+            return true;
+        }
+        if ((previous == TokenKind.LPAREN || previous == TokenKind.COMMA)
+                && (next == TokenKind.RPAREN || next == TokenKind.COMMA)) {
+            return isArgumentAt(i);
+        }
+        return (previous == TokenKind.LT || previous == TokenKind.COMMA) && isTypeArgumentAt(i);
+    }
+
+    /**
+     * Whether the identifier at token {@code i}, which is followed by {@code (}, is the name of a method invocation
+     * rather than of a method, constructor or enum constant declaration.
+     */
+    private boolean isMethodInvocationAt(int i) {
+        TokenKind previous = kind(i - 1);
+        if (NAME_CONTEXTS.contains(previous) || previous == TokenKind.LPAREN) {
+            return true;
+        }
+        if (isClosingAngleBracket(previous)) {
+            // Could be a method with type arguments, selected from something else
+            return false;
+        }
+        TokenKind afterArguments = kind(closingParenthesis(i + 1) + 1);
+        if (afterArguments == TokenKind.DOT) {
+            return true;
+        }
+        // A statement, which a declaration without a body in a class body can't be after a ; or }
+        return afterArguments == TokenKind.SEMI
+                && (previous == TokenKind.SEMI
+                        || previous == TokenKind.RBRACE
+                        || (previous == TokenKind.LBRACE && kind(i - 2) == TokenKind.RPAREN));
+    }
+
+    /**
+     * Whether the identifier at token {@code i} is a whole argument, or a parenthesized expression or cast type,
+     * rather than a lambda's parameter.
+     */
+    private boolean isArgumentAt(int i) {
+        int depth = 0;
+        for (int j = i + 1; j < tokens.length; j++) {
+            TokenKind kind = kind(j);
+            if (kind == TokenKind.LPAREN) {
+                depth++;
+            } else if (kind == TokenKind.RPAREN) {
+                if (depth == 0) {
+                    return kind(j + 1) != TokenKind.ARROW;
+                }
+                depth--;
+            } else if (depth == 0 && (kind == TokenKind.SEMI || kind == TokenKind.LBRACE || kind == TokenKind.RBRACE)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Whether the identifier at token {@code i} is in a list of type arguments, rather than of type parameters. */
+    private boolean isTypeArgumentAt(int i) {
+        int depth = 0;
+        for (int j = i - 1; j >= 0; j--) {
+            TokenKind kind = kind(j);
+            if (isClosingAngleBracket(kind)) {
+                depth += kind.name.length();
+            } else if (kind == TokenKind.LT) {
+                if (depth == 0) {
+                    return isTypeArgumentListAt(j);
+                }
+                depth--;
+            } else if (!TYPE_ARGUMENT_PARTS.contains(kind) && kind != TokenKind.IDENTIFIER) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Whether the {@code <} at token {@code open} starts type arguments, rather than type parameters. */
+    private boolean isTypeArgumentListAt(int open) {
+        if (kind(open - 1) == TokenKind.DOT) {
+            // A method invocation's
+            return true;
+        }
+        if (kind(open - 1) != TokenKind.IDENTIFIER) {
+            return false;
+        }
+        int start = open - 1;
+        while (kind(start - 1) == TokenKind.DOT && kind(start - 2) == TokenKind.IDENTIFIER) {
+            start -= 2;
+        }
+        return kind(start - 1) != TokenKind.MONKEYS_AT && !isTypeDeclarationAt(start - 1);
+    }
+
+    /** Whether token {@code i} is a keyword that a type's name can follow in its declaration. */
+    private boolean isTypeDeclarationAt(int i) {
+        switch (kind(i)) {
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+                return true;
+            case IDENTIFIER:
+                return text(i).equals("record");
+            default:
+                return false;
+        }
+    }
+
+    private int closingParenthesis(int open) {
+        int depth = 0;
+        for (int i = open; i < tokens.length; i++) {
+            if (kind(i) == TokenKind.LPAREN) {
+                depth++;
+            } else if (kind(i) == TokenKind.RPAREN && --depth == 0) {
+                return i;
+            }
+        }
+        return tokens.length;
+    }
+
+    private static boolean isClosingAngleBracket(TokenKind kind) {
+        return kind == TokenKind.GT || kind == TokenKind.GTGT || kind == TokenKind.GTGTGT;
+    }
+
+    /** The kind of token {@code i}, or {@link TokenKind#EOF} if there is no such token. */
+    private TokenKind kind(int i) {
+        return i < 0 || i >= tokens.length ? TokenKind.EOF : tokens[i].kind();
+    }
+
+    private String text(int i) {
+        return text.substring(tokens[i].pos(), tokens[i].endPos());
+    }
+
+    /** Whether {@code part} is in the text from {@code start} to {@code end}, without scanning any further. */
+    private boolean contains(int start, int end, String part) {
+        for (int i = start; i + part.length() <= end; i++) {
+            if (text.startsWith(part, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether {@code name} is a word of any javadoc comment, in which it could be referenced. */
+    private boolean isMentionedInJavadoc(String name) {
+        for (RawTok rawTok : rawToks) {
+            if (rawTok.kind() != null || rawTok.endPos() - rawTok.pos() <= 4 || !text.startsWith("/**", rawTok.pos())) {
+                continue;
+            }
+            String javadoc = text.substring(rawTok.pos(), rawTok.endPos());
+            if (javadoc.contains("\\u")) {
+                return true;
+            }
+            for (int i = javadoc.indexOf(name); i >= 0; i = javadoc.indexOf(name, i + 1)) {
+                int end = i + name.length();
+                if (!Character.isJavaIdentifierPart(javadoc.charAt(i - 1))
+                        && (end == javadoc.length() || !Character.isJavaIdentifierPart(javadoc.charAt(end)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private final class Import {
+        /** From the start of {@code import} to the end of its {@code ;}. */
+        private final Range<Integer> range;
+
+        private final String qualifier;
+        private final String simpleName;
+        private final boolean isContextualKeyword;
+
+        private Import(Range<Integer> range, String qualifier, String simpleName) {
+            this.range = range;
+            this.qualifier = qualifier;
+            this.simpleName = simpleName;
+            this.isContextualKeyword = CONTEXTUAL_KEYWORDS.contains(simpleName);
+        }
+
+        /** Whether {@code identifier} is this import's simple name, without copying its text. */
+        private boolean isNamed(RawTok identifier) {
+            return identifier.endPos() - identifier.pos() == simpleName.length()
+                    && text.startsWith(simpleName, identifier.pos());
+        }
+    }
+}
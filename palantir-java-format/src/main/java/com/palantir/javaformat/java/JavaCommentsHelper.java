@@ -15,20 +15,42 @@
 package com.palantir.javaformat.java;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.palantir.javaformat.CommentsHelper;
 import com.palantir.javaformat.Input.Tok;
 import com.palantir.javaformat.Newlines;
 import com.palantir.javaformat.java.javadoc.JavadocFormatter;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
+import org.immutables.value.Value;
 
 /** {@code JavaCommentsHelper} extends {@link CommentsHelper} to rewrite Java comments. */
 public final class JavaCommentsHelper implements CommentsHelper {
 
+    /** The most characters of comments and their rewrites to keep in {@link #REWRITE_CACHE}. */
+    private static final long MAX_CACHED_CHARS = 4L * 1024 * 1024;
+
+    /**
+     * Rewritten comments, shared by every file formatted in this process. The layout search rewrites a comment again
+     * every time it explores a layout containing it, and license headers and class javadocs are often identical across
+     * files.
+     */
+    private static final Cache<RewriteKey, String> REWRITE_CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_CHARS)
+            .weigher((RewriteKey key, String rewritten) -> key.text().length() + rewritten.length())
+            .recordStats()
+            .build();
+
     private final String lineSeparator;
     private final JavaFormatterOptions options;
 
@@ -41,11 +63,34 @@ public final class JavaCommentsHelper implements CommentsHelper {
         this.javadocFormatter = options.formatJavadoc() ? new JavadocFormatter(options.maxLineLength()) : null;
     }
 
+    /** Hit and miss counts of the comment rewrite cache shared by every {@code JavaCommentsHelper}. */
+    public static CacheStats rewriteCacheStats() {
+        return REWRITE_CACHE.stats();
+    }
+
     @Override
     public String rewrite(Tok tok, int maxWidth, int column0) {
         if (!tok.isComment()) {
             return tok.getOriginalText();
         }
+        // Everything about the tok that affects the rewrite is determined by its text
+        RewriteKey key = ImmutableRewriteKey.builder()
+                .text(tok.getOriginalText())
+                .column(column0)
+                .maxWidth(maxWidth)
+                .maxLineLength(options.maxLineLength())
+                .formatJavadoc(javadocFormatter != null)
+                .lineSeparator(lineSeparator)
+                .build();
+        String rewritten = REWRITE_CACHE.getIfPresent(key);
+        if (rewritten == null) {
+            rewritten = rewriteUncached(tok, column0);
+            REWRITE_CACHE.put(key, rewritten);
+        }
+        return rewritten;
+    }
+
+    private String rewriteUncached(Tok tok, int column0) {
         String text = tok.getOriginalText();
         if (javadocFormatter != null && tok.isJavadocComment()) {
             text = javadocFormatter.formatJavadoc(text, column0);
@@ -184,4 +229,26 @@ public final class JavaCommentsHelper implements CommentsHelper {
         }
         return true;
     }
+
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.SOURCE)
+    @Value.Style(overshadowImplementation = true)
+    @interface RewriteKeyStyle {}
+
+    /** Everything that the result of {@link #rewrite} depends on. */
+    @RewriteKeyStyle
+    @Value.Immutable
+    interface RewriteKey {
+        String text();
+
+        int column();
+
+        int maxWidth();
+
+        int maxLineLength();
+
+        boolean formatJavadoc();
+
+        String lineSeparator();
+    }
 }
@@ -14,15 +14,15 @@
 
 package com.palantir.javaformat.java;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.getLast;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Verify;
 import com.google.common.collect.DiscreteDomain;
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableRangeMap;
@@ -35,26 +35,24 @@ import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.Input;
 import com.palantir.javaformat.Newlines;
 import com.palantir.javaformat.java.JavacTokens.RawTok;
-import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Log.DeferredDiagnosticHandler;
-import com.sun.tools.javac.util.Options;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.DiagnosticListener;
-import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.SimpleJavaFileObject;
 
@@ -74,16 +72,11 @@ public final class JavaInput extends Input {
      */
     @Immutable
     static final class Tok implements Input.Tok {
-        private final int index;
-        private final String originalText;
-        private final String text;
-        private final int position;
-        private final int columnI;
-        private final boolean isToken;
-        private final TokenKind kind;
+        private final TokStore store;
+        private final int t; // The tok's number in its store.
 
         /**
-         * The {@code Tok} constructor.
+         * A {@code Tok} on its own, outside of any input.
          *
          * @param index its index
          * @param originalText its original text, before removing Unicode escapes
@@ -94,67 +87,67 @@ public final class JavaInput extends Input {
          * @param kind the token kind
          */
         Tok(int index, String originalText, String text, int position, int columnI, boolean isToken, TokenKind kind) {
-            this.index = index;
-            this.originalText = originalText;
-            this.text = text;
-            this.position = position;
-            this.columnI = columnI;
-            this.isToken = isToken;
-            this.kind = kind;
+            this(TokStore.single(index, originalText, text, position, columnI, isToken, kind), 0);
+        }
+
+        /** The {@code Tok} numbered {@code t} in {@code store}. */
+        Tok(TokStore store, int t) {
+            this.store = store;
+            this.t = t;
         }
 
         @Override
         public int getIndex() {
-            return index;
+            return store.index(t);
         }
 
         @Override
         public String getText() {
-            return text;
+            return store.text(t);
         }
 
         @Override
         public String getOriginalText() {
-            return originalText;
+            return store.originalText(t);
         }
 
         @Override
         public int length() {
-            return originalText.length();
+            return store.length(t);
         }
 
         @Override
         public int getPosition() {
-            return position;
+            return store.position(t);
         }
 
         @Override
         public int getColumn() {
-            return columnI;
+            return store.column(t);
         }
 
         boolean isToken() {
-            return isToken;
+            return store.isToken(t);
         }
 
         @Override
         public boolean isNewline() {
-            return Newlines.isNewline(text);
+            return store.isNewline(t);
         }
 
         @Override
         public boolean isSlashSlashComment() {
-            return text.startsWith("//");
+            return store.isSlashSlashComment(t);
         }
 
         @Override
         public boolean isSlashStarComment() {
-            return text.startsWith("/*");
+            return store.isSlashStarComment(t);
         }
 
         @Override
         public boolean isJavadocComment() {
-            return text.startsWith("/**") && text.length() > 4;
+            return store.isJavadocComment(t);
         }
 
         @Override
@@ -165,16 +158,16 @@ public final class JavaInput extends Input {
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
-                    .add("index", index)
-                    .add("text", text)
-                    .add("position", position)
-                    .add("columnI", columnI)
-                    .add("isToken", isToken)
+                    .add("index", getIndex())
+                    .add("text", getText())
+                    .add("position", getPosition())
+                    .add("columnI", getColumn())
+                    .add("isToken", isToken())
                     .toString();
         }
 
         public TokenKind kind() {
-            return kind;
+            return store.kind(t);
         }
     }
 
@@ -256,11 +249,21 @@ public final class JavaInput extends Input {
      * output.
      */
 
-    @SuppressWarnings("for-rollout:AlmostJavadoc")
-    private final ImmutableMap<Integer, Integer> positionToColumnMap; // Map Tok position to column.
+    private final TokStore toks; // The Toks for this input, and their positions and columns.
 
     private final ImmutableList<Token> tokens; // The Tokens for this input.
-    private final ImmutableRangeMap<Integer, Token> positionTokenMap; // Map position to Token.
+
+    /*
+     * The [start, end] position range of each Token, in order. Token ranges don't overlap, so these are both sorted,
+     * and a position's Token can be binary searched for.
+     */
+    private final int[] tokenStarts;
+    private final int[] tokenEnds;
+
+    private final Supplier<ImmutableMap<Integer, Integer>> positionToColumnMap =
+            Suppliers.memoize(this::makePositionToColumnMap);
+    private final Supplier<ImmutableRangeMap<Integer, Token>> positionTokenMap =
+            Suppliers.memoize(this::makePositionTokenMap);
 
     /** Map from Tok index to the associated Token. */
     private final Token[] kToToken;
@@ -271,23 +274,31 @@ public final class JavaInput extends Input {
      * @param text the input text
      * @throws FormatterException if the input cannot be parsed
      */
-    @SuppressWarnings("for-rollout:NullAway")
     public JavaInput(String text) throws FormatterException {
-        this.text = checkNotNull(text);
+        this(checkNotNull(text), buildTokStore(text, ImmutableSet.of()));
+    }
+
+    @SuppressWarnings("for-rollout:NullAway")
+    private JavaInput(String text, TokStore toks) {
+        this.text = text;
         setLines(ImmutableList.copyOf(Newlines.lineIterator(text)));
-        ImmutableList<Tok> toks = buildToks(text);
-        positionToColumnMap = makePositionToColumnMap(toks);
-        tokens = buildTokens(toks);
-        ImmutableRangeMap.Builder<Integer, Token> tokenLocations = ImmutableRangeMap.builder();
-        for (Token token : tokens) {
+        this.toks = toks;
+        kN = getLast(toks.toks()).getIndex();
+        computeRanges(toks.toks());
+        tokens = buildTokens(toks.toks());
+        tokenStarts = new int[tokens.size()];
+        tokenEnds = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
             Input.Tok end = JavaOutput.endTok(token);
             int upper = end.getPosition();
-            if (!end.getText().isEmpty()) {
+            if (end.length() > 0) {
                 upper += end.length() - 1;
             }
-            tokenLocations.put(Range.closed(JavaOutput.startTok(token).getPosition(), upper), token);
+            tokenStarts[i] = JavaOutput.startTok(token).getPosition();
+            tokenEnds[i] = upper;
+            checkState(i == 0 || tokenStarts[i] > tokenEnds[i - 1], "overlapping tokens: %s", token);
         }
-        positionTokenMap = tokenLocations.build();
 
         // adjust kN for EOF
         kToToken = new Token[kN + 1];
@@ -308,14 +319,22 @@ public final class JavaInput extends Input {
         }
     }
 
-    private static ImmutableMap<Integer, Integer> makePositionToColumnMap(List<Tok> toks) {
+    private ImmutableMap<Integer, Integer> makePositionToColumnMap() {
         ImmutableMap.Builder<Integer, Integer> builder = ImmutableMap.builder();
-        for (Tok tok : toks) {
+        for (Tok tok : toks.toks()) {
             builder.put(tok.getPosition(), tok.getColumn());
         }
         return builder.buildOrThrow();
     }
 
+    private ImmutableRangeMap<Integer, Token> makePositionTokenMap() {
+        ImmutableRangeMap.Builder<Integer, Token> builder = ImmutableRangeMap.builder();
+        for (int i = 0; i < tokens.size(); i++) {
+            builder.put(Range.closed(tokenStarts[i], tokenEnds[i]), tokens.get(i));
+        }
+        return builder.build();
+    }
+
     /**
      * Get the input text.
      *
@@ -326,22 +345,42 @@ public final class JavaInput extends Input {
         return text;
     }
 
+    /** Built on first use; {@link #getColumnAt} is cheaper. */
     @Override
     public ImmutableMap<Integer, Integer> getPositionToColumnMap() {
-        return positionToColumnMap;
+        return positionToColumnMap.get();
     }
 
-    public String getLineSeparator() {
-        return lineSeparator.get();
+    @Override
+    public int getColumnAt(int position) {
+        int t = toks.tokStartingAt(position);
+        return t < 0 ? -1 : toks.column(t);
     }
 
-    /** Lex the input and build the list of toks. */
-    @SuppressWarnings("for-rollout:NullAway")
-    private ImmutableList<Tok> buildToks(String text) throws FormatterException {
-        ImmutableList<Tok> toks = buildToks(text, ImmutableSet.of());
-        kN = getLast(toks).getIndex();
-        computeRanges(toks);
-        return toks;
+    /**
+     * This input with its text changed to {@code newText}, in which the text of each of {@code toks} is replaced by
+     * that of the corresponding one of {@code replacements}, without lexing {@code newText} again. The toks moved must
+     * be tokens without line breaks, and the replacements must be a permutation of them, so that the length of the text
+     * doesn't change.
+     */
+    JavaInput withToksMoved(String newText, List<Tok> toks, List<Tok> replacements) {
+        checkArgument(toks.size() == replacements.size(), "Expected a replacement for each tok");
+        int[] from = new int[this.toks.size()];
+        for (int t = 0; t < from.length; t++) {
+            from[t] = t;
+        }
+        for (int i = 0; i < toks.size(); i++) {
+            Tok tok = toks.get(i);
+            Tok replacement = replacements.get(i);
+            checkArgument(tok.store == this.toks && replacement.store == this.toks, "Toks of another input");
+            checkArgument(tok.isToken() && replacement.isToken(), "Only tokens can be moved");
+            from[tok.t] = replacement.t;
+        }
+        return new JavaInput(newText, this.toks.withToksMoved(newText, from));
+    }
+
+    public String getLineSeparator() {
+        return lineSeparator.get();
     }
 
     /**
@@ -351,18 +390,45 @@ public final class JavaInput extends Input {
      * @param stopTokens a set of tokens which should cause lexing to stop. If one of these is found, the returned list
      *     will include tokens up to but not including that token.
      */
-    @SuppressWarnings("for-rollout:NullAway")
     static ImmutableList<Tok> buildToks(String text, ImmutableSet<TokenKind> stopTokens) throws FormatterException {
+        return buildTokStore(text, stopTokens).toks();
+    }
+
+    /**
+     * Like {@link #buildToks(String, ImmutableSet)}, for when {@code stopTokens} stop lexing early on in most inputs.
+     * The input up to them is lexed by a {@link HeaderScanner} if it can, rather than by javac.
+     */
+    static ImmutableList<Tok> buildHeaderToks(String text, ImmutableSet<TokenKind> stopTokens)
+            throws FormatterException {
+        Optional<ImmutableList<RawTok>> rawToks = HeaderScanner.scan(text, stopTokens);
+        if (!rawToks.isPresent()) {
+            return buildToks(text, stopTokens);
+        }
+        return buildTokStore(text, rawToks.get(), stopTokens).toks();
+    }
+
+    /** The input of {@code text}, from the {@link RawTok}s that {@link #lex} returned for it. */
+    static JavaInput fromRawToks(String text, ImmutableList<RawTok> rawToks) throws FormatterException {
+        return new JavaInput(checkNotNull(text), buildTokStore(text, rawToks, ImmutableSet.of()));
+    }
+
+    private static TokStore buildTokStore(String text, ImmutableSet<TokenKind> stopTokens) throws FormatterException {
+        Optional<ImmutableList<RawTok>> rawToks = lex(text, stopTokens);
+        if (!rawToks.isPresent()) {
+            return TokStore.single(0, "", "", 0, 0, true, null); // EOF
+        }
+        return buildTokStore(text, rawToks.get(), stopTokens);
+    }
+
+    /** Lexes {@code text} with javac up to the first of {@code stopTokens}, or returns empty if it has errors. */
+    @SuppressWarnings("for-rollout:NullAway")
+    static Optional<ImmutableList<RawTok>> lex(String text, ImmutableSet<TokenKind> stopTokens) {
         stopTokens = ImmutableSet.<TokenKind>builder()
                 .addAll(stopTokens)
                 .add(TokenKind.EOF)
                 .build();
-        Context context = new Context();
-        Options.instance(context).put("--enable-preview", "true");
-        new JavacFileManager(context, true, UTF_8);
-        DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
-        context.put(DiagnosticListener.class, diagnosticCollector);
-        Log log = Log.instance(context);
+        ParsingContext parsingContext = ParsingContext.acquire();
+        Log log = parsingContext.log();
         log.useSource(new SimpleJavaFileObject(URI.create("Source.java"), Kind.SOURCE) {
             @Override
             public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
@@ -370,12 +436,25 @@ public final class JavaInput extends Input {
             }
         });
         DeferredDiagnosticHandler diagnostics = new DeferredDiagnosticHandler(log);
-        ImmutableList<RawTok> rawToks = JavacTokens.getTokens(text, context, stopTokens);
+        ImmutableList<RawTok> rawToks;
+        try {
+            rawToks = JavacTokens.getTokens(text, parsingContext.context(), stopTokens);
+        } finally {
+            // The context is reused, so don't leave the handler behind
+            log.popDiagnosticHandler(diagnostics);
+        }
         if (getDiagnostics(diagnostics).stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR)) {
-            return ImmutableList.of(new Tok(0, "", "", 0, 0, true, null)); // EOF
+            return Optional.empty();
         }
+        return Optional.of(rawToks);
+    }
+
+    /** Builds the toks of {@code text} from its {@link RawTok}s, up to the first of {@code stopTokens}. */
+    @SuppressWarnings("for-rollout:NullAway")
+    private static TokStore buildTokStore(String text, ImmutableList<RawTok> rawToks, Set<TokenKind> stopTokens)
+            throws FormatterException {
         int kN = 0;
-        List<Tok> toks = new ArrayList<>();
+        TokStore.Builder toks = TokStore.builder(text);
         int charI = 0;
         int columnI = 0;
         for (RawTok t : rawToks) {
@@ -443,7 +522,7 @@ public final class JavaInput extends Input {
                 }
             }
             if (strings.size() == 1) {
-                toks.add(new Tok(isNumbered ? kN++ : -1, originalTokText, tokText, charI, columnI, isToken, t.kind()));
+                toks.add(isNumbered ? kN++ : -1, charI, originalTokText.length(), columnI, isToken, t.kind(), tokText);
                 charI += originalTokText.length();
                 columnI = updateColumn(columnI, originalTokText);
 
@@ -453,19 +532,19 @@ public final class JavaInput extends Input {
                             "Unicode escapes not allowed in whitespace or multi-character operators");
                 }
                 for (String str : strings) {
-                    toks.add(new Tok(isNumbered ? kN++ : -1, str, str, charI, columnI, isToken, null));
+                    toks.add(isNumbered ? kN++ : -1, charI, str.length(), columnI, isToken, null, str);
                     charI += str.length();
                     columnI = updateColumn(columnI, originalTokText);
                 }
             }
             if (extraNewline != null) {
-                toks.add(new Tok(-1, extraNewline, extraNewline, charI, columnI, false, null));
+                toks.add(-1, charI, extraNewline.length(), columnI, false, null, extraNewline);
                 columnI = 0;
                 charI += extraNewline.length();
             }
         }
-        toks.add(new Tok(kN, "", "", charI, columnI, true, null)); // EOF tok.
-        return ImmutableList.copyOf(toks);
+        toks.add(kN, charI, 0, columnI, true, null, ""); // EOF tok.
+        return toks.build();
     }
 
     /**
@@ -604,16 +683,15 @@ public final class JavaInput extends Input {
             // 0 stands for "format the line under the cursor"
             length = 1;
         }
-        ImmutableCollection<Token> enclosed = getPositionTokenMap()
-                .subRangeMap(Range.closedOpen(offset, offset + length))
-                .asMapOfRanges()
-                .values();
-        if (enclosed.isEmpty()) {
+        // The first token ending at or after the offset, and the last one starting before its end
+        int first = Arrays.binarySearch(tokenEnds, offset);
+        first = first < 0 ? -first - 1 : first;
+        int last = Arrays.binarySearch(tokenStarts, offset + length - 1);
+        last = last < 0 ? -last - 2 : last;
+        if (first > last) {
             return EMPTY_RANGE;
         }
-        return Range.closedOpen(
-                enclosed.iterator().next().getTok().getIndex(),
-                getLast(enclosed).getTok().getIndex() + 1);
+        return Range.closedOpen(tokens.get(first).getTok().getIndex(), tokens.get(last).getTok().getIndex() + 1);
     }
 
     /**
@@ -645,14 +723,24 @@ public final class JavaInput extends Input {
     }
 
     /**
-     * Get the navigable map from position to {@link Token}. Used to look for tokens following a given one, and to
-     * implement the --offset and --length flags to reformat a character range in the input file.
+     * Get the navigable map from position to {@link Token}. It's built on first use; {@link #getTokenAt} and
+     * {@link #characterRangeToTokenRange} are cheaper.
      *
      * @return the navigable map from position to {@link Token}
      */
     @Override
     public ImmutableRangeMap<Integer, Token> getPositionTokenMap() {
-        return positionTokenMap;
+        return positionTokenMap.get();
+    }
+
+    /** Binary searches for the {@link Token} whose range contains {@code position}. */
+    @Override
+    @Nullable
+    public Token getTokenAt(int position) {
+        // The last token starting at or before the position
+        int i = Arrays.binarySearch(tokenStarts, position);
+        i = i < 0 ? -i - 2 : i;
+        return i >= 0 && position <= tokenEnds[i] ? tokens.get(i) : null;
     }
 
     @Override
@@ -40,7 +40,6 @@ import com.google.common.base.Throwables;
 import com.google.common.base.Verify;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableRangeMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
@@ -139,7 +138,6 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -3334,26 +3332,24 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
 
     @SuppressWarnings("for-rollout:NullAway")
     private Integer actualColumn(ExpressionTree expression) {
-        Map<Integer, Integer> positionToColumnMap = builder.getInput().getPositionToColumnMap();
-        return positionToColumnMap.get(builder.actualStartColumn(getStartPosition(expression)));
+        int column = builder.getInput().getColumnAt(builder.actualStartColumn(getStartPosition(expression)));
+        return column < 0 ? null : column;
     }
 
     /** How many lines does this node take up in the input. Returns at least 1. */
     @SuppressWarnings("for-rollout:NullAway")
     int lineSpan(Tree node) {
-        ImmutableRangeMap<Integer, ? extends Input.Token> positionTokenMap =
-                builder.getInput().getPositionTokenMap();
-
+        Input input = builder.getInput();
         int startPosition = getStartPosition(node);
         int endPosition = getEndPosition(node, getCurrentPath());
         // The last token will not be in the range map if it's whitespace, because of JavaOutput.endTok's filtering.
         // Thus, we go back until we find a "real" last token.
         // If all tokens down from endPosition are null, then we are guaranteed stop at startPosition.
-        while (endPosition > startPosition && positionTokenMap.get(endPosition) == null) {
+        while (endPosition > startPosition && input.getTokenAt(endPosition) == null) {
             endPosition--;
         }
-        Input.Token startToken = positionTokenMap.get(startPosition);
-        Input.Token endToken = positionTokenMap.get(endPosition);
+        Input.Token startToken = input.getTokenAt(startPosition);
+        Input.Token endToken = input.getTokenAt(endPosition);
         return lineNumberAt(endToken) - lineNumberAt(startToken) + 1;
     }
 
@@ -3729,7 +3725,7 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
     /** Does this declaration have javadoc preceding it? */
     private boolean hasJavaDoc(Tree bodyDeclaration) {
         int position = ((JCTree) bodyDeclaration).getStartPosition();
-        Input.Token token = builder.getInput().getPositionTokenMap().get(position);
+        Input.Token token = builder.getInput().getTokenAt(position);
         if (token != null) {
             for (Input.Tok tok : token.getToksBefore()) {
                 if (tok.getText().startsWith("/**")) {
@@ -3741,7 +3737,7 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
     }
 
     private static Optional<? extends Input.Token> getNextToken(Input input, int position) {
-        return Optional.ofNullable(input.getPositionTokenMap().get(position));
+        return Optional.ofNullable(input.getTokenAt(position));
     }
 
     /** Does this list of trees end with the specified token? */
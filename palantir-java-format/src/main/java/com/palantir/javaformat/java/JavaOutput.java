@@ -14,6 +14,8 @@
 
 package com.palantir.javaformat.java;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import com.google.common.base.CharMatcher;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.DiscreteDomain;
@@ -27,9 +29,13 @@ import com.palantir.javaformat.Newlines;
 import com.palantir.javaformat.OpsBuilder.BlankLineWanted;
 import com.palantir.javaformat.Output;
 import com.palantir.javaformat.doc.State;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /*
  * Throughout this file, {@code i} is an index for input lines, {@code j} is an index for output
@@ -46,13 +52,18 @@ public final class JavaOutput extends Output {
     private final JavaInput javaInput; // Used to follow along while emitting the output.
 
     private final List<String> mutableLines = new ArrayList<>();
+
+    @Nullable
+    private final Writer lineWriter; // If set, lines are written here as they are completed, instead of being kept.
+
+    private int linesAdded = 0;
     private final int kN; // The number of tokens or comments in the input, excluding the EOF.
     private final InputMetadata inputMetadata;
     private int iLine = 0; // Closest corresponding line number on input.
     private int lastK = -1; // Last {@link Tok} index output.
     private int spacesPending = 0;
     private int newlinesPending = 0;
-    private StringBuilder lineBuilder = new StringBuilder();
+    private final StringBuilder lineBuilder = new StringBuilder();
 
     /**
      * {@code JavaOutput} constructor.
@@ -60,10 +71,32 @@ public final class JavaOutput extends Output {
      * @param javaInput the {@link JavaInput}, used to match up blank lines in the output
      */
     public JavaOutput(JavaInput javaInput, InputMetadata inputMetadata) {
+        this(javaInput, inputMetadata, null);
+    }
+
+    /**
+     * A {@code JavaOutput} that writes each line to {@code lineWriter}, followed by the line separator, as soon as it is
+     * complete, rather than keeping the lines to compute {@link Replacement}s from. This is only equivalent to
+     * replacing the whole input when {@link #replacesWholeInput} holds.
+     */
+    JavaOutput(JavaInput javaInput, InputMetadata inputMetadata, @Nullable Writer lineWriter) {
         this.lineSeparator = javaInput.getLineSeparator();
         this.javaInput = javaInput;
         kN = javaInput.getkN();
         this.inputMetadata = inputMetadata;
+        this.lineWriter = lineWriter;
+    }
+
+    /**
+     * Whether formatting all of {@code javaInput} replaces all of it with the output lines, each followed by the line
+     * separator, as opposed to leaving (some of) it untouched. That's the case unless it has no tokens or comments, or
+     * its first or last one can't be formatted.
+     */
+    static boolean replacesWholeInput(JavaInput javaInput, InputMetadata inputMetadata) {
+        int kN = javaInput.getkN();
+        return kN > 0
+                && inputMetadata.partialFormatRanges().contains(0)
+                && inputMetadata.partialFormatRanges().contains(kN - 1);
     }
 
     // TODO(jdd): Add invariant.
@@ -121,10 +154,10 @@ public final class JavaOutput extends Output {
                     default:
                         while (newlinesPending > 0) {
                             // drop leading blank lines
-                            if (!mutableLines.isEmpty() || lineBuilder.length() > 0) {
-                                mutableLines.add(lineBuilder.toString());
+                            if (linesAdded > 0 || lineBuilder.length() > 0) {
+                                addLine();
                             }
-                            lineBuilder = new StringBuilder();
+                            lineBuilder.setLength(0);
                             rangesSet = false;
                             --newlinesPending;
                         }
@@ -133,7 +166,7 @@ public final class JavaOutput extends Output {
                             --spacesPending;
                         }
                         lineBuilder.append(c);
-                        if (!range.isEmpty()) {
+                        if (!range.isEmpty() && lineWriter == null) {
                             if (!rangesSet) {
                                 while (ranges.size() <= mutableLines.size()) {
                                     ranges.add(Formatter.EMPTY_RANGE);
@@ -155,11 +188,33 @@ public final class JavaOutput extends Output {
         spacesPending = indent;
     }
 
+    /** Whether the lines were written out as they were completed, rather than kept to compute replacements from. */
+    boolean isWrittenOut() {
+        return lineWriter != null;
+    }
+
+    private void addLine() {
+        linesAdded++;
+        if (lineWriter == null) {
+            mutableLines.add(lineBuilder.toString());
+            return;
+        }
+        try {
+            lineWriter.append(lineBuilder).append(lineSeparator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /** Flush any incomplete last line, then add the EOF token into our data structures. */
     void flush() {
-        String lastLine = lineBuilder.toString();
-        if (!CharMatcher.whitespace().matchesAllOf(lastLine)) {
-            mutableLines.add(lastLine);
+        if (!CharMatcher.whitespace().matchesAllOf(lineBuilder)) {
+            addLine();
+        }
+        if (lineWriter != null) {
+            // The lines were written out rather than kept
+            setLines(ImmutableList.of());
+            return;
         }
         int jN = mutableLines.size();
         Range<Integer> eofRange = Range.closedOpen(kN, kN + 1);
@@ -179,6 +234,7 @@ public final class JavaOutput extends Output {
      */
     @SuppressWarnings("for-rollout:NullAway")
     public ImmutableList<Replacement> getFormatReplacements(RangeSet<Integer> iRangeSet0) {
+        checkState(!isWrittenOut(), "The lines were written out");
         ImmutableList.Builder<Replacement> result = ImmutableList.builder();
         Map<Integer, Range<Integer>> kToJ = JavaOutput.makeKToIJ(this);
 
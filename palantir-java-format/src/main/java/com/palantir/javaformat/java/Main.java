@@ -16,29 +16,41 @@ package com.palantir.javaformat.java;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 import com.palantir.javaformat.java.JavaFormatterOptions.Style;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /** The main class for the Java formatter CLI. */
 public final class Main {
-    private static final int MAX_THREADS = 20;
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
     private static final String STDIN_FILENAME = "<stdin>";
 
     static String versionString() {
@@ -67,8 +79,12 @@ public final class Main {
         PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, UTF_8));
         PrintWriter err = new PrintWriter(new OutputStreamWriter(System.err, UTF_8));
         try {
-            Main formatter = new Main(out, err, System.in);
-            result = formatter.format(args);
+            if (processArgs(args).server()) {
+                result = serve(err);
+            } else {
+                Main formatter = new Main(out, err, System.in);
+                result = formatter.format(args);
+            }
         } catch (UsageException e) {
             err.print(e.getMessage());
             result = 0;
@@ -79,6 +95,19 @@ public final class Main {
         System.exit(result);
     }
 
+    private static int serve(PrintWriter err) {
+        PrintStream responses = System.out;
+        // Anything else that writes to stdout would corrupt the responses.
+        System.setOut(System.err);
+        try {
+            new FormatterServer(System.in, responses).serve();
+            return 0;
+        } catch (IOException e) {
+            err.println("error: formatter server failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
     /**
      * The main entry point for the formatter, with some number of file names to format. We process them in parallel,
      * but we must be careful; if multiple file names refer to the same file (which is hard to determine), we must
@@ -95,11 +124,17 @@ public final class Main {
         if (parameters.help()) {
             throw new UsageException();
         }
+        if (parameters.server()) {
+            throw new UsageException("--server can only be used when launching the formatter");
+        }
 
         // TODO(someone): update this to always use Style.PALANTIR
         JavaFormatterOptions.Builder optionsBuilder = JavaFormatterOptions.builder()
                 .style(parameters.aosp() ? Style.AOSP : parameters.palantirStyle() ? Style.PALANTIR : Style.GOOGLE);
         parameters.maxLineLength().ifPresent(optionsBuilder::maxLineLength);
+        parameters.layoutBudget().ifPresent(optionsBuilder::layoutBudget);
+        optionsBuilder.parallelLayout(parameters.parallelLayout());
+        optionsBuilder.paranoidStringWrapping(parameters.paranoidStringWrapping());
         JavaFormatterOptions options = optionsBuilder.build();
 
         if (parameters.stdin()) {
@@ -109,80 +144,176 @@ public final class Main {
         }
     }
 
-    @SuppressWarnings("for-rollout:RedundantControlFlow")
     private int formatFiles(CommandLineOptions parameters, JavaFormatterOptions options) {
-        int numThreads = Math.min(MAX_THREADS, parameters.files().size());
-        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
-
-        Map<Path, String> inputs = new LinkedHashMap<>();
-        Map<Path, Future<String>> results = new LinkedHashMap<>();
-        boolean allOk = true;
-
+        // Files given more than once are formatted, written and reported once, where they first appear
+        List<Path> paths = new ArrayList<>();
+        Set<Path> seen = new HashSet<>();
         for (String fileName : parameters.files()) {
             if (!fileName.endsWith(".java")) {
                 errWriter.println("Skipping non-Java file: " + fileName);
                 continue;
             }
             Path path = Paths.get(fileName);
-            String input;
-            try {
-                input = new String(Files.readAllBytes(path), UTF_8);
-                inputs.put(path, input);
-                results.put(path, executorService.submit(new FormatFileCallable(parameters, input, options)));
-            } catch (IOException e) {
-                errWriter.println(fileName + ": could not read file: " + e.getMessage());
-                allOk = false;
+            if (seen.add(path)) {
+                paths.add(path);
             }
         }
+        if (paths.isEmpty()) {
+            return 0;
+        }
 
-        for (Map.Entry<Path, Future<String>> result : results.entrySet()) {
-            Path path = result.getKey();
-            String formatted;
-            try {
-                formatted = result.getValue().get();
-            } catch (InterruptedException e) {
-                errWriter.println(e.getMessage());
-                allOk = false;
-                continue;
-            } catch (ExecutionException e) {
-                if (e.getCause() instanceof FormatterException) {
-                    for (FormatterDiagnostic diagnostic : ((FormatterException) e.getCause()).diagnostics()) {
-                        errWriter.println(path + ":" + diagnostic.toString());
+        int numThreads =
+                Math.min(parameters.threads().orElseGet(Runtime.getRuntime()::availableProcessors), paths.size());
+        int maxFilesInFlight = parameters.maxFilesInFlight().orElse(numThreads * FILES_IN_FLIGHT_PER_THREAD);
+        Optional<FormatCache> cache = parameters
+                .cacheDir()
+                .map(dir -> new FormatCache(
+                        Paths.get(dir), FormatCache.fingerprint(parameters, options), FormatCache.DEFAULT_MAX_BYTES));
+
+        // Unless the formatted contents are printed, each file's output is at most a path or a few diagnostics, which
+        // are cheap to hold on to until it's that file's turn to be reported. That leaves us free to start the largest
+        // files first, so that a single huge file doesn't run on its own after everything else has finished.
+        boolean outputsContents = !parameters.inPlace() && !parameters.dryRun();
+        List<Integer> submissionOrder =
+                IntStream.range(0, paths.size()).boxed().collect(Collectors.toCollection(ArrayList::new));
+        if (!outputsContents) {
+            long[] sizes = paths.stream().mapToLong(Main::sizeOrZero).toArray();
+            submissionOrder.sort(Comparator.comparingLong((Integer index) -> sizes[index]).reversed());
+        }
+
+        // Files are read and formatted on the pool, and each result is handled as soon as it completes, but results
+        // are reported in the order the files were given, so that output is deterministic. Only a bounded number of
+        // files are held in memory at once, so memory use doesn't grow with the number of files.
+        ExecutorService executorService = Executors.newWorkStealingPool(numThreads);
+        BlockingQueue<PendingFile> completed = new LinkedBlockingQueue<>();
+        FileReport[] reports = new FileReport[paths.size()];
+        int submitted = 0;
+        int running = 0;
+        int reported = 0;
+        boolean allOk = true;
+        try {
+            while (reported < paths.size()) {
+                // Formatted contents stay in memory until they're printed, everything else only until it's handled
+                while (submitted < paths.size()
+                        && (outputsContents ? submitted - reported : running) < maxFilesInFlight) {
+                    int index = submissionOrder.get(submitted);
+                    Path path = paths.get(index);
+                    executorService.execute(new PendingFile(
+                            index, path, () -> readAndFormat(path, parameters, options, cache), completed));
+                    submitted++;
+                    running++;
+                }
+
+                PendingFile pending = completed.take();
+                running--;
+                reports[pending.index] = reportResult(parameters, pending);
+                while (reported < paths.size() && reports[reported] != null) {
+                    FileReport report = reports[reported];
+                    reports[reported++] = null;
+                    outWriter.write(report.out);
+                    errWriter.write(report.err);
+                    if (!report.ok) {
+                        allOk = false;
                     }
-                } else {
-                    errWriter.println(path + ": error: "
-                            + Optional.ofNullable(e.getCause())
-                                    .map(Throwable::getMessage)
-                                    .orElse("null"));
-                    Optional.ofNullable(e.getCause()).ifPresent(cause -> cause.printStackTrace(errWriter));
                 }
-                allOk = false;
-                continue;
-            }
-            boolean changed = !formatted.equals(inputs.get(path));
-            if (changed && parameters.setExitIfChanged()) {
-                allOk = false;
             }
-            if (parameters.inPlace()) {
-                if (!changed) {
-                    continue; // preserve original file
-                }
-                try {
-                    Files.write(path, formatted.getBytes(UTF_8));
-                } catch (IOException e) {
-                    errWriter.println(path + ": could not write file: " + e.getMessage());
-                    allOk = false;
-                    continue;
-                }
-            } else if (parameters.dryRun()) {
-                if (changed) {
-                    outWriter.println(path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errWriter.println(e.getMessage());
+            allOk = false;
+        } finally {
+            executorService.shutdownNow();
+        }
+        cache.ifPresent(FormatCache::evictIfNeeded);
+        return allOk ? 0 : 1;
+    }
+
+    private static long sizeOrZero(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            // Reported once we try to read it
+            return 0;
+        }
+    }
+
+    private static FormattedFile readAndFormat(
+            Path path, CommandLineOptions parameters, JavaFormatterOptions options, Optional<FormatCache> cache)
+            throws IOException, FormatterException {
+        byte[] inputBytes = Files.readAllBytes(path);
+        String input = new String(inputBytes, UTF_8);
+        FormatFileCallable format = new FormatFileCallable(parameters, input, options);
+        String output = cache.isPresent() ? cache.get().format(inputBytes, input, format) : format.call();
+        // Files that ran out of their layout budget are never served from the cache, so this is reported every run
+        return new FormattedFile(input, output, format.layoutBudgetDiagnostics());
+    }
+
+    /** Writes back the result of formatting a single file if needed, and returns what to report for it. */
+    private static FileReport reportResult(CommandLineOptions parameters, PendingFile pending)
+            throws InterruptedException {
+        Path path = pending.path;
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        PrintWriter outWriter = new PrintWriter(out);
+        PrintWriter errWriter = new PrintWriter(err);
+        boolean ok = handleResult(parameters, path, pending, outWriter, errWriter);
+        outWriter.flush();
+        errWriter.flush();
+        return new FileReport(ok, out.toString(), err.toString());
+    }
+
+    @SuppressWarnings("for-rollout:RedundantControlFlow")
+    private static boolean handleResult(
+            CommandLineOptions parameters,
+            Path path,
+            Future<FormattedFile> pending,
+            PrintWriter outWriter,
+            PrintWriter errWriter)
+            throws InterruptedException {
+        FormattedFile result;
+        try {
+            result = pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                // Writes happen on this thread, so this can only have come from reading the file
+                errWriter.println(path + ": could not read file: " + e.getCause().getMessage());
+            } else if (e.getCause() instanceof FormatterException) {
+                for (FormatterDiagnostic diagnostic : ((FormatterException) e.getCause()).diagnostics()) {
+                    errWriter.println(path + ":" + diagnostic.toString());
                 }
             } else {
-                outWriter.write(formatted);
+                errWriter.println(path + ": error: "
+                        + Optional.ofNullable(e.getCause())
+                                .map(Throwable::getMessage)
+                                .orElse("null"));
+                Optional.ofNullable(e.getCause()).ifPresent(cause -> cause.printStackTrace(errWriter));
             }
+            return false;
         }
-        return allOk ? 0 : 1;
+        printWarnings(path.toString(), result.layoutBudgetDiagnostics, errWriter);
+        boolean ok = true;
+        boolean changed = !result.output.equals(result.input);
+        if (changed && parameters.setExitIfChanged()) {
+            ok = false;
+        }
+        if (parameters.inPlace()) {
+            if (!changed) {
+                return ok; // preserve original file
+            }
+            try {
+                Files.write(path, result.output.getBytes(UTF_8));
+            } catch (IOException e) {
+                errWriter.println(path + ": could not write file: " + e.getMessage());
+                return false;
+            }
+        } else if (parameters.dryRun()) {
+            if (changed) {
+                outWriter.println(path);
+            }
+        } else {
+            outWriter.write(result.output);
+        }
+        return ok;
     }
 
     private int formatStdin(CommandLineOptions parameters, JavaFormatterOptions options) {
@@ -195,7 +326,9 @@ public final class Main {
         String stdinFilename = parameters.assumeFilename().orElse(STDIN_FILENAME);
         boolean ok = true;
         try {
-            String output = new FormatFileCallable(parameters, input, options).call();
+            FormatFileCallable format = new FormatFileCallable(parameters, input, options);
+            String output = format.call();
+            printWarnings(stdinFilename, format.layoutBudgetDiagnostics(), errWriter);
             boolean changed = !input.equals(output);
             if (changed && parameters.setExitIfChanged()) {
                 ok = false;
@@ -242,7 +375,13 @@ public final class Main {
         if (parameters.offsets().size() != parameters.lengths().size()) {
             throw new UsageException("-offsets and -lengths flags must be provided in matching pairs");
         }
-        if (filesToFormat <= 0 && !parameters.version() && !parameters.help()) {
+        if (parameters.layoutBudget().isPresent() && parameters.layoutBudget().get() <= 0) {
+            throw new UsageException("--layout-budget must be positive");
+        }
+        if (parameters.server() && filesToFormat > 0) {
+            throw new UsageException("cannot format files or standard input directly in --server mode");
+        }
+        if (filesToFormat <= 0 && !parameters.version() && !parameters.help() && !parameters.server()) {
             throw new UsageException("no files were provided");
         }
         if (parameters.stdin() && !parameters.files().isEmpty()) {
@@ -254,6 +393,65 @@ public final class Main {
         if (parameters.dryRun() && parameters.inPlace()) {
             throw new UsageException("cannot use --dry-run and --in-place at the same time");
         }
+        if (parameters.maxFilesInFlight().isPresent() && parameters.maxFilesInFlight().get() < 1) {
+            throw new UsageException("--max-files-in-flight must be at least 1");
+        }
+        if (parameters.threads().isPresent() && parameters.threads().get() < 1) {
+            throw new UsageException("--threads must be at least 1");
+        }
         return parameters;
     }
+
+    /** A file being formatted, which adds itself to {@code completed} once it's done. */
+    private static final class PendingFile extends FutureTask<FormattedFile> {
+        private final int index;
+        private final Path path;
+        private final BlockingQueue<PendingFile> completed;
+
+        PendingFile(int index, Path path, Callable<FormattedFile> format, BlockingQueue<PendingFile> completed) {
+            super(format);
+            this.index = index;
+            this.path = path;
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+    }
+
+    /** Reports diagnostics that didn't stop {@code filename} from being formatted. */
+    private static void printWarnings(
+            String filename, ImmutableList<FormatterDiagnostic> diagnostics, PrintWriter errWriter) {
+        for (FormatterDiagnostic diagnostic : diagnostics) {
+            String position = diagnostic.line() >= 0 ? ":" + diagnostic.line() : "";
+            errWriter.println(filename + position + ": warning: " + diagnostic.message());
+        }
+    }
+
+    private static final class FormattedFile {
+        private final String input;
+        private final String output;
+        private final ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics;
+
+        FormattedFile(String input, String output, ImmutableList<FormatterDiagnostic> layoutBudgetDiagnostics) {
+            this.input = input;
+            this.output = output;
+            this.layoutBudgetDiagnostics = layoutBudgetDiagnostics;
+        }
+    }
+
+    /** What to print for a single file once it's that file's turn. */
+    private static final class FileReport {
+        private final boolean ok;
+        private final String out;
+        private final String err;
+
+        FileReport(boolean ok, String out, String err) {
+            this.ok = ok;
+            this.out = out;
+            this.err = err;
+        }
+    }
 }
@@ -27,12 +27,16 @@ import com.sun.tools.javac.parser.Tokens.TokenKind;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.lang.model.element.Modifier;
 
-/** Fixes sequences of modifiers to be in JLS order. */
+/**
+ * Fixes sequences of modifiers to be in JLS order. Reordering a sequence only swaps its modifiers around, so the toks of
+ * the input are moved rather than lexing the reordered text again.
+ */
 final class ModifierOrderer {
 
     /** Reorders all modifiers in the given text to be in JLS order. */
@@ -51,6 +55,10 @@ final class ModifierOrderer {
         RangeSet<Integer> tokenRanges = javaInput.characterRangesToTokenRanges(characterRanges);
         Iterator<? extends Token> it = javaInput.getTokens().iterator();
         TreeRangeMap<Integer, String> replacements = TreeRangeMap.create();
+        List<JavaInput.Tok> movedToks = new ArrayList<>();
+        List<JavaInput.Tok> movedToToks = new ArrayList<>();
+        // Whether a modifier is spelled differently than its name, e.g. with Unicode escapes, and so changes length
+        boolean relex = false;
         while (it.hasNext()) {
             Token token = it.next();
             if (!tokenRanges.contains(token.getTok().getIndex())) {
@@ -81,7 +89,14 @@ final class ModifierOrderer {
             }
 
             if (!Ordering.natural().isOrdered(mods)) {
+                List<Token> sortedTokens = new ArrayList<>(modifierTokens);
+                sortedTokens.sort(Comparator.comparing(ModifierOrderer::asModifier));
                 Collections.sort(mods);
+                for (int i = 0; i < mods.size(); i++) {
+                    movedToks.add((JavaInput.Tok) modifierTokens.get(i).getTok());
+                    movedToToks.add((JavaInput.Tok) sortedTokens.get(i).getTok());
+                    relex |= !sortedTokens.get(i).getTok().getText().equals(mods.get(i).toString());
+                }
                 StringBuilder replacement = new StringBuilder();
                 for (int i = 0; i < mods.size(); i++) {
                     if (i > 0) {
@@ -95,7 +110,11 @@ final class ModifierOrderer {
                 replacements.put(Range.closedOpen(begin, end), replacement.toString());
             }
         }
-        return applyReplacements(javaInput, replacements);
+        if (replacements.asMapOfRanges().isEmpty()) {
+            return javaInput;
+        }
+        String text = applyReplacements(javaInput.getText(), replacements);
+        return relex ? new JavaInput(text) : javaInput.withToksMoved(text, movedToks, movedToToks);
     }
 
     private static void addTrivia(StringBuilder replacement, ImmutableList<? extends Tok> toks) {
@@ -150,19 +169,15 @@ final class ModifierOrderer {
     }
 
     /** Applies replacements to the given string. */
-    private static JavaInput applyReplacements(JavaInput javaInput, TreeRangeMap<Integer, String> replacementMap)
-            throws FormatterException {
+    private static String applyReplacements(String text, TreeRangeMap<Integer, String> replacementMap) {
         // process in descending order so the replacement ranges aren't perturbed if any replacements
         // differ in size from the input
         Map<Range<Integer>, String> ranges = replacementMap.asDescendingMapOfRanges();
-        if (ranges.isEmpty()) {
-            return javaInput;
-        }
-        StringBuilder sb = new StringBuilder(javaInput.getText());
+        StringBuilder sb = new StringBuilder(text);
         for (Map.Entry<Range<Integer>, String> entry : ranges.entrySet()) {
             Range<Integer> range = entry.getKey();
             sb.replace(range.lowerEndpoint(), range.upperEndpoint(), entry.getValue());
         }
-        return new JavaInput(sb.toString());
+        return sb.toString();
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.parser.JavacParser;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * A javac {@link Context} set up for lexing and parsing, together with its file manager, log and parser factory. Each
+ * thread reuses one for all its lexes and parses, rather than setting up a new one for each, which costs about as much
+ * as parsing a small file.
+ *
+ * <p>{@link #acquire} resets what a previous lex or parse left behind: the diagnostics, and the log's error counts and
+ * sources. Trees parsed with a context stay valid when it is reused, since each parser has its own state, but the
+ * context's name table keeps growing, so a context is replaced after {@link #MAX_USES} uses.
+ *
+ * <p>A lex or parse must read its {@link #diagnostics()} before the next {@link #acquire} on the same thread.
+ */
+final class ParsingContext {
+    private static final int MAX_USES = 1000;
+
+    private static final ThreadLocal<ParsingContext> CURRENT = new ThreadLocal<>();
+
+    private final Context context = new Context();
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+    private final ResettableLog log;
+    private final ParserFactory parserFactory;
+    private int uses = 0;
+
+    private ParsingContext() {
+        // The log picks up the listener and options when it's created, and the file manager would create the default
+        // log if there wasn't one yet
+        context.put(DiagnosticListener.class, (DiagnosticListener<JavaFileObject>) diagnostics::add);
+        Options.instance(context).put("--enable-preview", "true");
+        log = new ResettableLog(context);
+        JavacFileManager fileManager = new JavacFileManager(context, true, UTF_8);
+        try {
+            fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
+        } catch (IOException e) {
+            // impossible
+            throw new UncheckedIOException(e);
+        }
+        parserFactory = ParserFactory.instance(context);
+    }
+
+    /** This thread's context, reset for a new lex or parse. */
+    static ParsingContext acquire() {
+        ParsingContext parsingContext = CURRENT.get();
+        if (parsingContext == null || parsingContext.uses >= MAX_USES) {
+            parsingContext = new ParsingContext();
+            CURRENT.set(parsingContext);
+        }
+        parsingContext.uses++;
+        parsingContext.diagnostics.clear();
+        parsingContext.log.reset();
+        return parsingContext;
+    }
+
+    Context context() {
+        return context;
+    }
+
+    Log log() {
+        return log;
+    }
+
+    /** The diagnostics reported to the context's listener since it was acquired. */
+    List<Diagnostic<? extends JavaFileObject>> diagnostics() {
+        return diagnostics;
+    }
+
+    /** A parser for {@code sourceText}, which should be the log's current source. */
+    JavacParser newParser(String sourceText, boolean allowStringFolding) {
+        // Parsers read their options when they're created
+        Options.instance(context).put("allowStringFolding", Boolean.toString(allowStringFolding));
+        return parserFactory.newParser(
+                sourceText, /*keepDocComments=*/ true, /*keepEndPos=*/ true, /*keepLineMap=*/ true);
+    }
+
+    private static final class ResettableLog extends Log {
+        ResettableLog(Context context) {
+            super(context);
+        }
+
+        /**
+         * Forgets the errors and sources of previous inputs. Otherwise, the log stops reporting errors once it has
+         * seen too many of them, and keeps every source that it was used with.
+         */
+        void reset() {
+            nerrors = 0;
+            nwarnings = 0;
+            recorded.clear();
+            recordedSourceLevelErrors.clear();
+            sourceMap.clear();
+            useSource(null);
+        }
+    }
+}
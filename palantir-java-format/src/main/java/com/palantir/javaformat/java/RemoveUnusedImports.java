@@ -18,6 +18,7 @@ package com.palantir.javaformat.java;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
@@ -43,12 +44,11 @@ import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
 import com.sun.tools.javac.tree.JCTree.JCIdent;
 import com.sun.tools.javac.tree.JCTree.JCImport;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Options;
 import java.lang.reflect.Method;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -203,20 +203,39 @@ public class RemoveUnusedImports {
     }
 
     public static String removeUnusedImports(final String contents) throws FormatterException {
-        Context context = new Context();
-        JCCompilationUnit unit = parse(context, contents);
-        if (unit == null) {
-            // error handling is done during formatting
-            return contents;
+        return removeUnusedImports(new FormattingSession(contents), /* syntaxChecked= */ false);
+    }
+
+    /**
+     * Removes unused imports from the session's current text, reporting any syntax error in it.
+     *
+     * <p>If {@code syntaxChecked}, the caller has checked the text's syntax already, or will parse the result and so
+     * report any syntax error itself. The text then needn't be parsed at all: most imports are decided from its tokens
+     * by {@link ImportUsageScanner}, and its compilation unit is only scanned if any import needs it.
+     */
+    static String removeUnusedImports(FormattingSession session, boolean syntaxChecked) throws FormatterException {
+        String contents = session.text();
+        Optional<ImmutableList<Range<Integer>>> unusedImports =
+                syntaxChecked ? unusedImportsFromTokens(session) : Optional.empty();
+        if (unusedImports.isPresent()) {
+            RangeMap<Integer, String> replacements = TreeRangeMap.create();
+            for (Range<Integer> unusedImport : unusedImports.get()) {
+                deleteImport(contents, unusedImport.lowerEndpoint(), unusedImport.upperEndpoint(), replacements);
+            }
+            return applyReplacements(contents, replacements);
         }
-        UnusedImportScanner scanner = new UnusedImportScanner(JavacTrees.instance(context));
+        JCCompilationUnit unit = session.unit();
+        UnusedImportScanner scanner = new UnusedImportScanner(JavacTrees.instance(session.context()));
         scanner.scan(unit, null);
         return applyReplacements(contents, buildReplacements(contents, unit, scanner.usedNames, scanner.usedInJavadoc));
     }
 
-    private static JCCompilationUnit parse(Context context, String javaInput) throws FormatterException {
-        Options.instance(context).put("allowStringFolding", "false");
-        return Formatter.parseJcCompilationUnit(context, javaInput);
+    private static Optional<ImmutableList<Range<Integer>>> unusedImportsFromTokens(FormattingSession session) {
+        if (session.isParsed()) {
+            return Optional.empty();
+        }
+        // If it doesn't lex, let the parse report the error
+        return session.rawToks().flatMap(rawToks -> ImportUsageScanner.unusedImports(session.text(), rawToks));
     }
 
     /** Construct replacements to fix unused imports. */
@@ -231,21 +250,28 @@ public class RemoveUnusedImports {
             if (!isUnused(unit, usedNames, usedInJavadoc, importTree, simpleName)) {
                 continue;
             }
-            // delete the import
-            int endPosition = importTree.getEndPosition(unit.endPositions);
-            endPosition = Math.max(CharMatcher.isNot(' ').indexIn(contents, endPosition), endPosition);
-            String sep = Newlines.guessLineSeparator(contents);
-            if (endPosition + sep.length() < contents.length()
-                    && contents.subSequence(endPosition, endPosition + sep.length())
-                            .toString()
-                            .equals(sep)) {
-                endPosition += sep.length();
-            }
-            replacements.put(Range.closedOpen(importTree.getStartPosition(), endPosition), "");
+            deleteImport(
+                    contents,
+                    importTree.getStartPosition(),
+                    importTree.getEndPosition(unit.endPositions),
+                    replacements);
         }
         return replacements;
     }
 
+    /** Deletes the import from {@code start} to {@code end}, along with the spaces and line break after it. */
+    private static void deleteImport(String contents, int start, int end, RangeMap<Integer, String> replacements) {
+        int endPosition = Math.max(CharMatcher.isNot(' ').indexIn(contents, end), end);
+        String sep = Newlines.guessLineSeparator(contents);
+        if (endPosition + sep.length() < contents.length()
+                && contents.subSequence(endPosition, endPosition + sep.length())
+                        .toString()
+                        .equals(sep)) {
+            endPosition += sep.length();
+        }
+        replacements.put(Range.closedOpen(start, endPosition), "");
+    }
+
     private static String getSimpleName(ImportTree importTree) {
         return importTree.getQualifiedIdentifier() instanceof JCIdent
                 ? ((JCIdent) importTree.getQualifiedIdentifier()).getName().toString()
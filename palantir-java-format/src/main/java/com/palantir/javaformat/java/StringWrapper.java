@@ -22,8 +22,10 @@ import com.google.common.base.Verify;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import com.google.common.collect.TreeRangeMap;
 import com.palantir.javaformat.Newlines;
+import com.palantir.javaformat.java.JavacTokens.RawTok;
 import com.sun.source.tree.BinaryTree;
 import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MemberSelectTree;
@@ -31,9 +33,8 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Options;
 import com.sun.tools.javac.util.Position;
 import com.sun.tools.javac.util.Position.LineMap;
 import java.util.ArrayDeque;
@@ -42,56 +43,80 @@ import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /** Wraps string literals that exceed the column limit. */
 public final class StringWrapper {
     /** Reflows string literals in the given Java source code that extend past the given column limit. */
     static String wrap(final int columnLimit, String input, Formatter formatter) throws FormatterException {
+        return wrap(columnLimit, new FormattingSession(input), formatter);
+    }
+
+    /**
+     * Reflows string literals in the session's current text, reusing its tokens and tree for as long as the text stays
+     * unchanged.
+     */
+    static String wrap(final int columnLimit, FormattingSession session, Formatter formatter)
+            throws FormatterException {
+        String input = session.text();
         if (!longLines(columnLimit, input)) {
             // fast path
             return input;
         }
 
-        TreeRangeMap<Integer, String> replacements = getReflowReplacements(columnLimit, input);
+        TreeRangeMap<Integer, String> replacements = getReflowReplacements(columnLimit, session);
         String firstPass =
-                formatter.formatSource(input, replacements.asMapOfRanges().keySet());
+                formatter.formatSource(session, replacements.asMapOfRanges().keySet());
 
         if (!firstPass.equals(input)) {
             // If formatting the replacement ranges resulted in a change, recalculate the replacements on
             // the updated input.
             input = firstPass;
-            replacements = getReflowReplacements(columnLimit, input);
+            session.update(input);
+            replacements = getReflowReplacements(columnLimit, session);
         }
 
         String result = applyReplacements(input, replacements);
+        session.update(result);
 
         // Format again, because broken strings might now fit on the first line in case of assignments
-        String secondPass = formatter.formatSource(result, rangesAfterAppliedReplacements(replacements));
+        String secondPass = formatter.formatSource(session, rangesAfterAppliedReplacements(replacements));
 
         if (!secondPass.equals(result)) {
-            replacements = getReflowReplacements(columnLimit, secondPass);
+            session.update(secondPass);
+            replacements = getReflowReplacements(columnLimit, session);
             result = applyReplacements(secondPass, replacements);
         }
 
-        {
-            // We really don't want bugs in this pass to change the behaviour of programs we're
-            // formatting, so check that the pretty-printed AST is the same before and after reformatting.
+        // We really don't want bugs in this pass to change the behaviour of programs we're
+        // formatting, so check that the program is the same before and after reformatting.
+        if (formatter.options().paranoidStringWrapping()) {
+            // The pretty-printed AST, with string concatenations folded
             String expected = parse(input, /* allowStringFolding= */ true).toString();
             String actual = parse(result, /* allowStringFolding= */ true).toString();
             if (!expected.equals(actual)) {
-                throw new FormatterException(String.format(
-                        "Something has gone terribly wrong. Please file a bug: "
-                                + "https://github.com/palantir/palantir-java-format/issues/new"
-                                + "\n\n=== Actual: ===\n%s\n=== Expected: ===\n%s\n",
-                        actual, expected));
+                throw somethingHasGoneTerriblyWrong(actual, expected);
             }
+        } else if (!haveSameFoldedTokens(input, result)) {
+            throw somethingHasGoneTerriblyWrong(result, input);
         }
 
         return result;
     }
 
+    private static FormatterException somethingHasGoneTerriblyWrong(String actual, String expected) {
+        return new FormatterException(String.format(
+                "Something has gone terribly wrong. Please file a bug: "
+                        + "https://github.com/palantir/palantir-java-format/issues/new"
+                        + "\n\n=== Actual: ===\n%s\n=== Expected: ===\n%s\n",
+                actual, expected));
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     private static ImmutableSet<Range<Integer>> rangesAfterAppliedReplacements(
             TreeRangeMap<Integer, String> replacements) {
@@ -114,9 +139,10 @@ public final class StringWrapper {
     }
 
     @SuppressWarnings("for-rollout:NullAway")
-    private static TreeRangeMap<Integer, String> getReflowReplacements(int columnLimit, final String input)
+    private static TreeRangeMap<Integer, String> getReflowReplacements(int columnLimit, FormattingSession session)
             throws FormatterException {
-        JCTree.JCCompilationUnit unit = parse(input, /* allowStringFolding= */ false);
+        final String input = session.text();
+        JCTree.JCCompilationUnit unit = session.unit();
         String separator = Newlines.guessLineSeparator(input);
 
         // Paths to string literals that extend past the column limit.
@@ -396,9 +422,7 @@ public final class StringWrapper {
 
     /** Parses the given Java source. */
     private static JCTree.JCCompilationUnit parse(String source, boolean allowStringFolding) throws FormatterException {
-        Context context = new Context();
-        Options.instance(context).put("allowStringFolding", Boolean.toString(allowStringFolding));
-        return Formatter.parseJcCompilationUnit(context, source);
+        return Formatter.parseJcCompilationUnit(ParsingContext.acquire(), source, allowStringFolding);
     }
 
     /** Applies replacements to the given string. */
@@ -417,5 +441,134 @@ public final class StringWrapper {
         return sb.toString();
     }
 
+    /**
+     * Whether {@code expected} and {@code actual} lex, and have the same {@link FoldedTokens}. Reflowing only splits and
+     * joins string literals, and moves whitespace and comments, so it mustn't change these. This is much cheaper than
+     * comparing the pretty-printed ASTs: lexing costs less than parsing, and nothing needs printing.
+     */
+    static boolean haveSameFoldedTokens(String expected, String actual) {
+        Optional<ImmutableList<RawTok>> expectedToks = JavaInput.lex(expected, ImmutableSet.of());
+        Optional<ImmutableList<RawTok>> actualToks = JavaInput.lex(actual, ImmutableSet.of());
+        if (!expectedToks.isPresent() || !actualToks.isPresent()) {
+            return false;
+        }
+        FoldedTokens one = new FoldedTokens(expected, expectedToks.get());
+        FoldedTokens two = new FoldedTokens(actual, actualToks.get());
+        while (one.advance()) {
+            if (!two.advance() || !one.isSameToken(two)) {
+                return false;
+            }
+        }
+        return !two.advance();
+    }
+
+    /**
+     * The tokens of a source, with each concatenation of adjacent string literals folded into a single literal of their
+     * values, as javac's string folding would. A literal next to an operator that binds more tightly than {@code +}
+     * isn't folded, so that e.g. {@code "ab".length()} and {@code "a" + "b".length()} stay different.
+     */
+    private static final class FoldedTokens {
+        /** Tokens that bind more tightly than {@code +} when right before a string literal. */
+        private static final Set<TokenKind> BINDING_BEFORE = Sets.immutableEnumSet(
+                TokenKind.RPAREN, // a cast
+                TokenKind.STAR,
+                TokenKind.SLASH,
+                TokenKind.PERCENT,
+                TokenKind.SUB,
+                TokenKind.BANG,
+                TokenKind.TILDE,
+                TokenKind.PLUSPLUS,
+                TokenKind.SUBSUB);
+
+        /** Tokens that bind more tightly than {@code +} when right after a string literal. */
+        private static final Set<TokenKind> BINDING_AFTER = Sets.immutableEnumSet(
+                TokenKind.DOT,
+                TokenKind.LBRACKET,
+                TokenKind.COLCOL,
+                TokenKind.STAR,
+                TokenKind.SLASH,
+                TokenKind.PERCENT,
+                TokenKind.PLUSPLUS,
+                TokenKind.SUBSUB);
+
+        private final String source;
+        private final List<RawTok> tokens = new ArrayList<>();
+        private int next = 0;
+
+        // The current token, with the folded value of the string literals it spans, if any
+        private TokenKind kind = TokenKind.EOF;
+        private int start;
+        private int end;
+
+        @Nullable
+        private String value;
+
+        private FoldedTokens(String source, List<RawTok> rawToks) {
+            this.source = source;
+            for (RawTok rawTok : rawToks) {
+                if (rawTok.kind() != null && rawTok.kind() != TokenKind.EOF) {
+                    tokens.add(rawTok);
+                }
+            }
+        }
+
+        private boolean isSameToken(FoldedTokens other) {
+            if (kind != other.kind) {
+                return false;
+            }
+            if (value != null || other.value != null) {
+                return Objects.equals(value, other.value);
+            }
+            return end - start == other.end - other.start
+                    && source.regionMatches(start, other.source, other.start, end - start);
+        }
+
+        /** Moves to the next folded token, returning false if there are none left. */
+        private boolean advance() {
+            if (next == tokens.size()) {
+                return false;
+            }
+            RawTok first = tokens.get(next++);
+            kind = first.kind();
+            start = first.pos();
+            end = first.endPos();
+            value = null;
+            if (kind != TokenKind.STRINGLITERAL) {
+                return true;
+            }
+            value = literalValue(first);
+            if (next >= 2 && BINDING_BEFORE.contains(tokens.get(next - 2).kind())) {
+                // Can't be folded with the literals after it
+                return true;
+            }
+            StringBuilder folded = null;
+            while (kind(next) == TokenKind.PLUS
+                    && kind(next + 1) == TokenKind.STRINGLITERAL
+                    && !BINDING_AFTER.contains(kind(next + 2))) {
+                if (folded == null) {
+                    folded = new StringBuilder(value);
+                }
+                folded.append(literalValue(tokens.get(next + 1)));
+                end = tokens.get(next + 1).endPos();
+                next += 2;
+            }
+            if (folded != null) {
+                value = folded.toString();
+            }
+            return true;
+        }
+
+        @Nullable
+        private TokenKind kind(int i) {
+            return i < tokens.size() ? tokens.get(i).kind() : null;
+        }
+
+        /** The value of a string literal, without its quotes. */
+        private static String literalValue(RawTok literal) {
+            String quoted = literal.stringVal();
+            return quoted.substring(1, quoted.length() - 1);
+        }
+    }
+
     private StringWrapper() {}
 }
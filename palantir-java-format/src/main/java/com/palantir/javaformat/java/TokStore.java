@@ -0,0 +1,353 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.Immutable;
+import com.palantir.javaformat.Newlines;
+import com.palantir.javaformat.java.JavaInput.Tok;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * The {@link Tok}s of an input, with their positions, lengths, columns, indices, kinds and flags kept in parallel
+ * arrays indexed by tok number, rather than in an object with its own copies of its text per tok. A {@link Tok} is just
+ * a tok number into its store.
+ *
+ * <p>Texts are views over the input: keywords, operators, single characters and newlines share constant strings, and
+ * any other text is only copied out of the input when it is first asked for. Only string literals whose text differs
+ * from their source, because of escapes, keep their own text from the start.
+ */
+@Immutable
+final class TokStore {
+    private static final byte IS_TOKEN = 1;
+    private static final byte IS_NEWLINE = 1 << 1;
+    private static final byte IS_SLASH_SLASH_COMMENT = 1 << 2;
+    private static final byte IS_SLASH_STAR_COMMENT = 1 << 3;
+    private static final byte IS_JAVADOC_COMMENT = 1 << 4;
+    /** The text isn't the tok's source, e.g. a string literal with its escapes processed. */
+    private static final byte HAS_OWN_TEXT = 1 << 5;
+
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    private static final String[] ASCII = new String[128];
+
+    static {
+        for (char c = 0; c < ASCII.length; c++) {
+            ASCII[c] = String.valueOf(c);
+        }
+    }
+
+    private final String source;
+    /** The position of the first character of {@link #source}, which is non-zero for a store of a single tok. */
+    private final int sourceOffset;
+
+    // None of these arrays are written to after construction
+    @SuppressWarnings("Immutable")
+    private final int[] indices;
+
+    @SuppressWarnings("Immutable")
+    private final int[] positions;
+
+    @SuppressWarnings("Immutable")
+    private final int[] lengths;
+
+    @SuppressWarnings("Immutable")
+    private final int[] columns;
+
+    @SuppressWarnings("Immutable")
+    private final byte[] flags;
+
+    /** The ordinal of each tok's {@link TokenKind} plus one, or zero if it has none. */
+    @SuppressWarnings("Immutable")
+    private final byte[] kinds;
+
+    private final ImmutableList<Tok> toks;
+
+    /**
+     * The text of each tok, filled in when it is first asked for. Racing threads can only fill in equal strings, as
+     * they are computed from the fields above, just like {@link String#hashCode()}.
+     */
+    @SuppressWarnings("Immutable")
+    private final String[] texts;
+
+    private TokStore(Builder builder) {
+        int size = builder.size;
+        this.source = builder.source;
+        this.sourceOffset = builder.sourceOffset;
+        this.indices = Arrays.copyOf(builder.indices, size);
+        this.positions = Arrays.copyOf(builder.positions, size);
+        this.lengths = Arrays.copyOf(builder.lengths, size);
+        this.columns = Arrays.copyOf(builder.columns, size);
+        this.flags = Arrays.copyOf(builder.flags, size);
+        this.kinds = Arrays.copyOf(builder.kinds, size);
+        this.texts = Arrays.copyOf(builder.ownTexts, size);
+        Tok[] newToks = new Tok[size];
+        for (int t = 0; t < size; t++) {
+            newToks[t] = new Tok(this, t);
+        }
+        this.toks = ImmutableList.copyOf(newToks);
+    }
+
+    static Builder builder(String source) {
+        return new Builder(source, 0);
+    }
+
+    /** A store of just one tok, whose original text is all of {@code originalText}. */
+    static TokStore single(
+            int index,
+            String originalText,
+            String text,
+            int position,
+            int column,
+            boolean isToken,
+            @Nullable TokenKind kind) {
+        return new Builder(originalText, position)
+                .add(index, position, originalText.length(), column, isToken, kind, text)
+                .build();
+    }
+
+    /** The toks, in order. */
+    ImmutableList<Tok> toks() {
+        return toks;
+    }
+
+    int size() {
+        return toks.size();
+    }
+
+    int index(int t) {
+        return indices[t];
+    }
+
+    int position(int t) {
+        return positions[t];
+    }
+
+    int length(int t) {
+        return lengths[t];
+    }
+
+    int column(int t) {
+        return columns[t];
+    }
+
+    boolean isToken(int t) {
+        return (flags[t] & IS_TOKEN) != 0;
+    }
+
+    boolean isNewline(int t) {
+        return (flags[t] & IS_NEWLINE) != 0;
+    }
+
+    boolean isSlashSlashComment(int t) {
+        return (flags[t] & IS_SLASH_SLASH_COMMENT) != 0;
+    }
+
+    boolean isSlashStarComment(int t) {
+        return (flags[t] & IS_SLASH_STAR_COMMENT) != 0;
+    }
+
+    boolean isJavadocComment(int t) {
+        return (flags[t] & IS_JAVADOC_COMMENT) != 0;
+    }
+
+    @Nullable
+    TokenKind kind(int t) {
+        int kind = kinds[t];
+        return kind == 0 ? null : KINDS[kind - 1];
+    }
+
+    String text(int t) {
+        String text = texts[t];
+        if (text == null) {
+            text = sourceText(t);
+            texts[t] = text;
+        }
+        return text;
+    }
+
+    String originalText(int t) {
+        return (flags[t] & HAS_OWN_TEXT) != 0 ? source.substring(start(t), start(t) + lengths[t]) : text(t);
+    }
+
+    /**
+     * A copy of this store for {@code newSource}, in which each tok {@code t} has the text, kind and flags of tok
+     * {@code from[t]}, but keeps its index. Positions and columns are shifted by the differences in length of the toks
+     * moved before them, as lexing {@code newSource} would: positions until the moved lengths even out, and columns
+     * until the next line break.
+     *
+     * <p>Only toks without line breaks may be moved, and {@code newSource} must be this store's source with the moved
+     * toks' texts in their new places.
+     */
+    TokStore withToksMoved(String newSource, int[] from) {
+        checkArgument(from.length == size(), "Expected %s toks to move, got %s", size(), from.length);
+        Builder builder = new Builder(newSource, sourceOffset);
+        builder.size = size();
+        builder.indices = indices.clone();
+        builder.positions = new int[size()];
+        builder.lengths = new int[size()];
+        builder.columns = new int[size()];
+        builder.flags = new byte[size()];
+        builder.kinds = new byte[size()];
+        builder.ownTexts = new String[size()];
+        int positionShift = 0;
+        int columnShift = 0;
+        for (int t = 0; t < size(); t++) {
+            int u = from[t];
+            builder.positions[t] = positions[t] + positionShift;
+            builder.columns[t] = columns[t] + columnShift;
+            builder.lengths[t] = lengths[u];
+            builder.flags[t] = flags[u];
+            builder.kinds[t] = kinds[u];
+            builder.ownTexts[t] = (flags[u] & HAS_OWN_TEXT) != 0 ? texts[u] : null;
+            positionShift += lengths[u] - lengths[t];
+            columnShift += lengths[u] - lengths[t];
+            if (startsNewColumns(t)) {
+                columnShift = 0;
+            }
+        }
+        checkState(positionShift == 0, "Moved toks change the length of the source");
+        return builder.build();
+    }
+
+    /**
+     * Whether the columns of the toks after {@code t} no longer depend on the toks before it, because it is followed
+     * by a line break in the same whitespace, or it contains one.
+     */
+    private boolean startsNewColumns(int t) {
+        if (isNewline(t) || (t + 1 < size() && isNewline(t + 1) && !isToken(t) && !isComment(t))) {
+            return true;
+        }
+        if (isSlashStarComment(t)) {
+            for (int i = start(t); i < start(t) + lengths[t]; i++) {
+                if (source.charAt(i) == '\n' || source.charAt(i) == '\r') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isComment(int t) {
+        return isSlashSlashComment(t) || isSlashStarComment(t);
+    }
+
+    /** Binary searches for the tok that starts at {@code position}, returning -1 if there is none. */
+    int tokStartingAt(int position) {
+        int t = Arrays.binarySearch(positions, position);
+        // Only the EOF tok is empty, so no two toks start at the same position
+        return t < 0 ? -1 : t;
+    }
+
+    private int start(int t) {
+        return positions[t] - sourceOffset;
+    }
+
+    /** The tok's source, preferring a shared constant over a copy. */
+    private String sourceText(int t) {
+        int start = start(t);
+        int length = lengths[t];
+        if (length == 1 && source.charAt(start) < ASCII.length) {
+            return ASCII[source.charAt(start)];
+        }
+        TokenKind kind = kind(t);
+        if (kind != null && kind.name != null && source.startsWith(kind.name, start) && kind.name.length() == length) {
+            return kind.name;
+        }
+        if (isNewline(t)) {
+            // The only newline of more than one character
+            return "\r\n";
+        }
+        return source.substring(start, start + length);
+    }
+
+    static final class Builder {
+        private final String source;
+        private final int sourceOffset;
+        private int size = 0;
+        private int[] indices = new int[16];
+        private int[] positions = new int[16];
+        private int[] lengths = new int[16];
+        private int[] columns = new int[16];
+        private byte[] flags = new byte[16];
+        private byte[] kinds = new byte[16];
+        private String[] ownTexts = new String[16];
+
+        private Builder(String source, int sourceOffset) {
+            this.source = source;
+            this.sourceOffset = sourceOffset;
+        }
+
+        /**
+         * Adds the next tok, whose original text is the {@code length} characters of the source at {@code position}.
+         */
+        Builder add(
+                int index,
+                int position,
+                int length,
+                int column,
+                boolean isToken,
+                @Nullable TokenKind kind,
+                String text) {
+            if (size == positions.length) {
+                int capacity = size * 2;
+                indices = Arrays.copyOf(indices, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+                ownTexts = Arrays.copyOf(ownTexts, capacity);
+            }
+            indices[size] = index;
+            positions[size] = position;
+            lengths[size] = length;
+            columns[size] = column;
+            kinds[size] = kind == null ? 0 : (byte) (kind.ordinal() + 1);
+            byte tokFlags = isToken ? IS_TOKEN : 0;
+            if (Newlines.isNewline(text)) {
+                tokFlags |= IS_NEWLINE;
+            }
+            if (text.startsWith("//")) {
+                tokFlags |= IS_SLASH_SLASH_COMMENT;
+            }
+            if (text.startsWith("/*")) {
+                tokFlags |= IS_SLASH_STAR_COMMENT;
+            }
+            if (text.startsWith("/**") && text.length() > 4) {
+                tokFlags |= IS_JAVADOC_COMMENT;
+            }
+            int start = position - sourceOffset;
+            if (text.length() != length || !source.startsWith(text, start)) {
+                tokFlags |= HAS_OWN_TEXT;
+                ownTexts[size] = text;
+            }
+            flags[size] = tokFlags;
+            size++;
+            return this;
+        }
+
+        TokStore build() {
+            return new TokStore(this);
+        }
+    }
+}
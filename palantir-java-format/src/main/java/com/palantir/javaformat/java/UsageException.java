@@ -71,6 +71,23 @@ final class UsageException extends Exception {
         "    Outputs formatting replacements instead of the full formatted file.",
         "  --max-line-length, -max-line-length",
         "    Override the default maximum line length used by the formatter.",
+        "  --layout-budget",
+        "    Lay out at most this many levels per file before breaking the rest without trying",
+        "    alternatives, and warn about files that hit it.",
+        "  --parallel-layout",
+        "    Lay out independent parts of each file, such as class members, in parallel. Helps with very",
+        "    large files. Has no effect together with --layout-budget.",
+        "  --paranoid-string-wrapping",
+        "    Check reflowed long strings by comparing the whole parsed files before and after, rather",
+        "    than just their tokens.",
+        "  --server",
+        "    Serve length-prefixed formatting requests over stdin -> stdout until stdin is closed.",
+        "  --cache-dir",
+        "    Directory in which to remember files that were already formatted, so unchanged files are skipped.",
+        "  --max-files-in-flight",
+        "    Maximum number of files to hold in memory at once (default is a few per formatting thread).",
+        "  --threads",
+        "    Number of threads to format files with (default is the number of available processors).",
         "  @<filename>",
         "    Read options and filenames from file.",
         "",
@@ -47,10 +47,6 @@ import static com.palantir.javaformat.java.javadoc.Token.Type.PRE_OPEN_TAG;
 import static com.palantir.javaformat.java.javadoc.Token.Type.TABLE_CLOSE_TAG;
 import static com.palantir.javaformat.java.javadoc.Token.Type.TABLE_OPEN_TAG;
 import static com.palantir.javaformat.java.javadoc.Token.Type.WHITESPACE;
-import static java.lang.String.format;
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
-import static java.util.regex.Pattern.DOTALL;
-import static java.util.regex.Pattern.compile;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.ImmutableList;
@@ -60,11 +56,28 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
-/** Lexer for the Javadoc formatter. */
+/**
+ * Lexer for the Javadoc formatter.
+ *
+ * <p>The lexer scans the comment character by character, deciding what kind of token starts at each position from the
+ * first one or two characters. The patterns that each kind of token matches are given in regex syntax next to the
+ * methods that scan for them.
+ */
 final class JavadocLexer {
     /** Takes a Javadoc comment, including ∕✱✱ and ✱∕, and returns tokens, including ∕✱✱ and ✱∕. */
     static ImmutableList<Token> lex(String input) throws LexException {
+        ImmutableList<Token> result = tokenize(input);
+        result = joinAdjacentLiteralsAndAdjacentWhitespace(result);
+        result = inferParagraphTags(result);
+        result = optionalizeSpacesAfterLinks(result);
+        result = deindentPreCodeBlocks(result);
+        return result;
+    }
+
+    /** Like {@link #lex}, but returns the tokens as they are read, before they are joined and cleaned up. */
+    static ImmutableList<Token> tokenize(String input) throws LexException {
         /*
          * TODO(cpovirk): In theory, we should interpret Unicode escapes (yet output them in their
          * original form). This would mean mean everything from an encoded ∕✱✱ to an encoded <pre> tag,
@@ -72,12 +85,15 @@ final class JavadocLexer {
          */
         input = stripJavadocBeginAndEnd(input);
         input = normalizeLineEndings(input);
-        return new JavadocLexer(new CharStream(input)).generateTokens();
+        return new JavadocLexer(input).generateTokens();
     }
 
     /** The lexer crashes on windows line endings, so for now just normalize to `\n`. */
     // TODO(cushon): use the platform line separator for output
     private static String normalizeLineEndings(String input) {
+        if (input.indexOf('\r') == -1) {
+            return input;
+        }
         return NON_UNIX_LINE_ENDING.matcher(input).replaceAll("\n");
     }
 
@@ -93,15 +109,25 @@ final class JavadocLexer {
         return input.substring("/**".length(), input.length() - "*/".length());
     }
 
-    private final CharStream input;
+    /** Returned by the {@code scan*} methods when the input at the current position is not what they look for. */
+    private static final int NO_MATCH = -1;
+
+    private final String input;
+    private final int length;
+    /** The start of the next token. */
+    private int position;
+    /** The end of the next token, once {@link #consumeToken} has found it. */
+    private int tokenEnd;
+
     private final NestingCounter braceDepth = new NestingCounter();
     private final NestingCounter preDepth = new NestingCounter();
     private final NestingCounter codeDepth = new NestingCounter();
     private final NestingCounter tableDepth = new NestingCounter();
     private boolean somethingSinceNewline;
 
-    private JavadocLexer(CharStream input) {
+    private JavadocLexer(String input) {
         this.input = checkNotNull(input);
+        this.length = input.length();
     }
 
     private ImmutableList<Token> generateTokens() throws LexException {
@@ -110,7 +136,7 @@ final class JavadocLexer {
         Token token = new Token(BEGIN_JAVADOC, "/**");
         tokens.add(token);
 
-        while (!input.isExhausted()) {
+        while (position < length) {
             token = readToken();
             tokens.add(token);
         }
@@ -120,27 +146,23 @@ final class JavadocLexer {
         token = new Token(END_JAVADOC, "*/");
         tokens.add(token);
 
-        ImmutableList<Token> result = tokens.build();
-        result = joinAdjacentLiteralsAndAdjacentWhitespace(result);
-        result = inferParagraphTags(result);
-        result = optionalizeSpacesAfterLinks(result);
-        result = deindentPreCodeBlocks(result);
-        return result;
+        return tokens.build();
     }
 
     private Token readToken() throws LexException {
         Token.Type type = consumeToken();
-        String value = input.readAndResetRecorded();
+        String value = input.substring(position, tokenEnd);
+        position = tokenEnd;
         return new Token(type, value);
     }
 
     private Token.Type consumeToken() throws LexException {
         boolean preserveExistingFormatting = preserveExistingFormatting();
 
-        if (input.tryConsumeRegex(NEWLINE_PATTERN)) {
+        if (tryConsume(scanNewline())) {
             somethingSinceNewline = false;
             return preserveExistingFormatting ? FORCED_NEWLINE : WHITESPACE;
-        } else if (input.tryConsume(" ") || input.tryConsume("\t")) {
+        } else if (tryConsume(' ') || tryConsume('\t')) {
             // TODO(cpovirk): How about weird whitespace chars? Ideally we'd distinguish breaking vs. not.
             // Returning LITERAL here prevent us from breaking a <pre> line. For more info, see LITERAL.
             return preserveExistingFormatting ? LITERAL : WHITESPACE;
@@ -152,91 +174,330 @@ final class JavadocLexer {
          * great options for fixing it.
          * https://github.com/google/google-java-format/issues/7#issuecomment-197383926
          */
-        if (!somethingSinceNewline && input.tryConsumeRegex(FOOTER_TAG_PATTERN)) {
+        if (!somethingSinceNewline && tryConsume(scanFooterTag())) {
             checkMatchingTags();
             somethingSinceNewline = true;
             return FOOTER_JAVADOC_TAG_START;
         }
         somethingSinceNewline = true;
 
-        if (input.tryConsumeRegex(INLINE_TAG_OPEN_PATTERN)) {
+        if (tryConsume(scanInlineTagOpen())) {
             braceDepth.increment();
             return INLINE_TAG_OPEN;
-        } else if (input.tryConsume("{")) {
+        } else if (tryConsume('{')) {
             braceDepth.incrementIfPositive();
             return LITERAL;
-        } else if (input.tryConsume("}")) {
+        } else if (tryConsume('}')) {
             braceDepth.decrementIfPositive();
             return braceDepth.isPositive() ? LITERAL : INLINE_TAG_CLOSE;
         }
 
         // Inside an inline tag, don't do any HTML interpretation.
         if (braceDepth.isPositive()) {
-            verify(input.tryConsumeRegex(LITERAL_PATTERN));
+            verify(tryConsume(scanLiteral()));
             return LITERAL;
         }
 
-        if (input.tryConsumeRegex(PRE_OPEN_PATTERN)) {
-            preDepth.increment();
-            return preserveExistingFormatting ? LITERAL : PRE_OPEN_TAG;
-        } else if (input.tryConsumeRegex(PRE_CLOSE_PATTERN)) {
-            preDepth.decrementIfPositive();
-            return preserveExistingFormatting() ? LITERAL : PRE_CLOSE_TAG;
+        if (input.charAt(position) == '<') {
+            Token.Type type = consumeHtmlTag(preserveExistingFormatting);
+            if (type != null) {
+                return type;
+            }
+        }
+
+        if (!preserveExistingFormatting && input.startsWith("<!--", position)) {
+            if (tryConsume(scanMoeComment("MOE:begin_intracomment_strip"))) {
+                return MOE_BEGIN_STRIP_COMMENT;
+            } else if (tryConsume(scanMoeComment("MOE:end_intracomment_strip"))) {
+                return MOE_END_STRIP_COMMENT;
+            } else if (tryConsume(scanHtmlComment())) {
+                return HTML_COMMENT;
+            }
         }
 
-        if (input.tryConsumeRegex(CODE_OPEN_PATTERN)) {
-            codeDepth.increment();
-            return preserveExistingFormatting ? LITERAL : CODE_OPEN_TAG;
-        } else if (input.tryConsumeRegex(CODE_CLOSE_PATTERN)) {
-            codeDepth.decrementIfPositive();
-            return preserveExistingFormatting() ? LITERAL : CODE_CLOSE_TAG;
+        verify(tryConsume(scanLiteral()));
+        return LITERAL;
+    }
+
+    /**
+     * Consumes the open or close tag at the current position if it is one we handle, and returns its type, or null if
+     * it isn't. When preserving existing formatting, only tags that start or end a preserved section are recognized,
+     * and are returned as {@link Token.Type#LITERAL} unless they end the last such section.
+     */
+    @Nullable
+    private Token.Type consumeHtmlTag(boolean preserveExistingFormatting) {
+        // <(?:name)\b[^>]*> and </(?:name)\b[^>]*>, case insensitively
+        boolean close = input.startsWith("</", position);
+        int nameStart = position + (close ? 2 : 1);
+        int nameEnd = nameStart;
+        while (nameEnd < length && isAsciiLetterOrDigit(input.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        HtmlTag tag = HtmlTag.named(input, nameStart, nameEnd);
+        if (tag == null || (close && tag.closeType == null) || isWordCharacterAt(nameEnd)) {
+            return null;
+        }
+        int end = input.indexOf('>', nameEnd);
+        if (end == -1) {
+            return null;
         }
 
-        if (input.tryConsumeRegex(TABLE_OPEN_PATTERN)) {
-            tableDepth.increment();
-            return preserveExistingFormatting ? LITERAL : TABLE_OPEN_TAG;
-        } else if (input.tryConsumeRegex(TABLE_CLOSE_PATTERN)) {
-            tableDepth.decrementIfPositive();
-            return preserveExistingFormatting() ? LITERAL : TABLE_CLOSE_TAG;
+        NestingCounter depth = preservingDepth(tag);
+        if (depth == null) {
+            if (preserveExistingFormatting) {
+                return null;
+            }
+            tokenEnd = end + 1;
+            return close ? tag.closeType : tag.openType;
+        }
+        tokenEnd = end + 1;
+        if (close) {
+            depth.decrementIfPositive();
+            return preserveExistingFormatting() ? LITERAL : tag.closeType;
         }
+        depth.increment();
+        return preserveExistingFormatting ? LITERAL : tag.openType;
+    }
 
-        if (preserveExistingFormatting) {
-            verify(input.tryConsumeRegex(LITERAL_PATTERN));
-            return LITERAL;
+    /** The counter for sections opened by {@code tag} in which we preserve existing formatting, if any. */
+    @Nullable
+    private NestingCounter preservingDepth(HtmlTag tag) {
+        switch (tag) {
+            case PRE:
+                return preDepth;
+            case CODE:
+                return codeDepth;
+            case TABLE:
+                return tableDepth;
+            default:
+                return null;
         }
+    }
 
-        if (input.tryConsumeRegex(PARAGRAPH_OPEN_PATTERN)) {
-            return PARAGRAPH_OPEN_TAG;
-        } else if (input.tryConsumeRegex(PARAGRAPH_CLOSE_PATTERN)) {
-            return PARAGRAPH_CLOSE_TAG;
-        } else if (input.tryConsumeRegex(LIST_OPEN_PATTERN)) {
-            return LIST_OPEN_TAG;
-        } else if (input.tryConsumeRegex(LIST_CLOSE_PATTERN)) {
-            return LIST_CLOSE_TAG;
-        } else if (input.tryConsumeRegex(LIST_ITEM_OPEN_PATTERN)) {
-            return LIST_ITEM_OPEN_TAG;
-        } else if (input.tryConsumeRegex(LIST_ITEM_CLOSE_PATTERN)) {
-            return LIST_ITEM_CLOSE_TAG;
-        } else if (input.tryConsumeRegex(BLOCKQUOTE_OPEN_PATTERN)) {
-            return BLOCKQUOTE_OPEN_TAG;
-        } else if (input.tryConsumeRegex(BLOCKQUOTE_CLOSE_PATTERN)) {
-            return BLOCKQUOTE_CLOSE_TAG;
-        } else if (input.tryConsumeRegex(HEADER_OPEN_PATTERN)) {
-            return HEADER_OPEN_TAG;
-        } else if (input.tryConsumeRegex(HEADER_CLOSE_PATTERN)) {
-            return HEADER_CLOSE_TAG;
-        } else if (input.tryConsumeRegex(BR_PATTERN)) {
-            return BR_TAG;
-        } else if (input.tryConsumeRegex(MOE_BEGIN_STRIP_COMMENT_PATTERN)) {
-            return MOE_BEGIN_STRIP_COMMENT;
-        } else if (input.tryConsumeRegex(MOE_END_STRIP_COMMENT_PATTERN)) {
-            return MOE_END_STRIP_COMMENT;
-        } else if (input.tryConsumeRegex(HTML_COMMENT_PATTERN)) {
-            return HTML_COMMENT;
-        } else if (input.tryConsumeRegex(LITERAL_PATTERN)) {
-            return LITERAL;
+    /**
+     * Records that the next token ends at {@code end}, which is the result of one of the {@code scan*} methods, unless
+     * that is {@link #NO_MATCH}.
+     */
+    private boolean tryConsume(int end) {
+        if (end == NO_MATCH) {
+            return false;
+        }
+        tokenEnd = end;
+        return true;
+    }
+
+    private boolean tryConsume(char expected) {
+        if (input.charAt(position) != expected) {
+            return false;
+        }
+        tokenEnd = position + 1;
+        return true;
+    }
+
+    /*
+     * [ \t]*\n[ \t]*[*]?[ \t]?
+     *
+     * This also eats any trailing whitespace. We would be smart enough to ignore that, anyway --
+     * except in the case of <pre>/<table>, inside which we otherwise leave whitespace intact.
+     *
+     * We'd remove the trailing whitespace later on (in JavaCommentsHelper.rewrite), but I feel safer
+     * stripping it now: It otherwise might confuse our line-length count, which we use for wrapping.
+     */
+    private int scanNewline() {
+        int end = skipSpacesAndTabs(position);
+        if (end == length || input.charAt(end) != '\n') {
+            return NO_MATCH;
+        }
+        end = skipSpacesAndTabs(end + 1);
+        if (end < length && input.charAt(end) == '*') {
+            end++;
+        }
+        if (end < length && isSpaceOrTab(input.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /*
+     * @(param\s+<\w+>|[a-z]\w*)
+     *
+     * We ensure elsewhere that we match this only at the beginning of a line.
+     * Only match tags that start with a lowercase letter, to avoid false matches on unescaped
+     * annotations inside code blocks.
+     * Match "@param <T>" specially in case the <T> is a <P> or other HTML tag we treat specially.
+     */
+    private int scanFooterTag() {
+        if (input.charAt(position) != '@') {
+            return NO_MATCH;
+        }
+        int nameStart = position + 1;
+        if (input.startsWith("param", nameStart)) {
+            int typeParameterStart = skipWhitespace(nameStart + "param".length());
+            if (typeParameterStart > nameStart + "param".length()
+                    && typeParameterStart < length
+                    && input.charAt(typeParameterStart) == '<') {
+                int typeParameterEnd = skipWordCharacters(typeParameterStart + 1);
+                if (typeParameterEnd > typeParameterStart + 1
+                        && typeParameterEnd < length
+                        && input.charAt(typeParameterEnd) == '>') {
+                    return typeParameterEnd + 1;
+                }
+            }
+        }
+        if (nameStart < length && isAsciiLowercase(input.charAt(nameStart))) {
+            return skipWordCharacters(nameStart + 1);
+        }
+        return NO_MATCH;
+    }
+
+    /* [{]@\w* */
+    private int scanInlineTagOpen() {
+        if (!input.startsWith("{@", position)) {
+            return NO_MATCH;
+        }
+        return skipWordCharacters(position + 2);
+    }
+
+    /* <!--\s*MOE:(?:begin|end)_intracomment_strip\s*--> */
+    private int scanMoeComment(String directive) {
+        int directiveStart = skipWhitespace(position + "<!--".length());
+        if (!input.startsWith(directive, directiveStart)) {
+            return NO_MATCH;
+        }
+        int closeStart = skipWhitespace(directiveStart + directive.length());
+        return input.startsWith("-->", closeStart) ? closeStart + "-->".length() : NO_MATCH;
+    }
+
+    /* <!--.*?--> */
+    private int scanHtmlComment() {
+        int closeStart = input.indexOf("-->", position + "<!--".length());
+        return closeStart == -1 ? NO_MATCH : closeStart + "-->".length();
+    }
+
+    /*
+     * .[^ \t\n@<{}*]*
+     *
+     * We exclude < so that we don't swallow following HTML tags. This lets us fix up "foo<p>" (~400
+     * hits in Google-internal code). We will join unnecessarily split "words" (like "foo<b>bar</b>")
+     * in a later step. There's a similar story for braces. I'm not sure I actually need to exclude @
+     * or *. TODO(cpovirk): Try removing them.
+     *
+     * Thanks to the "rejoin" step in joinAdjacentLiteralsAndAdjacentWhitespace(), we could get away
+     * with matching only one character here. That would produce many more tokens, though.
+     */
+    private int scanLiteral() {
+        int end = position + 1;
+        while (end < length && !isLiteralTerminator(input.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private int skipSpacesAndTabs(int start) {
+        int end = start;
+        while (end < length && isSpaceOrTab(input.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /* \s* */
+    private int skipWhitespace(int start) {
+        int end = start;
+        while (end < length && isRegexWhitespace(input.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /* \w* */
+    private int skipWordCharacters(int start) {
+        int end = start;
+        while (end < length && (isAsciiLetterOrDigit(input.charAt(end)) || input.charAt(end) == '_')) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Whether the end of a tag name at {@code index} is not a word boundary, as {@code \b} decides it since JDK 19:
+     * only the ASCII characters of {@code \w} count, so e.g. {@code <preé>} is a {@code <pre>} tag.
+     */
+    private boolean isWordCharacterAt(int index) {
+        return index < length && (isAsciiLetterOrDigit(input.charAt(index)) || input.charAt(index) == '_');
+    }
+
+    private static boolean isSpaceOrTab(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiLowercase(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isLiteralTerminator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '@':
+            case '<':
+            case '{':
+            case '}':
+            case '*':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** The HTML tags that we handle, by the names they may be written with in any case. */
+    private enum HtmlTag {
+        PRE(PRE_OPEN_TAG, PRE_CLOSE_TAG, "pre"),
+        CODE(CODE_OPEN_TAG, CODE_CLOSE_TAG, "code"),
+        TABLE(TABLE_OPEN_TAG, TABLE_CLOSE_TAG, "table"),
+        LIST(LIST_OPEN_TAG, LIST_CLOSE_TAG, "ul", "ol", "dl"),
+        LIST_ITEM(LIST_ITEM_OPEN_TAG, LIST_ITEM_CLOSE_TAG, "li", "dt", "dd"),
+        HEADER(HEADER_OPEN_TAG, HEADER_CLOSE_TAG, "h1", "h2", "h3", "h4", "h5", "h6"),
+        PARAGRAPH(PARAGRAPH_OPEN_TAG, PARAGRAPH_CLOSE_TAG, "p"),
+        BLOCKQUOTE(BLOCKQUOTE_OPEN_TAG, BLOCKQUOTE_CLOSE_TAG, "blockquote"),
+        BR(BR_TAG, null, "br");
+
+        private static final HtmlTag[] VALUES = values();
+
+        private final Token.Type openType;
+
+        @Nullable
+        private final Token.Type closeType;
+
+        private final String[] names;
+
+        HtmlTag(Token.Type openType, @Nullable Token.Type closeType, String... names) {
+            this.openType = openType;
+            this.closeType = closeType;
+            this.names = names;
+        }
+
+        @Nullable
+        static HtmlTag named(String input, int nameStart, int nameEnd) {
+            int nameLength = nameEnd - nameStart;
+            for (HtmlTag tag : VALUES) {
+                for (String name : tag.names) {
+                    if (name.length() == nameLength && input.regionMatches(true, nameStart, name, 0, nameLength)) {
+                        return tag;
+                    }
+                }
+            }
+            return null;
         }
-        throw new IllegalStateException();
     }
 
     private boolean preserveExistingFormatting() {
@@ -253,7 +514,7 @@ final class JavadocLexer {
      * Join together adjacent literal tokens, and join together adjacent whitespace tokens.
      *
      * <p>For literal tokens, this means something like {@code ["<b>", "foo", "</b>"] => ["<b>foo</b>"]}. See
-     * {@link #LITERAL_PATTERN} for discussion of why those tokens are separate to begin with.
+     * {@link #scanLiteral} for discussion of why those tokens are separate to begin with.
      *
      * <p>Whitespace tokens are treated analogously. We don't really "want" to join whitespace tokens, but in the course
      * of joining literals, we incidentally join whitespace, too. We do take advantage of the joining later on: It
@@ -391,7 +652,7 @@ final class JavadocLexer {
         ImmutableList.Builder<Token> output = ImmutableList.builder();
 
         for (PeekingIterator<Token> tokens = peekingIterator(input.iterator()); tokens.hasNext(); ) {
-            if (tokens.peek().getType() == LITERAL && tokens.peek().getValue().matches("^href=[^>]*>")) {
+            if (tokens.peek().getType() == LITERAL && isLinkOpenTagEnd(tokens.peek().getValue())) {
                 output.add(tokens.next());
 
                 if (tokens.peek().getType() == WHITESPACE) {
@@ -430,7 +691,7 @@ final class JavadocLexer {
             while (tokens.hasNext() && tokens.peek().getType() == FORCED_NEWLINE) {
                 initialNewlines.add(tokens.next());
             }
-            if (tokens.peek().getType() != LITERAL || !tokens.peek().getValue().matches("[ \t]*[{]@code")) {
+            if (tokens.peek().getType() != LITERAL || !isCodeTagAfterIndent(tokens.peek().getValue())) {
                 output.addAll(initialNewlines);
                 output.add(tokens.next());
                 continue;
@@ -500,71 +761,23 @@ final class JavadocLexer {
         }
     }
 
-    private static final CharMatcher NEWLINE = CharMatcher.is('\n');
-
-    private static boolean hasMultipleNewlines(String s) {
-        return NEWLINE.countIn(s) > 1;
+    /* href=[^>]*> */
+    private static boolean isLinkOpenTagEnd(String value) {
+        return value.startsWith("href=") && value.indexOf('>') == value.length() - 1;
     }
 
-    /*
-     * This also eats any trailing whitespace. We would be smart enough to ignore that, anyway --
-     * except in the case of <pre>/<table>, inside which we otherwise leave whitespace intact.
-     *
-     * We'd remove the trailing whitespace later on (in JavaCommentsHelper.rewrite), but I feel safer
-     * stripping it now: It otherwise might confuse our line-length count, which we use for wrapping.
-     */
-    private static final Pattern NEWLINE_PATTERN = compile("^[ \t]*\n[ \t]*[*]?[ \t]?");
-
-    // We ensure elsewhere that we match this only at the beginning of a line.
-    // Only match tags that start with a lowercase letter, to avoid false matches on unescaped
-    // annotations inside code blocks.
-    // Match "@param <T>" specially in case the <T> is a <P> or other HTML tag we treat specially.
-    private static final Pattern FOOTER_TAG_PATTERN = compile("^@(param\\s+<\\w+>|[a-z]\\w*)");
-    private static final Pattern MOE_BEGIN_STRIP_COMMENT_PATTERN =
-            compile("^<!--\\s*MOE:begin_intracomment_strip\\s*-->");
-    private static final Pattern MOE_END_STRIP_COMMENT_PATTERN = compile("^<!--\\s*MOE:end_intracomment_strip\\s*-->");
-    private static final Pattern HTML_COMMENT_PATTERN = fullCommentPattern();
-    private static final Pattern PRE_OPEN_PATTERN = openTagPattern("pre");
-    private static final Pattern PRE_CLOSE_PATTERN = closeTagPattern("pre");
-    private static final Pattern CODE_OPEN_PATTERN = openTagPattern("code");
-    private static final Pattern CODE_CLOSE_PATTERN = closeTagPattern("code");
-    private static final Pattern TABLE_OPEN_PATTERN = openTagPattern("table");
-    private static final Pattern TABLE_CLOSE_PATTERN = closeTagPattern("table");
-    private static final Pattern LIST_OPEN_PATTERN = openTagPattern("ul|ol|dl");
-    private static final Pattern LIST_CLOSE_PATTERN = closeTagPattern("ul|ol|dl");
-    private static final Pattern LIST_ITEM_OPEN_PATTERN = openTagPattern("li|dt|dd");
-    private static final Pattern LIST_ITEM_CLOSE_PATTERN = closeTagPattern("li|dt|dd");
-    private static final Pattern HEADER_OPEN_PATTERN = openTagPattern("h[1-6]");
-    private static final Pattern HEADER_CLOSE_PATTERN = closeTagPattern("h[1-6]");
-    private static final Pattern PARAGRAPH_OPEN_PATTERN = openTagPattern("p");
-    private static final Pattern PARAGRAPH_CLOSE_PATTERN = closeTagPattern("p");
-    private static final Pattern BLOCKQUOTE_OPEN_PATTERN = openTagPattern("blockquote");
-    private static final Pattern BLOCKQUOTE_CLOSE_PATTERN = closeTagPattern("blockquote");
-    private static final Pattern BR_PATTERN = openTagPattern("br");
-    private static final Pattern INLINE_TAG_OPEN_PATTERN = compile("^[{]@\\w*");
-    /*
-     * We exclude < so that we don't swallow following HTML tags. This lets us fix up "foo<p>" (~400
-     * hits in Google-internal code). We will join unnecessarily split "words" (like "foo<b>bar</b>")
-     * in a later step. There's a similar story for braces. I'm not sure I actually need to exclude @
-     * or *. TODO(cpovirk): Try removing them.
-     *
-     * Thanks to the "rejoin" step in joinAdjacentLiteralsAndAdjacentWhitespace(), we could get away
-     * with matching only one character here. That would eliminate the need for the regex entirely.
-     * That might be faster or slower than what we do now.
-     */
-    @SuppressWarnings("for-rollout:AlmostJavadoc")
-    private static final Pattern LITERAL_PATTERN = compile("^.[^ \t\n@<{}*]*", DOTALL);
-
-    private static Pattern fullCommentPattern() {
-        return compile("^<!--.*?-->", DOTALL);
+    /* [ \t]*[{]@code */
+    private static boolean isCodeTagAfterIndent(String value) {
+        return value.endsWith("{@code")
+                && SPACE_OR_TAB.matchesAllOf(value.substring(0, value.length() - "{@code".length()));
     }
 
-    private static Pattern openTagPattern(String namePattern) {
-        return compile(format("^<(?:%s)\\b[^>]*>", namePattern), CASE_INSENSITIVE);
-    }
+    private static final CharMatcher SPACE_OR_TAB = CharMatcher.anyOf(" \t");
 
-    private static Pattern closeTagPattern(String namePattern) {
-        return compile(format("^</(?:%s)\\b[^>]*>", namePattern), CASE_INSENSITIVE);
+    private static final CharMatcher NEWLINE = CharMatcher.is('\n');
+
+    private static boolean hasMultipleNewlines(String s) {
+        return NEWLINE.countIn(s) > 1;
     }
 
     static class LexException extends Exception {}
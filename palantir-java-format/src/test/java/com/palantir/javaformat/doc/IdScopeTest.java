@@ -0,0 +1,55 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class IdScopeTest {
+    @Test
+    public void idsAreDenseWithinScope() {
+        try (IdScope ignored = IdScope.open()) {
+            assertThat(new BreakTag().id()).isEqualTo(0);
+            assertThat(new BreakTag().id()).isEqualTo(1);
+            assertThat(new BreakTag().id()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void closingNestedScopeResumesOuterScope() {
+        try (IdScope ignored = IdScope.open()) {
+            assertThat(new BreakTag().id()).isEqualTo(0);
+            try (IdScope ignored2 = IdScope.open()) {
+                assertThat(new BreakTag().id()).isEqualTo(0);
+                assertThat(new BreakTag().id()).isEqualTo(1);
+            }
+            assertThat(new BreakTag().id()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void unscopedIdsNeverCollideWithScopedIds() {
+        int unscoped = new BreakTag().id();
+        try (IdScope ignored = IdScope.open()) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(new BreakTag().id()).isNotEqualTo(unscoped);
+            }
+        }
+        assertThat(new BreakTag().id()).isGreaterThan(unscoped);
+    }
+}
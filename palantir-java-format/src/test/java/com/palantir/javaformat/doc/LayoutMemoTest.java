@@ -0,0 +1,152 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.palantir.javaformat.doc.TestDocBuilder.describe;
+import static com.palantir.javaformat.doc.TestDocBuilder.layOut;
+
+import com.palantir.javaformat.Indent;
+import com.palantir.javaformat.java.FormatterException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LayoutMemoTest {
+    private static final int MAX_WIDTH = 12;
+
+    private BreakTag tag;
+    private List<Doc> docs;
+    private final AtomicInteger layouts = new AtomicInteger();
+
+    @BeforeEach
+    public void before() throws FormatterException {
+        tag = new BreakTag();
+        // aaaa [bbbb <unified break, sets tag> cccc <break, indents by 8 if tag was taken, else 2> dddd] eeee
+        Level root = new TestDocBuilder("aaaa bbbb cccc dddd eeee")
+                .token()
+                .open(Indent.Const.make(4, 1))
+                .token()
+                .add(Break.make(FillMode.UNIFIED, " ", Indent.Const.ZERO, Optional.of(tag)))
+                .token()
+                .add(Break.make(
+                        FillMode.INDEPENDENT,
+                        " ",
+                        Indent.If.make(tag, Indent.Const.make(8, 1), Indent.Const.make(2, 1))))
+                .token()
+                .close()
+                .token()
+                .build();
+        docs = root.getDocs();
+    }
+
+    private UnaryOperator<State> countingLayout() {
+        return state -> {
+            layouts.incrementAndGet();
+            return layOut(docs, MAX_WIDTH, state);
+        };
+    }
+
+    private static State startingState() {
+        return State.startingState().withColumn(6);
+    }
+
+    @Test
+    public void hitReplaysTheSameDelta() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        State first = startingState();
+        memo.computeIfAbsent(MAX_WIDTH, first, countingLayout());
+        memo.computeIfAbsent(MAX_WIDTH, first, countingLayout());
+        assertThat(layouts.get()).isEqualTo(2);
+
+        // Differs only in what the layout doesn't read: the lines before, and a tag that nothing inside reads
+        State equivalent = first.addNewLines(3).breakTaken(new BreakTag(), true);
+        State replayed = memo.computeIfAbsent(MAX_WIDTH, equivalent, countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(2);
+        State laidOut = layOut(docs, MAX_WIDTH, equivalent);
+        assertThat(laidOut.numLines()).isGreaterThan(equivalent.numLines());
+        assertThat(describe(replayed, docs)).isEqualTo(describe(laidOut, docs));
+    }
+
+    @Test
+    public void branchingCoefficientOnlyCountsIfLevelsInsideBranch() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        memo.computeIfAbsent(MAX_WIDTH, startingState(), countingLayout());
+        memo.computeIfAbsent(MAX_WIDTH, startingState(), countingLayout());
+
+        memo.computeIfAbsent(MAX_WIDTH, startingState().withNewBranch(), countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void keysDifferingInMustBreakStaySeparate() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        State state = startingState();
+        memo.computeIfAbsent(MAX_WIDTH, state, countingLayout());
+        memo.computeIfAbsent(MAX_WIDTH, state, countingLayout());
+
+        State mustBreak = state.withMustBreak(true);
+        State result = memo.computeIfAbsent(MAX_WIDTH, mustBreak, countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(3);
+        assertThat(describe(result, docs)).isEqualTo(describe(layOut(docs, MAX_WIDTH, mustBreak), docs));
+    }
+
+    @Test
+    public void keysDifferingInTakenTagsStaySeparate() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        State state = startingState();
+        memo.computeIfAbsent(MAX_WIDTH, state, countingLayout());
+        memo.computeIfAbsent(MAX_WIDTH, state, countingLayout());
+
+        State tagTaken = state.breakTaken(tag, true);
+        State result = memo.computeIfAbsent(MAX_WIDTH, tagTaken, countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(3);
+        assertThat(describe(result, docs)).isEqualTo(describe(layOut(docs, MAX_WIDTH, tagTaken), docs));
+    }
+
+    @Test
+    public void keysDifferingInColumnStaySeparate() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        memo.computeIfAbsent(MAX_WIDTH, startingState(), countingLayout());
+        memo.computeIfAbsent(MAX_WIDTH, startingState(), countingLayout());
+
+        memo.computeIfAbsent(MAX_WIDTH, startingState().withColumn(0), countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void precomputedLayoutIsReplayedOnFirstLookup() {
+        LayoutMemo memo = new LayoutMemo(docs);
+        State state = startingState();
+        memo.precompute(MAX_WIDTH, state, countingLayout());
+        assertThat(layouts.get()).isEqualTo(1);
+
+        State equivalent = state.addNewLines(5);
+        State replayed = memo.computeIfAbsent(MAX_WIDTH, equivalent, countingLayout());
+
+        assertThat(layouts.get()).isEqualTo(1);
+        assertThat(describe(replayed, docs)).isEqualTo(describe(layOut(docs, MAX_WIDTH, equivalent), docs));
+    }
+}
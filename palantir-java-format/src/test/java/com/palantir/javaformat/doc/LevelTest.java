@@ -0,0 +1,101 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.javaformat.Indent;
+import com.palantir.javaformat.OpenOp;
+import com.palantir.javaformat.java.FormatterException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LevelTest {
+    @Test
+    public void widthOfEveryRangeOfDocsIsTheirSum() throws FormatterException {
+        Level level = mixedWidthLevel();
+        List<Doc> docs = level.getDocs();
+
+        for (int start = 0; start <= docs.size(); start++) {
+            for (int end = start; end <= docs.size(); end++) {
+                float expected = 0.0F;
+                for (Doc doc : docs.subList(start, end)) {
+                    expected += doc.getWidth();
+                }
+                assertWithMessage("width of [%s, %s)", start, end).that(level.getWidth(start, end)).isEqualTo(expected);
+            }
+        }
+        assertThat(level.getWidth(0, 4)).isEqualTo(7.0F);
+        assertThat(level.getWidth(5, 6)).isEqualTo(Float.POSITIVE_INFINITY);
+        assertThat(level.getWidth(6, 8)).isEqualTo(8.0F);
+    }
+
+    @Test
+    public void splitsEndAtEachBreak() throws FormatterException {
+        Level level = mixedWidthLevel();
+        List<Integer> breaks = new ArrayList<>();
+        for (int i = 0; i < level.getDocs().size(); i++) {
+            if (level.getDocs().get(i) instanceof Break) {
+                breaks.add(i);
+            }
+        }
+        assertThat(breaks).hasSize(3);
+
+        for (int i = 0; i < breaks.size(); i++) {
+            assertThat(level.splitEnd(i)).isEqualTo(breaks.get(i));
+        }
+        assertThat(level.splitEnd(breaks.size())).isEqualTo(level.getDocs().size());
+    }
+
+    @Test
+    public void levelUsedBeforeFreezeIsFrozenOnFirstUse() {
+        Level level = Level.make(OpenOp.builder().plusIndent(Indent.Const.ZERO).build());
+        level.add(NonBreakingSpace.make());
+        level.add(Break.make(FillMode.UNIFIED, "  ", Indent.Const.ZERO));
+        level.add(NonBreakingSpace.make());
+        assertThat(level.isFrozen()).isFalse();
+
+        assertThat(level.getWidth(0, 3)).isEqualTo(4.0F);
+        assertThat(level.isFrozen()).isTrue();
+        assertThat(level.splitEnd(0)).isEqualTo(1);
+        assertThat(level.getWidth()).isEqualTo(4.0F);
+        assertThatThrownBy(() -> level.add(NonBreakingSpace.make()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Level is already complete");
+    }
+
+    /** {@code a bb <break> ccc <forced break> [dddd <forced break> e] <break> ffffff}. */
+    private static Level mixedWidthLevel() throws FormatterException {
+        return new TestDocBuilder("a bb ccc dddd e ffffff")
+                .token()
+                .token()
+                .add(Break.make(FillMode.UNIFIED, " ", Indent.Const.ZERO))
+                .token()
+                .add(Break.makeForced())
+                .open(Indent.Const.ZERO)
+                .token()
+                .add(Break.makeForced())
+                .token()
+                .close()
+                .add(Break.make(FillMode.INDEPENDENT, "  ", Indent.Const.ZERO))
+                .token()
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PersistentIntMapTest {
+    @Test
+    public void updatesLeaveOriginalUntouched() {
+        PersistentIntMap<String> empty = PersistentIntMap.empty();
+        PersistentIntMap<String> one = empty.set(3, "a");
+        PersistentIntMap<String> two = one.set(100_000, "b");
+        PersistentIntMap<String> removed = two.set(3, null);
+
+        assertThat(empty.get(3)).isNull();
+        assertThat(one.get(3)).isEqualTo("a");
+        assertThat(one.get(100_000)).isNull();
+        assertThat(two.get(3)).isEqualTo("a");
+        assertThat(two.get(100_000)).isEqualTo("b");
+        assertThat(removed.containsKey(3)).isFalse();
+        assertThat(removed.get(100_000)).isEqualTo("b");
+    }
+
+    @Test
+    public void settingSameValueReturnsSameMap() {
+        String value = "a";
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().set(7, value);
+        assertThat(map.set(7, value)).isSameInstanceAs(map);
+        assertThat(map.set(8, null)).isSameInstanceAs(map);
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentIntMap<Integer> actual = PersistentIntMap.empty();
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(i % 2 == 0 ? 1 << 10 : Integer.MAX_VALUE);
+            Integer value = random.nextInt(4) == 0 ? null : i;
+            if (value == null) {
+                expected.remove(key);
+            } else {
+                expected.put(key, value);
+            }
+            actual = actual.set(key, value);
+        }
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey())).isEqualTo(entry.getValue());
+        }
+        assertThat(actual.get(Integer.MAX_VALUE)).isEqualTo(expected.get(Integer.MAX_VALUE));
+    }
+}
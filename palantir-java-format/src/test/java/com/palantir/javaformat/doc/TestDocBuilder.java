@@ -0,0 +1,109 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.palantir.javaformat.CommentsHelper;
+import com.palantir.javaformat.Indent;
+import com.palantir.javaformat.Input;
+import com.palantir.javaformat.OpenOp;
+import com.palantir.javaformat.java.FormatterException;
+import com.palantir.javaformat.java.JavaInput;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds small docs by hand, taking the text of their {@link Token}s from the tokens of a Java snippet. Unlike
+ * {@link DocBuilder}, every doc goes into the innermost open level.
+ */
+final class TestDocBuilder {
+    private static final CommentsHelper COMMENTS_HELPER = (tok, _maxWidth, _column0) -> tok.getOriginalText();
+
+    private final Iterator<? extends Input.Token> tokens;
+    private final Deque<Level> levels = new ArrayDeque<>();
+
+    TestDocBuilder(String text) throws FormatterException {
+        tokens = new JavaInput(text).getTokens().iterator();
+        open(Indent.Const.ZERO);
+    }
+
+    TestDocBuilder open(Indent plusIndent) {
+        levels.push(Level.make(OpenOp.builder().plusIndent(plusIndent).build()));
+        return this;
+    }
+
+    TestDocBuilder close() {
+        Level level = levels.pop();
+        levels.getFirst().add(level);
+        return this;
+    }
+
+    /** Adds the next token of the snippet. */
+    TestDocBuilder token() {
+        return add((Token) Token.make(tokens.next(), Token.RealOrImaginary.REAL, Indent.Const.ZERO, Optional.empty()));
+    }
+
+    TestDocBuilder add(Doc doc) {
+        levels.getFirst().add(doc);
+        return this;
+    }
+
+    /** The root level of the doc, frozen like {@link DocBuilder#build} does. */
+    Level build() {
+        Level root = levels.getLast();
+        root.freeze();
+        return root;
+    }
+
+    /** Lays out {@code docs} one after the other, like the docs between two breaks of a level. */
+    static State layOut(List<Doc> docs, int maxWidth, State state) {
+        Obs.ExplorationNode observer = Obs.createRoot(new NoopSink());
+        State newState = state;
+        for (Doc doc : docs) {
+            newState = doc.computeBreaks(COMMENTS_HELPER, maxWidth, newState, observer);
+        }
+        return newState;
+    }
+
+    /** Everything that laying out {@code docs} records in {@code state}, as far as writing them out is concerned. */
+    static List<String> describe(State state, List<Doc> docs) {
+        List<String> description = new ArrayList<>();
+        description.add("column " + state.column());
+        description.add("lines " + state.numLines());
+        for (Doc doc : docs) {
+            describe(state, doc, description);
+        }
+        return description;
+    }
+
+    private static void describe(State state, Doc doc, List<String> description) {
+        if (doc instanceof Level) {
+            Level level = (Level) doc;
+            description.add("level " + level.id() + (state.isOneLine(level) ? " one line" : ""));
+            for (Doc inner : level.getDocs()) {
+                describe(state, inner, description);
+            }
+        } else if (doc instanceof Break) {
+            Break brk = (Break) doc;
+            description.add("break " + brk.id() + " " + state.getBreakState(brk));
+            brk.optTag().ifPresent(tag -> description.add("tag " + tag.id() + " " + state.wasBreakTaken(tag)));
+        }
+    }
+}
@@ -191,4 +191,32 @@ public class CommandLineOptionsParserTest {
                         .reflowLongStrings())
                 .isFalse();
     }
+
+    @Test
+    public void server() {
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--server")).server())
+                .isTrue();
+    }
+
+    @Test
+    public void cacheDir() {
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--cache-dir", "build/cache"))
+                        .cacheDir())
+                .hasValue("build/cache");
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("Foo.java")).cacheDir())
+                .isEmpty();
+    }
+
+    @Test
+    public void maxFilesInFlight() {
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--max-files-in-flight", "8"))
+                        .maxFilesInFlight())
+                .hasValue(8);
+    }
+
+    @Test
+    public void threads() {
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--threads", "64")).threads())
+                .hasValue(64);
+    }
 }
@@ -16,8 +16,10 @@ package com.palantir.javaformat.java;
 
 import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -208,4 +210,17 @@ public class DiagnosticTest {
         assertThat(exitCode).isEqualTo(1);
         assertThat(err.toString()).contains("<stdin>:2:5: error: unclosed character literal");
     }
+
+    @Test
+    public void parseErrorsAfterManyOthers() throws FormatterException {
+        // Parses on the same thread share a javac context, which must not stop reporting errors after javac's limit
+        Formatter formatter = Formatter.create();
+        for (int i = 0; i < 250; i++) {
+            String input = Strings.repeat("\n", i % 10) + "class Foo { void f() {\n g('foo'); } }";
+            assertThatThrownBy(() -> formatter.formatSource(input))
+                    .isInstanceOf(FormatterException.class)
+                    .hasMessageStartingWith((i % 10 + 2) + ":5: error:");
+        }
+        assertThat(formatter.formatSource("class Foo {}\n")).isEqualTo("class Foo {}\n");
+    }
 }
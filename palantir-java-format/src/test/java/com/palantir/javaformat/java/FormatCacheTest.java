@@ -0,0 +1,188 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FormatCacheTest {
+
+    private static final String UNFORMATTED = "class T {  int x;  }\n";
+    private static final String FORMATTED = "class T {\n    int x;\n}\n";
+
+    @TempDir
+    public Path testFolder;
+
+    @Test
+    public void servesRepeatedFormatsFromCache() throws Exception {
+        Path cacheDir = testFolder.resolve("cache");
+        FormatCache cache = newCache(cacheDir, "fingerprint", FormatCache.DEFAULT_MAX_BYTES);
+
+        assertThat(format(cache, UNFORMATTED)).isEqualTo(FORMATTED);
+        List<Path> entries = entries(cacheDir);
+        assertThat(entries).hasSize(1);
+
+        // A hit must not run the formatter, so replace the entry with output the formatter would never produce
+        Files.write(entries.get(0), "Fcached".getBytes(UTF_8));
+        assertThat(format(cache, UNFORMATTED)).isEqualTo("cached");
+
+        assertThat(format(newCache(cacheDir, "other fingerprint", FormatCache.DEFAULT_MAX_BYTES), UNFORMATTED))
+                .isEqualTo(FORMATTED);
+        assertThat(entries(cacheDir)).hasSize(2);
+    }
+
+    @Test
+    public void recordsAlreadyFormattedFiles() throws Exception {
+        Path cacheDir = testFolder.resolve("cache");
+        FormatCache cache = newCache(cacheDir, "fingerprint", FormatCache.DEFAULT_MAX_BYTES);
+
+        assertThat(format(cache, FORMATTED)).isEqualTo(FORMATTED);
+        assertThat(format(cache, FORMATTED)).isEqualTo(FORMATTED);
+        List<Path> entries = entries(cacheDir);
+        assertThat(entries).hasSize(1);
+        assertThat(Files.readAllBytes(entries.get(0))).isEqualTo("U".getBytes(UTF_8));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws Exception {
+        Path cacheDir = testFolder.resolve("cache");
+        FormatCache cache = newCache(cacheDir, "fingerprint", 100);
+        for (int i = 0; i < 10; i++) {
+            format(cache, "class T" + i + " {}\n");
+        }
+        List<Path> entries = entries(cacheDir);
+        assertThat(entries).hasSize(10);
+        for (int i = 0; i < entries.size(); i++) {
+            Files.setLastModifiedTime(entries.get(i), FileTime.from(Instant.ofEpochSecond(1_000_000L + i)));
+        }
+
+        cache.evictIfNeeded();
+
+        // Each entry is a single byte, so nothing needs evicting
+        assertThat(entries(cacheDir)).hasSize(10);
+
+        FormatCache smallCache = newCache(cacheDir, "fingerprint", 4);
+        format(smallCache, "class Newest {}\n");
+        smallCache.evictIfNeeded();
+
+        // Shrinks to three quarters of the limit, keeping the most recently used entries
+        List<Path> remaining = entries(cacheDir);
+        assertThat(remaining).hasSize(3);
+        assertThat(remaining.subList(0, 2)).containsExactly(entries.get(8), entries.get(9)).inOrder();
+    }
+
+    @Test
+    public void cliUsesCacheDir() throws Exception {
+        Path file = testFolder.resolve("T.java");
+        Path cacheDir = testFolder.resolve("cache");
+        Files.write(file, UNFORMATTED.getBytes(UTF_8));
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+        int exitCode = main.format("--palantir", "--cache-dir", cacheDir.toString(), "-i", file.toString());
+
+        assertThat(err.toString()).isEmpty();
+        assertThat(exitCode).isEqualTo(0);
+        assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(FORMATTED);
+        assertThat(entries(cacheDir)).hasSize(1);
+    }
+
+    @Test
+    public void fingerprintIdentifiesTheRuntime() {
+        String fingerprint = FormatCache.fingerprint(
+                CommandLineOptions.builder().build(), JavaFormatterOptions.builder().build());
+        assertThat(fingerprint).contains("java=" + Runtime.version());
+    }
+
+    @Test
+    public void identifiesBuildDirectoriesByContents() throws Exception {
+        Path classes = Files.createDirectories(testFolder.resolve("classes/com/example"));
+        Path main = Files.write(classes.resolve("Main.class"), new byte[] {1, 2, 3});
+        String build = FormatCache.formatterBuild(testFolder.resolve("classes"));
+        assertThat(FormatCache.formatterBuild(testFolder.resolve("classes"))).isEqualTo(build);
+
+        Files.write(main, new byte[] {1, 2, 3, 4});
+        assertThat(FormatCache.formatterBuild(testFolder.resolve("classes"))).isNotEqualTo(build);
+    }
+
+    @Test
+    public void cliWarnsAboutLayoutBudgetOnEveryRun() throws Exception {
+        Path file = testFolder.resolve("T.java");
+        Path cacheDir = testFolder.resolve("cache");
+        Files.write(
+                file,
+                ("class T {\n"
+                                + "  Object f() {\n"
+                                + "    return items.stream().map(a -> a.stream().filter(b -> b.isValid())"
+                                + ".map(c -> convert(c, other)).collect(Collectors.toList()))"
+                                + ".collect(Collectors.toList());\n"
+                                + "  }\n"
+                                + "}\n")
+                        .getBytes(UTF_8));
+
+        for (int run = 0; run < 2; run++) {
+            StringWriter out = new StringWriter();
+            StringWriter err = new StringWriter();
+            Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+            int exitCode = main.format(
+                    "--palantir", "--layout-budget", "1", "--cache-dir", cacheDir.toString(), file.toString());
+
+            assertThat(exitCode).isEqualTo(0);
+            assertThat(err.toString()).contains("warning: layout budget of 1 levels used up here");
+        }
+    }
+
+    private static FormatCache newCache(Path cacheDir, String fingerprint, long maxBytes) {
+        return new FormatCache(cacheDir, fingerprint, maxBytes);
+    }
+
+    private static String format(FormatCache cache, String input) throws FormatterException {
+        JavaFormatterOptions options = JavaFormatterOptions.builder().style(Style.PALANTIR).build();
+        CommandLineOptions parameters = CommandLineOptions.builder().build();
+        return cache.format(input.getBytes(UTF_8), input, new FormatFileCallable(parameters, input, options));
+    }
+
+    /** The cache entries, least recently modified first. */
+    private static List<Path> entries(Path cacheDir) throws IOException {
+        try (Stream<Path> paths = Files.walk(cacheDir)) {
+            return paths.filter(Files::isRegularFile)
+                    .sorted((a, b) -> {
+                        try {
+                            return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class FormatterServerTest {
+
+    @Test
+    public void servesRequestsInOrder() throws IOException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        DataOutputStream requests = new DataOutputStream(requestBytes);
+        writeRequest(requests, List.of(), "");
+        writeRequest(requests, List.of("--palantir", "-"), "class T {  int x;  }\n");
+        writeRequest(requests, List.of("--palantir", "-"), "class T {\n");
+        writeRequest(requests, List.of("--palantir", "--output-replacements", "-"), "class T {}\n");
+
+        ByteArrayOutputStream responseBytes = new ByteArrayOutputStream();
+        new FormatterServer(new ByteArrayInputStream(requestBytes.toByteArray()), responseBytes).serve();
+
+        DataInputStream responses = new DataInputStream(new ByteArrayInputStream(responseBytes.toByteArray()));
+        List<Response> results = new ArrayList<>();
+        while (responses.available() > 0) {
+            results.add(readResponse(responses));
+        }
+        assertThat(results).hasSize(4);
+
+        assertThat(results.get(0).exitCode).isEqualTo(0);
+        assertThat(results.get(0).stdout).isEmpty();
+
+        assertThat(results.get(1).exitCode).isEqualTo(0);
+        assertThat(results.get(1).stdout).isEqualTo("class T {\n    int x;\n}\n");
+
+        assertThat(results.get(2).exitCode).isEqualTo(1);
+        assertThat(results.get(2).stderr).contains("<stdin>:1:11: error:");
+
+        assertThat(results.get(3).exitCode).isEqualTo(0);
+        assertThat(results.get(3).stdout).contains("\"replacementString\":\"class T {}\\n\"");
+    }
+
+    private static void writeRequest(DataOutputStream requests, List<String> args, String input) throws IOException {
+        requests.writeInt(args.size());
+        for (String arg : args) {
+            writeBytes(requests, arg.getBytes(UTF_8));
+        }
+        writeBytes(requests, input.getBytes(UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Response readResponse(DataInputStream in) throws IOException {
+        int exitCode = in.readInt();
+        String stdout = new String(readBytes(in), UTF_8);
+        String stderr = new String(readBytes(in), UTF_8);
+        return new Response(exitCode, stdout, stderr);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static final class Response {
+        private final int exitCode;
+        private final String stdout;
+        private final String stderr;
+
+        Response(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+}
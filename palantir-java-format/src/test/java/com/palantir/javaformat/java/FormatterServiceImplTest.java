@@ -0,0 +1,138 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Range;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class FormatterServiceImplTest {
+
+    @Test
+    public void formatsBatchWithOneResultPerInput() throws FormatterException {
+        FormatterServiceImpl service = new FormatterServiceImpl();
+        List<FormatterInput> inputs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String content = "class T" + i + " {  int x;  }\n";
+            inputs.add(FormatterInput.create(
+                    Path.of("T" + i + ".java"), content, List.of(Range.closedOpen(0, content.length()))));
+        }
+        inputs.add(FormatterInput.create(Path.of("Broken.java"), "class T {\n", List.of(Range.closedOpen(0, 10))));
+
+        List<FormatterResult> results = new ArrayList<>();
+        service.getBatchFormatReplacements(inputs, results::add);
+
+        Map<Path, FormatterResult> byPath =
+                results.stream().collect(Collectors.toMap(FormatterResult::path, Function.identity()));
+        assertThat(byPath).hasSize(inputs.size());
+        for (FormatterInput input : inputs.subList(0, 20)) {
+            FormatterResult result = byPath.get(input.path());
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.replacements())
+                    .containsExactlyElementsIn(service.getFormatReplacements(input.content(), input.ranges()));
+        }
+        FormatterResult broken = byPath.get(Path.of("Broken.java"));
+        assertThat(broken.isSuccess()).isFalse();
+        assertThat(broken.replacements()).isEmpty();
+        assertThat(broken.diagnostics().get(0).toString()).startsWith("1:11: error:");
+    }
+
+    @Test
+    public void failsOnlyTheInputThatTheFormatterFailsOn() {
+        FormatterServiceImpl service = new FormatterServiceImpl();
+        List<FormatterInput> inputs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String content = i == 5
+                    // Nested deeply enough to overflow the stack
+                    ? "class T5 { int x = " + "(".repeat(20_000) + "1" + ")".repeat(20_000) + "; }\n"
+                    : "class T" + i + " {  int x;  }\n";
+            inputs.add(FormatterInput.create(
+                    Path.of("T" + i + ".java"), content, List.of(Range.closedOpen(0, content.length()))));
+        }
+
+        List<FormatterResult> results = new ArrayList<>();
+        service.getBatchFormatReplacements(inputs, results::add);
+
+        Map<Path, FormatterResult> byPath =
+                results.stream().collect(Collectors.toMap(FormatterResult::path, Function.identity()));
+        assertThat(byPath).hasSize(inputs.size());
+        for (int i = 0; i < 10; i++) {
+            assertThat(byPath.get(Path.of("T" + i + ".java")).isSuccess()).isEqualTo(i != 5);
+        }
+        FormatterResult failed = byPath.get(Path.of("T5.java"));
+        assertThat(failed.replacements()).isEmpty();
+        assertThat(Iterables.getOnlyElement(failed.diagnostics()).message()).contains("StackOverflowError");
+    }
+
+    @Test
+    public void sharesOneDaemonPoolBetweenBatches() {
+        FormatterServiceImpl service = new FormatterServiceImpl();
+        for (int batch = 0; batch < 5; batch++) {
+            List<FormatterInput> inputs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String content = "class T" + i + " {  int x;  }\n";
+                inputs.add(FormatterInput.create(
+                        Path.of("T" + i + ".java"), content, List.of(Range.closedOpen(0, content.length()))));
+            }
+            service.getBatchFormatReplacements(inputs, result -> {});
+        }
+
+        Set<Thread> batchThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("palantir-java-format-batch-"))
+                .collect(Collectors.toSet());
+        assertThat(batchThreads).isNotEmpty();
+        assertThat(batchThreads.size()).isAtMost(Runtime.getRuntime().availableProcessors());
+        assertThat(batchThreads.stream().allMatch(Thread::isDaemon)).isTrue();
+    }
+
+    @Test
+    public void reportsLayoutBudgetWarningsWithTheResult() {
+        JavaFormatterOptions options = JavaFormatterOptions.builder()
+                .style(JavaFormatterOptions.Style.PALANTIR)
+                .layoutBudget(1)
+                .build();
+        FormatterServiceImpl service = new FormatterServiceImpl(options);
+        String content = "class T {\n"
+                + "  Object f() {\n"
+                + "    return items.stream().map(a -> a.stream().filter(b -> b.isValid()).map(c -> convert(c, other))"
+                + ".collect(Collectors.toList())).collect(Collectors.toList());\n"
+                + "  }\n"
+                + "}\n";
+        FormatterInput input =
+                FormatterInput.create(Path.of("T.java"), content, List.of(Range.closedOpen(0, content.length())));
+
+        List<FormatterResult> results = new ArrayList<>();
+        service.getBatchFormatReplacements(List.of(input), results::add);
+
+        FormatterResult result = Iterables.getOnlyElement(results);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.replacements()).isNotEmpty();
+        FormatterDiagnostic warning = Iterables.getOnlyElement(result.warnings());
+        assertThat(warning.line()).isEqualTo(3);
+        assertThat(warning.message())
+                .isEqualTo("layout budget of 1 levels used up here, 1 levels were broken without trying alternatives");
+    }
+}
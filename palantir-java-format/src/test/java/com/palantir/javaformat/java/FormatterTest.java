@@ -20,17 +20,32 @@ import static com.palantir.javaformat.java.JavaFormatterOptions.Style;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Joiner;
+import com.google.common.io.CharSink;
+import com.google.common.io.CharSource;
 import com.google.common.io.CharStreams;
+import com.palantir.javaformat.OpsBuilder;
+import com.palantir.javaformat.doc.BreakTag;
+import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.IdScope;
+import com.palantir.javaformat.doc.JsonDocVisitor;
+import com.palantir.javaformat.doc.Level;
+import com.palantir.javaformat.doc.State;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.parallel.Execution;
@@ -159,6 +174,28 @@ public final class FormatterTest {
         assertThat(output).isEqualTo(expect);
     }
 
+    @Test
+    public void formatSourceToCharSink() throws Exception {
+        Formatter formatter = Formatter.create();
+        for (String input : new String[] {
+            "package test;\nclass T {\n\n}",
+            "\n\nclass T { final public static int x = 1; }\r\n\r\n",
+            "class T {}\n\n// trailing\n\n",
+            "// only a comment",
+            "",
+            "  \n\n",
+        }) {
+            StringWriter output = new StringWriter();
+            formatter.formatSource(CharSource.wrap(input), new CharSink() {
+                @Override
+                public Writer openStream() {
+                    return output;
+                }
+            });
+            assertWithMessage(input).that(output.toString()).isEqualTo(formatter.formatSource(input));
+        }
+    }
+
     @Test
     public void docCommentTrailingBlank() throws FormatterException {
         String input = "class T {\n/** asd */\n\nint x;\n}";
@@ -399,6 +436,18 @@ public final class FormatterTest {
                 .isInstanceOf(FormatterException.class);
     }
 
+    @Test
+    public void formatSourceAndFixImportsReportsSyntaxErrorsOfTheInput() {
+        // Before fixing imports, the error is on line 5, rather than on line 3 once the unused imports are removed
+        String input = "import b.B;\nimport a.A;\n\nclass T {\n  int x\n}\n";
+        assertThatThrownBy(() -> Formatter.create().formatSourceAndFixImports(input))
+                .isInstanceOfSatisfying(FormatterException.class, e -> {
+                    FormatterDiagnostic diagnostic = e.diagnostics().get(0);
+                    assertThat(diagnostic.line()).isEqualTo(5);
+                    assertThat(diagnostic.message()).isEqualTo("';' expected");
+                });
+    }
+
     @Test
     public void blankLinesImportComment() throws FormatterException {
         @SuppressWarnings("for-rollout:StringConcatToTextBlock")
@@ -452,4 +501,46 @@ public final class FormatterTest {
                                 + "}"))
                 .doesNotThrowAnyException();
     }
+
+    @Test
+    public void docIdsAreUniqueAcrossFormats() throws Exception {
+        String input = "class A {\n"
+                + "  // comment\n"
+                + "  void b() { if (x) { c(d, e -> f(g)); } /* trailing */ }\n"
+                + "}\n";
+        Formatter formatter = Formatter.createFormatter(JavaFormatterOptions.defaultOptions());
+        formatter.formatSource(input);
+        formatter.formatSource(input);
+
+        try (IdScope ignored = IdScope.open()) {
+            FormattingSession session = new FormattingSession(input);
+            JavaInput javaInput = session.javaInput();
+            javaInput.setCompilationUnit(session.unit());
+            OpsBuilder opsBuilder = new OpsBuilder(javaInput);
+            Formatter.createVisitor(opsBuilder, JavaFormatterOptions.defaultOptions()).scan(session.unit(), null);
+            opsBuilder.sync(input.length());
+            opsBuilder.drain();
+            Level doc = new DocBuilder().withOps(opsBuilder.build().ops()).build();
+
+            List<Integer> docIds = new ArrayList<>();
+            Set<Integer> tagIds = new HashSet<>();
+            collectIds(new JsonDocVisitor(State.startingState()).visit(doc), docIds, tagIds);
+            assertThat(docIds).containsNoDuplicates();
+            assertThat(tagIds).isNotEmpty();
+            assertThat(tagIds).containsNoneIn(docIds);
+        }
+    }
+
+    /** Collects the ids of every doc in the tree, and of the {@link BreakTag}s that its breaks fill in. */
+    private static void collectIds(JsonNode node, List<Integer> docIds, Set<Integer> tagIds) {
+        docIds.add(node.get("id").asInt());
+        if (node.hasNonNull("optTag")) {
+            tagIds.add(node.get("optTag").get("id").asInt());
+        }
+        if (node.has("docs")) {
+            for (JsonNode child : node.get("docs")) {
+                collectIds(child, docIds, tagIds);
+            }
+        }
+    }
 }
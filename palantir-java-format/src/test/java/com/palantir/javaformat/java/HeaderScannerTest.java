@@ -0,0 +1,76 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** {@link HeaderScanner}Test */
+public class HeaderScannerTest {
+    private static final ImmutableSet<TokenKind> CLASS_START =
+            ImmutableSet.of(TokenKind.CLASS, TokenKind.INTERFACE, TokenKind.ENUM);
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "",
+                " \n",
+                "// only a comment",
+                "package a.b;\r\n\r\nimport static a.b.C.d; // trailing\nimport a.*;\n\n/** Javadoc. */\nclass T {}",
+                "package a;\n/* block\n comment */ import b.C;\t\f@A @B(x = \"s\", y = {C.class}) public final class",
+                "import a.b;\n@interface A {}",
+                "module m { requires a.b; }",
+            })
+    public void scansLikeJavac(String text) throws FormatterException {
+        assertThat(HeaderScanner.scan(text, CLASS_START)).isPresent();
+        assertThat(describe(JavaInput.buildHeaderToks(text, CLASS_START)))
+                .containsExactlyElementsIn(describe(JavaInput.buildToks(text, CLASS_START)))
+                .inOrder();
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "import a.b; int x = 1;",
+                "import \\u0061.b; class T {}",
+                "// \\u000a import a.b;\nclass T {}",
+                "/* unterminated",
+                "import a; @A(\"\\\"\") class T {}",
+                "import a; @A(\"\"\"\n  x\"\"\") class T {}",
+                "import a...",
+                "import é; class T {}",
+            })
+    public void fallsBackToJavac(String text) {
+        assertThat(HeaderScanner.scan(text, CLASS_START)).isEmpty();
+    }
+
+    private static List<String> describe(ImmutableList<JavaInput.Tok> toks) {
+        List<String> descriptions = new ArrayList<>();
+        for (JavaInput.Tok tok : toks) {
+            descriptions.add(tok + " " + tok.getOriginalText() + " " + tok.kind());
+        }
+        return descriptions;
+    }
+}
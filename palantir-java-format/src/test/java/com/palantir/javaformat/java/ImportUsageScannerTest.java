@@ -0,0 +1,62 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** {@link ImportUsageScanner}Test */
+public class ImportUsageScannerTest {
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "package p;\nimport a.A;\nimport a.B;\nclass T { A a; }",
+                "import java.lang.String;\nimport p.q.C;\nclass T { void f() { C.g(); } }",
+                "package p;\nimport p.A;\nclass T extends A {}",
+                "import a.A;\nimport static a.B.f;\nclass T { Object o = new A(); void g() { f(); } }",
+                "import a.List;\nimport a.X;\nclass T { List<X> xs; }",
+                "import a.F;\nclass T { Object f = F::g; Runnable r = () -> F.h(); }",
+                "import a.*;\nimport b.C;\n/** Mentions nothing. */\nclass T {}",
+            })
+    public void decidesLikeTheParse(String text) throws FormatterException {
+        FormattingSession session = new FormattingSession(text);
+        assertThat(ImportUsageScanner.unusedImports(text, session.rawToks().get())).isPresent();
+        String fromTokens = RemoveUnusedImports.removeUnusedImports(session, /* syntaxChecked= */ true);
+        assertThat(fromTokens).isEqualTo(RemoveUnusedImports.removeUnusedImports(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "import a.A;\nclass T { void A() {} }",
+                "import a.A;\n/** {@link A} */\nclass T {}",
+                "import a.A;\nclass T { int A; }",
+                "import a.A;\nclass T { Runnable r = A -> {}; }",
+                "import a.\\u0041;\nclass T { A a; }",
+                "class T {}\nimport a.A;",
+                "import a;\nclass T {}",
+            })
+    public void leavesAmbiguousImportsToTheParse(String text) {
+        assertThat(JavaInput.lex(text, ImmutableSet.of())
+                        .flatMap(rawToks -> ImportUsageScanner.unusedImports(text, rawToks)))
+                .isEmpty();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.CacheStats;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import org.junit.jupiter.api.Test;
+
+public class JavaCommentsHelperTest {
+    private static final JavaFormatterOptions OPTIONS =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build();
+
+    @Test
+    public void rewritesAreCachedAcrossHelpers() {
+        String text = "/**\n   * A uniquely worded javadoc for rewritesAreCachedAcrossHelpers.\n   */";
+        CacheStats before = JavaCommentsHelper.rewriteCacheStats();
+
+        String first = new JavaCommentsHelper("\n", OPTIONS).rewrite(comment(text), 120, 4);
+        String second = new JavaCommentsHelper("\n", OPTIONS).rewrite(comment(text), 120, 4);
+
+        CacheStats stats = JavaCommentsHelper.rewriteCacheStats().minus(before);
+        assertThat(second).isEqualTo(first);
+        assertThat(first)
+                .isEqualTo("/**\n     * A uniquely worded javadoc for rewritesAreCachedAcrossHelpers.\n     */");
+        assertThat(stats.missCount()).isAtLeast(1);
+        assertThat(stats.hitCount()).isAtLeast(1);
+    }
+
+    @Test
+    public void rewritesDependOnColumnAndLineSeparator() {
+        String text = "/*\n   * A uniquely worded block comment for rewritesDependOnColumnAndLineSeparator.\n   */";
+        JavaCommentsHelper helper = new JavaCommentsHelper("\n", OPTIONS);
+
+        assertThat(helper.rewrite(comment(text), 120, 0))
+                .isEqualTo("/*\n * A uniquely worded block comment for rewritesDependOnColumnAndLineSeparator.\n */");
+        assertThat(helper.rewrite(comment(text), 120, 2))
+                .isEqualTo(
+                        "/*\n   * A uniquely worded block comment for rewritesDependOnColumnAndLineSeparator.\n   */");
+        assertThat(new JavaCommentsHelper("\r\n", OPTIONS).rewrite(comment(text), 120, 0))
+                .isEqualTo(
+                        "/*\r\n * A uniquely worded block comment for rewritesDependOnColumnAndLineSeparator.\r\n */");
+    }
+
+    private static JavaInput.Tok comment(String text) {
+        return new JavaInput.Tok(0, text, text, 0, 0, false, null);
+    }
+}
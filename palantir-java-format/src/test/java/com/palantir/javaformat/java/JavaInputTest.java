@@ -0,0 +1,111 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Range;
+import com.palantir.javaformat.Input;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/** {@link JavaInput}Test */
+@Execution(ExecutionMode.CONCURRENT)
+public class JavaInputTest {
+    private static final String INPUT = Joiner.on("\r\n")
+            .join(
+                    "package p;",
+                    "",
+                    "/** Javadoc. */",
+                    "class T { // trailing",
+                    "  String s = \"a\\u0062\\n\"; /* block */",
+                    "  int i = a >>> 2;",
+                    "}",
+                    "");
+
+    @Test
+    public void toks() throws FormatterException {
+        JavaInput input = new JavaInput(INPUT);
+        StringBuilder text = new StringBuilder();
+        for (Input.Token token : input.getTokens()) {
+            for (Input.Tok tok : token.getToksBefore()) {
+                text.append(tok.getOriginalText());
+            }
+            text.append(token.getTok().getOriginalText());
+            for (Input.Tok tok : token.getToksAfter()) {
+                text.append(tok.getOriginalText());
+            }
+        }
+        assertThat(text.toString()).isEqualTo(INPUT);
+
+        JavaInput.Tok literal = tokAt(input, INPUT.indexOf('"'));
+        assertThat(literal.getOriginalText()).isEqualTo("\"a\\u0062\\n\"");
+        assertThat(literal.getText()).isEqualTo("\"ab\n\"");
+        assertThat(literal.length()).isEqualTo(literal.getOriginalText().length());
+
+        assertThat(tokAt(input, INPUT.indexOf("/**")).isJavadocComment()).isTrue();
+        assertThat(tokAt(input, INPUT.indexOf("//")).isSlashSlashComment()).isTrue();
+        assertThat(tokAt(input, INPUT.indexOf("/* block")).isSlashStarComment()).isTrue();
+        assertThat(tokAt(input, INPUT.indexOf('>')).getText()).isEqualTo(">");
+        assertThat(tokAt(input, INPUT.indexOf("class")).kind()).isNotNull();
+    }
+
+    @Test
+    public void lookupsAgreeWithMaps() throws FormatterException {
+        JavaInput input = new JavaInput(INPUT);
+        for (int position = -1; position <= INPUT.length() + 1; position++) {
+            assertThat(input.getTokenAt(position)).isSameInstanceAs(input.getPositionTokenMap().get(position));
+            Integer column = input.getPositionToColumnMap().get(position);
+            assertThat(input.getColumnAt(position)).isEqualTo(column == null ? -1 : column);
+        }
+    }
+
+    @Test
+    public void characterRangeToTokenRange() throws FormatterException {
+        JavaInput input = new JavaInput(INPUT);
+        int clazz = INPUT.indexOf("class");
+        Range<Integer> classToken =
+                Range.closedOpen(tokAt(input, clazz).getIndex(), tokAt(input, clazz).getIndex() + 1);
+        assertThat(input.characterRangeToTokenRange(clazz, 0)).isEqualTo(classToken);
+        assertThat(input.characterRangeToTokenRange(clazz + 2, 3)).isEqualTo(classToken);
+        // The blank line belongs to no token
+        assertThat(input.characterRangeToTokenRange(INPUT.indexOf("\r\n\r\n") + 2, 1))
+                .isEqualTo(Range.closedOpen(-1, -1));
+        assertThat(input.characterRangeToTokenRange(0, INPUT.length())).isEqualTo(Range.closedOpen(0, input.getkN()));
+    }
+
+    private static JavaInput.Tok tokAt(JavaInput input, int position) {
+        for (Input.Token token : input.getTokens()) {
+            for (Input.Tok tok : token.getToksBefore()) {
+                if (tok.getPosition() == position) {
+                    return (JavaInput.Tok) tok;
+                }
+            }
+            if (token.getTok().getPosition() == position) {
+                return (JavaInput.Tok) token.getTok();
+            }
+            for (Input.Tok tok : token.getToksAfter()) {
+                if (tok.getPosition() == position) {
+                    return (JavaInput.Tok) tok;
+                }
+            }
+        }
+        throw new AssertionError("No tok at " + position);
+    }
+}
@@ -33,7 +33,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Locale;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -198,6 +200,27 @@ public class MainTest {
         assertThat(out.toString()).isEqualTo(joiner.join(expected));
     }
 
+    @Test
+    public void fixImportsOnly_reportsSyntaxErrors() throws Exception {
+        String[] input = {
+            "import java.util.List;", //
+            "import java.util.Map;",
+            "",
+            "class Test {",
+            "  List<String> xs",
+            "  void f( { }",
+            "}",
+        };
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(
+                new PrintWriter(out, true),
+                new PrintWriter(err, true),
+                new ByteArrayInputStream(joiner.join(input).getBytes(UTF_8)));
+        assertThat(main.format("-", "--fix-imports-only")).isEqualTo(1);
+        assertThat(err.toString()).contains("<stdin>:5:19: error: ';' expected");
+    }
+
     @Test
     public void optimizeImportsDoesNotLeaveEmptyLines() throws Exception {
         String[] input = {
@@ -412,6 +435,109 @@ public class MainTest {
         assertThat(err.toString()).isNotEmpty();
     }
 
+    @Test
+    public void dryRunReportsInArgumentOrderWhenLargestFilesStartFirst() throws Exception {
+        List<String> args = new ArrayList<>(List.of("--palantir", "--threads", "4", "-n"));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= 30; i++) {
+            // Later files are bigger, so they are started first
+            Path file = Files.createFile(testFolder.resolve("T" + i + ".java"));
+            boolean formatted = i % 3 == 0;
+            String field = formatted ? "    int x;\n" : "int x;";
+            Files.write(file, ("class T" + i + " {\n" + field.repeat(i) + "}\n").getBytes(UTF_8));
+            args.add(file.toAbsolutePath().toString());
+            if (!formatted) {
+                expected.append(file.toAbsolutePath()).append(System.lineSeparator());
+            }
+        }
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+        int exitCode = main.format(args.toArray(new String[0]));
+
+        assertThat(err.toString()).isEmpty();
+        assertThat(exitCode).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void outputStaysInOrderWithFewFilesInFlight() throws Exception {
+        List<String> args = new ArrayList<>(List.of("--palantir", "--max-files-in-flight", "2"));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            // Vary the amount of work per file, so that files finish out of order
+            int fields = (i * 7) % 30;
+            Path file = Files.createFile(testFolder.resolve("T" + i + ".java"));
+            Files.write(file, ("class T" + i + "{" + "int x;".repeat(fields) + "}\n").getBytes(UTF_8));
+            args.add(file.toAbsolutePath().toString());
+            expected.append("class T" + i + " {")
+                    .append(fields == 0 ? "" : "\n" + "    int x;\n".repeat(fields))
+                    .append("}\n");
+        }
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+        int exitCode = main.format(args.toArray(new String[0]));
+
+        assertThat(err.toString()).isEmpty();
+        assertThat(exitCode).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void repeatedFilesAreFormattedOnce() throws Exception {
+        Path a = Files.createFile(testFolder.resolve("A.java"));
+        Path b = Files.createFile(testFolder.resolve("B.java"));
+        Files.write(a, "class A{}\n".getBytes(UTF_8));
+        Files.write(b, "class B{}\n".getBytes(UTF_8));
+        String aPath = a.toAbsolutePath().toString();
+        String bPath = b.toAbsolutePath().toString();
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+        assertThat(main.format(bPath, aPath, bPath, aPath, bPath)).isEqualTo(0);
+        assertThat(main.format("-n", aPath, aPath, bPath, aPath)).isEqualTo(0);
+
+        assertThat(err.toString()).isEmpty();
+        assertThat(out.toString())
+                .isEqualTo(
+                        "class B {}\nclass A {}\n" + aPath + System.lineSeparator() + bPath + System.lineSeparator());
+    }
+
+    @Test
+    public void layoutBudgetWarnsWhereItRanOut() throws Exception {
+        String input = "class T {\n"
+                + "  Object f() {\n"
+                + "    return items.stream().map(a -> a.stream().filter(b -> b.isValid()).map(c -> convert(c, other))"
+                + ".collect(Collectors.toList())).collect(Collectors.toList());\n"
+                + "  }\n"
+                + "}\n";
+        String expected = "class T {\n"
+                + "    Object f() {\n"
+                + "        return items.stream()\n"
+                + "                .map(a -> a.stream().filter(b -> b.isValid()).map(c -> convert(c, other))"
+                + ".collect(Collectors.toList()))\n"
+                + "                .collect(Collectors.toList());\n"
+                + "    }\n"
+                + "}\n";
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(
+                new PrintWriter(out, true),
+                new PrintWriter(err, true),
+                new ByteArrayInputStream(input.getBytes(UTF_8)));
+        assertThat(main.format("--palantir", "--layout-budget", "1", "-")).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo(expected);
+        assertThat(err.toString())
+                .isEqualTo("<stdin>:3: warning: layout budget of 1 levels used up here, 1 levels were broken without"
+                        + " trying alternatives"
+                        + System.lineSeparator());
+    }
+
     @Test
     public void exitIfChangedStdin() throws Exception {
         Path path = Files.createFile(testFolder.resolve("Test.java"));
@@ -19,8 +19,13 @@ package com.palantir.javaformat.java;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
+import com.palantir.javaformat.Input;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
@@ -99,4 +104,32 @@ public class ModifierOrdererTest {
                 .getText();
         assertThat(output).contains("public\n  static int a;");
     }
+
+    @Test
+    public void movedToksMatchLexing() throws FormatterException {
+        String[] lines = {
+            "class Test {", //
+            "  final /* a */ public",
+            "  static int a = b >> 1; abstract protected void c();",
+            "  static private /* d",
+            "  */ volatile int e;",
+            "}",
+        };
+        JavaInput reordered = ModifierOrderer.reorderModifiers(Joiner.on('\n').join(lines));
+        JavaInput lexed = new JavaInput(reordered.getText());
+        assertThat(reordered.getText()).contains("public /* a */ static\n  final int a");
+        assertThat(reordered.getkN()).isEqualTo(lexed.getkN());
+        assertThat(toks(reordered)).isEqualTo(toks(lexed));
+    }
+
+    private static List<String> toks(JavaInput javaInput) {
+        List<String> toks = new ArrayList<>();
+        for (Input.Token token : javaInput.getTokens()) {
+            for (Input.Tok tok :
+                    Iterables.concat(token.getToksBefore(), ImmutableList.of(token.getTok()), token.getToksAfter())) {
+                toks.add(tok.toString());
+            }
+        }
+        return toks;
+    }
 }
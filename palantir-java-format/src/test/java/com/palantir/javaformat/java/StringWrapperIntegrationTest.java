@@ -77,6 +77,15 @@ public class StringWrapperIntegrationTest {
                 .isEqualTo(output.replace("\n", "\r\n"));
     }
 
+    @TestTemplate
+    public void paranoid() throws Exception {
+        assumeJavaVersionForTest(name);
+        Assumptions.assumeFalse(isRecreate(), "Not running when recreating test outputs");
+        Formatter paranoidFormatter = Formatter.createFormatter(
+                JavaFormatterOptions.builder().paranoidStringWrapping(true).build());
+        assertThat(StringWrapper.wrap(40, paranoidFormatter.formatSource(input), paranoidFormatter)).isEqualTo(output);
+    }
+
     @TestTemplate
     public void idempotent() throws Exception {
         assumeJavaVersionForTest(name);
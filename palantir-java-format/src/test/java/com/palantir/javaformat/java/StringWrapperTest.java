@@ -20,6 +20,8 @@ import com.google.common.base.Joiner;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 @Execution(ExecutionMode.CONCURRENT)
 public class StringWrapperTest {
@@ -48,6 +50,32 @@ public class StringWrapperTest {
         assertThat(StringWrapper.wrap(100, input, Formatter.create())).isEqualTo(output);
     }
 
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "String s = \"ab\" + x; | String s =    \"a\" /* c */   + \"b\" + x;",
+                "f(\"a b\", 1); | f(\"a \" + \"\\u0062\", 1);",
+                "String s = x + \"ab\"; | String s = x + \"a\" + \"b\";",
+            })
+    public void foldsConcatenatedStrings(String expected, String actual) {
+        assertThat(StringWrapper.haveSameFoldedTokens(expected, actual)).isTrue();
+    }
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "int n = \"ab\".length(); | int n = \"a\" + \"b\".length();",
+                "Object o = (Object) \"ab\"; | Object o = (Object) \"a\" + \"b\";",
+                "f(\"a\", \"b\"); | f(\"a\" + \"b\");",
+                "String s = \"ab\"; | String s = \"ab\" + x;",
+                "String s = \"ab\"; | String s = \"ab;",
+            })
+    public void detectsChangedPrograms(String expected, String actual) {
+        assertThat(StringWrapper.haveSameFoldedTokens(expected, actual)).isFalse();
+    }
+
     private static String lines(String... line) {
         return Joiner.on('\n').join(line) + '\n';
     }
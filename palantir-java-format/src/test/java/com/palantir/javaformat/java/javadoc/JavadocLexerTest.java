@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java.javadoc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.CharStreams;
+import com.google.common.reflect.ClassPath;
+import com.google.common.reflect.ClassPath.ResourceInfo;
+import com.palantir.javaformat.java.javadoc.JavadocLexer.LexException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Checks that {@link JavadocLexer} reads the same tokens as the regex based {@link RegexJavadocLexer} it replaced. */
+public final class JavadocLexerTest {
+
+    private static final String TESTDATA = "com/palantir/javaformat/java/testdata/";
+
+    @Test
+    public void sameTokensAsRegexLexerForTestdata() throws IOException {
+        List<String> comments = new ArrayList<>();
+        for (ResourceInfo resource : ClassPath.from(getClass().getClassLoader()).getResources()) {
+            String name = resource.getResourceName();
+            if (name.startsWith(TESTDATA) && (name.endsWith(".input") || name.endsWith(".output"))) {
+                comments.addAll(javadocComments(read(name)));
+            }
+        }
+        assertThat(comments).isNotEmpty();
+        for (String comment : comments) {
+            assertSameTokens(comment);
+        }
+    }
+
+    @Test
+    public void sameTokensAsRegexLexerForEdgeCases() {
+        List<String> comments = List.of(
+                "/** Foo <p>bar</P> <ul><li>one<LI>two</ul> <h2>Heading</h2> <h7>not a header</h7> */",
+                "/** <pre>{@code\n *   int x = 1;\n * }</pre> <pre\n class=\"code\">x</pre> <pre unterminated */",
+                "/** <code>a <p> b</code> <table>\n *  <tr><td>x</td></tr>\n * </table> */",
+                "/** <p_x> <pre2> <br> </br> <br/> <blockquote>q</BlockQuote> <!-- comment --> <!-- open */",
+                "/** <!-- MOE:begin_intracomment_strip -->x<!--MOE:end_intracomment_strip--> */",
+                "/**\n * @param <T> the type\n * @param\tfoo bar\n * @param <> baz\n * @Nullable @return x\n */",
+                "/** {@link Foo#bar(int)} {@code {nested} braces} {@ }} { */",
+                "/** Unclosed {@code tag */",
+                "/** Unclosed <pre> tag */",
+                "/**\r\n * Windows\r\n *\tline endings\r */",
+                "/**    \n    *    \n\t*\t\tx\n**/",
+                "/** Non-ASCII café <pre>é</pre> 𝐀 */",
+                "/** <préface> <preé>x</preé> <pé> <p_é> */",
+                "/** * */",
+                "/** Stars*in*text, foo@bar.com and 2*3 */");
+        for (String comment : comments) {
+            assertSameTokens(comment);
+        }
+    }
+
+    /**
+     * Before JDK 19, {@code \b} counted any letter as a word character, so the regex lexer didn't take these for tags
+     * there. The lexer follows current JDKs on every runtime.
+     */
+    @Test
+    public void nonAsciiLetterEndsTagName() {
+        assertThat(tokens("/** <preé>x</preé> */", JavadocLexer::tokenize))
+                .containsAtLeast("PRE_OPEN_TAG: <preé>", "PRE_CLOSE_TAG: </preé>")
+                .inOrder();
+        assertThat(tokens("/** <pé> */", JavadocLexer::tokenize)).contains("PARAGRAPH_OPEN_TAG: <pé>");
+    }
+
+    private static void assertSameTokens(String comment) {
+        assertWithMessage("tokens of %s", comment)
+                .that(tokens(comment, JavadocLexer::tokenize))
+                .isEqualTo(tokens(comment, RegexJavadocLexer::tokenize));
+    }
+
+    private static List<String> tokens(String comment, Lexer lexer) {
+        try {
+            return lexer.tokenize(comment).stream()
+                    .map(token -> token.getType() + ": " + token.getValue())
+                    .collect(Collectors.toList());
+        } catch (LexException e) {
+            return List.of("LexException");
+        }
+    }
+
+    private static List<String> javadocComments(String text) {
+        List<String> comments = new ArrayList<>();
+        int start = text.indexOf("/**");
+        while (start != -1) {
+            int end = text.indexOf("*/", start + "/**".length());
+            if (end == -1) {
+                break;
+            }
+            String comment = text.substring(start, end + "*/".length());
+            if (comment.length() > "/**/".length()) {
+                comments.add(comment);
+            }
+            start = text.indexOf("/**", end + "*/".length());
+        }
+        return comments;
+    }
+
+    private static String read(String resourceName) throws IOException {
+        try (InputStream stream = JavadocLexerTest.class.getClassLoader().getResourceAsStream(resourceName)) {
+            return CharStreams.toString(new InputStreamReader(stream, UTF_8));
+        }
+    }
+
+    private interface Lexer {
+        List<Token> tokenize(String comment) throws LexException;
+    }
+}